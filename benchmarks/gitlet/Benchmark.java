@@ -0,0 +1,292 @@
+package gitlet;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.Stream;
+
+/** Benchmarks the hot path of every gitlet command, and of reading the
+ *  tree, walking parents and finding a split point, against a synthetic
+ *  repository of configurable size. Each benchmark runs in a JVM of its
+ *  own through BenchmarkRunner, on a fresh copy of the repository, where
+ *  the operation is warmed up and then measured in-process, so that
+ *  results show the operation and not JVM startup. Allocation and GC are
+ *  reported along with time.
+ *
+ *  Usage: java gitlet.Benchmark [--files N] [--size BYTES] [--commits N]
+ *  [--branches N] [--warmup N] [--iterations N]
+ *  [--only benchmark,benchmark...]
+ *  @author Chris Seo
+ */
+public class Benchmark {
+
+    /** Name of the branch merged by the merge benchmark. */
+    static final String SIDE_BRANCH = "bench-side";
+
+    /** Seed for the synthetic file contents. */
+    static final long SEED = 61;
+
+    /** Characters synthetic files are made of. */
+    static final String ALPHABET = "abcdefghijklmnopqrstuvwxyz0123456789 \n";
+
+    /** Runs the benchmarks.
+     * @param args options, see the class comment */
+    public static void main(String... args) throws IOException {
+        LinkedHashMap<String, Integer> options = new LinkedHashMap<>();
+        options.put("--files", 100);
+        options.put("--size", 1024);
+        options.put("--commits", 20);
+        options.put("--branches", 4);
+        options.put("--warmup", 10);
+        options.put("--iterations", 20);
+        List<String> only = null;
+        for (int i = 0; i + 1 < args.length; i += 2) {
+            if (args[i].equals("--only")) {
+                only = Arrays.asList(args[i + 1].split(","));
+            } else if (options.containsKey(args[i])) {
+                options.put(args[i], Integer.parseInt(args[i + 1]));
+            } else {
+                throw new IllegalArgumentException("unknown option "
+                        + args[i]);
+            }
+        }
+        Benchmark bench = new Benchmark(options.get("--files"),
+                options.get("--size"), options.get("--warmup"),
+                options.get("--iterations"));
+        System.out.println("Building repository: " + options);
+        bench.build(options.get("--commits"), options.get("--branches"));
+        System.out.printf("%-11s %10s %10s %10s %10s %14s %10s %6s %8s%n",
+                "benchmark", "ops/s", "mean ms", "p50 ms", "max ms",
+                "alloc B/op", "alloc MB/s", "gcs", "gc ms");
+        for (String name : bench.benchmarks()) {
+            if (only == null || only.contains(name)) {
+                bench.measure(name);
+            }
+        }
+        bench.deleteAll(bench._template.toPath());
+    }
+
+    /** Constructor for a benchmark.
+     * @param files number of files in the repository
+     * @param fileSize size of each file in bytes
+     * @param warmup unmeasured runs per benchmark
+     * @param iterations measured runs per benchmark */
+    Benchmark(int files, int fileSize, int warmup, int iterations)
+        throws IOException {
+        _files = files;
+        _fileSize = fileSize;
+        _warmup = warmup;
+        _iterations = iterations;
+        _template = Files.createTempDirectory("gitlet-bench").toFile();
+    }
+
+    /** Builds the template repository with Generator: COMMITS commits that
+     *  each change a tenth of the files spread over BRANCHES branches, plus
+     *  a side branch that can be merged into master without conflicts.
+     * @param commits number of commits
+     * @param branches number of branches */
+    void build(int commits, int branches) throws IOException {
+        Process process = start(_template, "gitlet.Generator", "--commits",
+                String.valueOf(commits), "--files", String.valueOf(_files),
+                "--churn", "10", "--branches", String.valueOf(branches),
+                "--min-size", String.valueOf(_fileSize), "--max-size",
+                String.valueOf(_fileSize));
+        process.getInputStream().transferTo(System.out);
+        waitFor(process);
+        gitlet(_template, "branch", SIDE_BRANCH);
+        gitlet(_template, "checkout", SIDE_BRANCH);
+        writeFile(_template, "side");
+        gitlet(_template, "add", "side");
+        gitlet(_template, "commit", "side commit");
+        gitlet(_template, "checkout", "master");
+        writeFile(_template, "file0");
+        gitlet(_template, "add", "file0");
+        gitlet(_template, "commit", "master commit");
+        String log = gitlet(_template, "log");
+        String[] ids = log.split("commit ");
+        _oldCommit = ids[ids.length - 1].substring(0, Utils.UID_LENGTH);
+    }
+
+    /** Returns the names of the benchmarks, as BenchmarkRunner knows
+     *  them. Merge is measured with --dry-run, which does the whole merge
+     *  in memory but changes nothing, so it can be repeated. */
+    List<String> benchmarks() {
+        return List.of("add", "commit", "status", "checkout", "reset", "log",
+                "global-log", "find", "merge", "read-tree", "parents",
+                "split-point");
+    }
+
+    /** Runs one benchmark and prints its results.
+     * @param name benchmark name */
+    void measure(String name) throws IOException {
+        File repo = Files.createTempDirectory("gitlet-bench").toFile();
+        copyAll(_template.toPath(), repo.toPath());
+        ArrayList<Long> times = new ArrayList<>();
+        long allocated = 0;
+        long[] gc = new long[2];
+        for (String[] result : run(repo, name)) {
+            if (result[0].equals(BenchmarkRunner.GC_PREFIX)) {
+                gc[0] = Long.parseLong(result[1]);
+                gc[1] = Long.parseLong(result[2]);
+            } else {
+                times.add(Long.parseLong(result[1]));
+                allocated += Long.parseLong(result[2]);
+            }
+        }
+        deleteAll(repo.toPath());
+        if (times.isEmpty()) {
+            throw new IllegalStateException("no result from " + name);
+        }
+        Collections.sort(times);
+        long total = 0;
+        for (long time : times) {
+            total += time;
+        }
+        double meanMs = total / 1e6 / times.size();
+        long bytesPerOp = allocated / times.size();
+        System.out.printf("%-11s %10.1f %10.2f %10.2f %10.2f %14d %10.1f "
+                + "%6d %8d%n", name, 1000 / meanMs, meanMs,
+                times.get(times.size() / 2) / 1e6,
+                times.get(times.size() - 1) / 1e6, bytesPerOp,
+                bytesPerOp / 1e6 / (meanMs / 1000), gc[0], gc[1]);
+    }
+
+    /** Runs the benchmark NAME in REPO through BenchmarkRunner.
+     * @param repo working directory
+     * @param name benchmark name
+     * @return the runner's result lines, split into their prefix and
+     *         numbers */
+    List<String[]> run(File repo, String name) throws IOException {
+        Process process = start(repo, "gitlet.BenchmarkRunner", name,
+                String.valueOf(_warmup), String.valueOf(_iterations),
+                _oldCommit);
+        process.getInputStream().transferTo(OutputStream.nullOutputStream());
+        ArrayList<String[]> results = new ArrayList<>();
+        try (BufferedReader err = new BufferedReader(
+                new InputStreamReader(process.getErrorStream()))) {
+            for (String line = err.readLine(); line != null;
+                 line = err.readLine()) {
+                for (String prefix : new String[] {BenchmarkRunner.GC_PREFIX,
+                    BenchmarkRunner.RESULT_PREFIX}) {
+                    if (line.startsWith(prefix)) {
+                        String[] fields = line.substring(prefix.length()).
+                                split(" ");
+                        results.add(new String[] {prefix, fields[0],
+                            fields[1]});
+                        break;
+                    }
+                }
+            }
+        }
+        waitFor(process);
+        return results;
+    }
+
+    /** Runs an unmeasured gitlet command in REPO.
+     * @param repo working directory
+     * @param args gitlet arguments
+     * @return the command's output */
+    String gitlet(File repo, String... args) throws IOException {
+        Process process = start(repo, "gitlet.Main", args);
+        String output = new String(process.getInputStream().readAllBytes());
+        waitFor(process);
+        return output;
+    }
+
+    /** Starts a JVM running MAINCLASS in REPO.
+     * @param repo working directory
+     * @param mainClass class to run
+     * @param args arguments to the class
+     * @return the process */
+    private Process start(File repo, String mainClass, String... args)
+        throws IOException {
+        ArrayList<String> command = new ArrayList<>();
+        command.add(Path.of(System.getProperty("java.home"), "bin", "java").
+                toString());
+        command.add("-cp");
+        command.add(System.getProperty("java.class.path"));
+        command.add(mainClass);
+        command.addAll(Arrays.asList(args));
+        boolean measured = mainClass.equals("gitlet.BenchmarkRunner");
+        return new ProcessBuilder(command).directory(repo).
+                redirectErrorStream(!measured).start();
+    }
+
+    /** Waits for PROCESS to end.
+     * @param process process to wait for */
+    private void waitFor(Process process) {
+        try {
+            process.waitFor();
+        } catch (InterruptedException excp) {
+            throw new IllegalStateException(excp);
+        }
+    }
+
+    /** Writes random contents to a file.
+     * @param repo working directory
+     * @param fileName name of the file */
+    private void writeFile(File repo, String fileName) {
+        StringBuilder contents = new StringBuilder(_fileSize);
+        for (int i = 0; i < _fileSize; i++) {
+            contents.append(ALPHABET.charAt(
+                    _random.nextInt(ALPHABET.length())));
+        }
+        Utils.writeContents(Utils.join(repo, fileName), contents.toString());
+    }
+
+    /** Copies the directory tree FROM to TO.
+     * @param from directory to copy
+     * @param to existing directory to copy into */
+    private void copyAll(Path from, Path to) throws IOException {
+        try (Stream<Path> paths = Files.walk(from)) {
+            for (Path path : (Iterable<Path>) paths::iterator) {
+                Path dest = to.resolve(from.relativize(path));
+                if (Files.isDirectory(path)) {
+                    Files.createDirectories(dest);
+                } else {
+                    Files.copy(path, dest);
+                }
+            }
+        }
+    }
+
+    /** Deletes the directory tree at PATH.
+     * @param path directory to delete */
+    void deleteAll(Path path) throws IOException {
+        try (Stream<Path> paths = Files.walk(path)) {
+            paths.sorted(Collections.reverseOrder()).
+                    forEach(p -> p.toFile().delete());
+        }
+    }
+
+    /** Number of files in the repository. */
+    private final int _files;
+
+    /** Size of each file in bytes. */
+    private final int _fileSize;
+
+    /** Unmeasured runs per benchmark. */
+    private final int _warmup;
+
+    /** Measured runs per benchmark. */
+    private final int _iterations;
+
+    /** Repository copied before each measured run. */
+    private final File _template;
+
+    /** Source of synthetic file contents. */
+    private final Random _random = new Random(SEED);
+
+    /** A commit far back in history, reset to by the reset benchmark. */
+    private String _oldCommit;
+}
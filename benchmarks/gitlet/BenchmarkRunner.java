@@ -0,0 +1,158 @@
+package gitlet;
+
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+
+/** Runs one benchmark in a JVM of its own, started by Benchmark in a copy
+ *  of the benchmark repository. Gitlet decides its repository from
+ *  user.dir when its classes load, so each benchmark gets one JVM, and
+ *  within it the operation is run in-process: first unmeasured to warm
+ *  up the JIT and the caches, then measured. Commands are called through
+ *  their handlers rather than Main, which takes the repository lock once
+ *  per process. Those that change the repository are set up so every
+ *  run does the same work: add and commit get a fresh file1, and
+ *  checkout and reset go back and forth. Output is discarded. For each
+ *  measured run a line with the nanoseconds and bytes allocated goes to
+ *  standard error, then one with the collections and milliseconds of GC
+ *  over all measured runs.
+ *
+ *  Usage: java gitlet.BenchmarkRunner NAME WARMUP ITERATIONS OLDCOMMIT
+ *  @author Chris Seo
+ */
+public class BenchmarkRunner {
+
+    /** Prefix of the lines carrying measurements. */
+    static final String RESULT_PREFIX = "BENCHMARK ";
+
+    /** Prefix of the line carrying GC counts. */
+    static final String GC_PREFIX = "BENCHMARK-GC ";
+
+    /** Keeps results of operations that return one from being optimized
+     *  away. */
+    static volatile Object _sink;
+
+    /** Runs the benchmark and reports on it.
+     * @param args benchmark name, warmup runs, measured runs and the
+     *             commit the reset benchmark goes back to */
+    public static void main(String... args) {
+        String name = args[0];
+        int warmup = Integer.parseInt(args[1]);
+        int iterations = Integer.parseInt(args[2]);
+        String oldCommit = args[3];
+        PrintStream out = System.out;
+        System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+        Reflog.setMessage("benchmark " + name);
+        String headID = Utils.readObject(Tree.TREE_DIR, Tree.class).
+                getCurrHead().getID();
+        for (int i = 0; i < warmup; i++) {
+            prepare(name, i);
+            run(name, i, headID, oldCommit);
+        }
+        com.sun.management.ThreadMXBean threads =
+                (com.sun.management.ThreadMXBean)
+                        ManagementFactory.getThreadMXBean();
+        long threadID = Thread.currentThread().getId();
+        long[] gcBefore = gc();
+        for (int i = warmup; i < warmup + iterations; i++) {
+            prepare(name, i);
+            long allocated = threads.getThreadAllocatedBytes(threadID);
+            long start = System.nanoTime();
+            run(name, i, headID, oldCommit);
+            long time = System.nanoTime() - start;
+            allocated = threads.getThreadAllocatedBytes(threadID)
+                    - allocated;
+            System.err.println(RESULT_PREFIX + time + " " + allocated);
+        }
+        long[] gcAfter = gc();
+        System.err.println(GC_PREFIX + (gcAfter[0] - gcBefore[0]) + " "
+                + (gcAfter[1] - gcBefore[1]));
+        System.setOut(out);
+    }
+
+    /** Sets up run I of benchmark NAME, outside the measurement.
+     * @param name benchmark name
+     * @param i number of the run */
+    private static void prepare(String name, int i) {
+        if (name.equals("add") || name.equals("commit")) {
+            Utils.writeContents(Utils.join(Main.WORKING_DIR, "file1"),
+                    "benchmark run " + i + "\n");
+        }
+        if (name.equals("commit")) {
+            Stage.add("file1");
+        }
+    }
+
+    /** Does run I of benchmark NAME.
+     * @param name benchmark name
+     * @param i number of the run
+     * @param headID head of master when the benchmark started
+     * @param oldCommit commit far back in history */
+    private static void run(String name, int i, String headID,
+                            String oldCommit) {
+        boolean even = i % 2 == 0;
+        switch (name) {
+        case "add":
+            Stage.add("file1");
+            break;
+        case "commit":
+            Utils.readMapped(Tree.TREE_DIR, Tree.class).commitCommand(
+                    new String[] {"commit", "benchmark " + i});
+            break;
+        case "status":
+            Status.doStatus();
+            break;
+        case "checkout":
+            Checkout.doCheckout(new String[] {"checkout",
+                even ? Benchmark.SIDE_BRANCH : "master"});
+            break;
+        case "reset":
+            Tree.doReset(new String[] {"reset", even ? oldCommit : headID});
+            break;
+        case "log":
+            Archive.doLog(false, new String[] {"log"});
+            break;
+        case "global-log":
+            Archive.doLog(true, new String[] {"global-log"});
+            break;
+        case "find":
+            Archive.doFind(new String[] {"find", "generated commit 1"});
+            break;
+        case "merge":
+            Merge.doMerge(new String[] {"merge", Merge.DRY_RUN,
+                Benchmark.SIDE_BRANCH});
+            break;
+        case "read-tree":
+            _sink = Utils.readObject(Tree.TREE_DIR, Tree.class);
+            break;
+        case "parents":
+            int count = 0;
+            for (Commit commit = Utils.readMapped(Tree.TREE_DIR,
+                    Tree.class).getCurrHead(); commit != null;
+                 commit = commit.getParent()) {
+                count += 1;
+            }
+            _sink = count;
+            break;
+        case "split-point":
+            _sink = Merge.findSplitPoint(Utils.readMapped(Tree.TREE_DIR,
+                    Tree.class), Benchmark.SIDE_BRANCH);
+            break;
+        default:
+            throw new IllegalArgumentException("unknown benchmark " + name);
+        }
+    }
+
+    /** Returns the collections made and milliseconds spent in GC so far.
+     * @return count and time */
+    private static long[] gc() {
+        long[] result = new long[2];
+        for (GarbageCollectorMXBean collector
+                : ManagementFactory.getGarbageCollectorMXBeans()) {
+            result[0] += Math.max(collector.getCollectionCount(), 0);
+            result[1] += Math.max(collector.getCollectionTime(), 0);
+        }
+        return result;
+    }
+}
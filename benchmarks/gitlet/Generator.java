@@ -0,0 +1,174 @@
+package gitlet;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Random;
+
+/** Generates a synthetic gitlet repository in the current directory for
+ *  load and scale testing. Commits, branches and merges are made in
+ *  memory and written through the same Commit, Tree and Stage code the
+ *  commands use, without a JVM or a working directory rewrite per
+ *  commit. The same profile and seed always produce the same history,
+ *  apart from commit timestamps.
+ *
+ *  Usage: java gitlet.Generator [--commits N] [--files N] [--churn PERCENT]
+ *  [--branches N] [--merge-every N] [--min-size BYTES] [--max-size BYTES]
+ *  [--binary PERCENT] [--seed N]
+ *  @author Chris Seo
+ */
+public class Generator {
+
+    /** Size of the pool synthetic file contents are cut from. */
+    static final int POOL_SIZE = 1 << 22;
+
+    /** Characters text files are made of. */
+    static final String ALPHABET = "abcdefghijklmnopqrstuvwxyz0123456789 \n";
+
+    /** Generates a repository.
+     * @param args options, see the class comment */
+    public static void main(String... args) {
+        LinkedHashMap<String, Integer> profile = new LinkedHashMap<>();
+        profile.put("--commits", 1000);
+        profile.put("--files", 100);
+        profile.put("--churn", 5);
+        profile.put("--branches", 1);
+        profile.put("--merge-every", 0);
+        profile.put("--min-size", 64);
+        profile.put("--max-size", 4096);
+        profile.put("--binary", 0);
+        profile.put("--seed", 61);
+        for (int i = 0; i + 1 < args.length; i += 2) {
+            if (!profile.containsKey(args[i])) {
+                throw new IllegalArgumentException("unknown option "
+                        + args[i]);
+            }
+            profile.put(args[i], Integer.parseInt(args[i + 1]));
+        }
+        if (Main.GITLET_DIR.exists()) {
+            Utils.exit("A Gitlet version-control system "
+                    + "already exists in the current directory.");
+        }
+        long start = System.nanoTime();
+        new Generator(profile).generate();
+        System.out.printf("Generated %s in %.1f s.%n", profile,
+                (System.nanoTime() - start) / 1e9);
+    }
+
+    /** Constructor for a generator.
+     * @param profile option name mapped to value */
+    Generator(LinkedHashMap<String, Integer> profile) {
+        _profile = profile;
+        _random = new Random(profile.get("--seed"));
+        StringBuilder text = new StringBuilder(POOL_SIZE);
+        StringBuilder binary = new StringBuilder(POOL_SIZE);
+        for (int i = 0; i < POOL_SIZE; i++) {
+            text.append(ALPHABET.charAt(_random.nextInt(ALPHABET.length())));
+            binary.append((char) _random.nextInt(256));
+        }
+        _textPool = text.toString();
+        _binaryPool = binary.toString();
+    }
+
+    /** Writes the repository: one line of development per branch, each
+     *  commit changing a share of the files, the current line merging in
+     *  another every so often, and master's files in the working
+     *  directory at the end. */
+    void generate() {
+        Main.GITLET_DIR.mkdir();
+        new Stage();
+        Tree tree = new Tree();
+        Commit initial = tree.getCurrHead();
+        HashMap<String, Blob> files = new HashMap<>();
+        for (int i = 0; i < _profile.get("--files"); i++) {
+            String fileName = "file" + i;
+            files.put(fileName, newBlob(fileName));
+        }
+        int branchCount = Math.max(1, _profile.get("--branches"));
+        ArrayList<String> branchNames = new ArrayList<>();
+        ArrayList<Commit> heads = new ArrayList<>();
+        Commit first = commit(tree, "generated commit 0", initial, files,
+                null);
+        for (int b = 0; b < branchCount; b++) {
+            branchNames.add(b == 0 ? "master" : "branch" + b);
+            heads.add(first);
+        }
+        int churn = Math.max(1, _profile.get("--files")
+                * _profile.get("--churn") / 100);
+        int mergeEvery = _profile.get("--merge-every");
+        for (int c = 1; c < _profile.get("--commits"); c++) {
+            int b = _random.nextInt(branchCount);
+            Commit head = heads.get(b);
+            HashMap<String, Blob> blobs = new HashMap<>(head.getBlobs());
+            Commit other = null;
+            if (mergeEvery > 0 && branchCount > 1 && c % mergeEvery == 0) {
+                other = heads.get((b + 1 + _random.nextInt(branchCount - 1))
+                        % branchCount);
+                blobs.putAll(other.getBlobs());
+            } else {
+                for (int i = 0; i < churn; i++) {
+                    String fileName = "file"
+                            + _random.nextInt(_profile.get("--files"));
+                    blobs.put(fileName, newBlob(fileName));
+                }
+            }
+            heads.set(b, commit(tree, "generated commit " + c, head, blobs,
+                    other));
+        }
+        for (int b = 0; b < branchCount; b++) {
+            tree.setBranchHead(branchNames.get(b), heads.get(b));
+        }
+        tree.saveTo(Tree.TREE_DIR);
+        for (Blob blob : heads.get(0).getBlobs().values()) {
+            Utils.writeContents(Utils.join(Main.WORKING_DIR, blob.getName()),
+                    blob.getContents());
+        }
+    }
+
+    /** Makes and saves a commit.
+     * @param tree tree being generated
+     * @param message commit message
+     * @param parent first parent
+     * @param blobs files of the commit
+     * @param parent2 merged-in parent, or null
+     * @return the commit */
+    private Commit commit(Tree tree, String message, Commit parent,
+                          HashMap<String, Blob> blobs, Commit parent2) {
+        Commit commit = new Commit(message, parent.getID(), blobs,
+                parent2 != null, false);
+        if (parent2 != null) {
+            commit.setParent2ID(parent2.getID());
+        }
+        Tree.createCommitFile(commit);
+        tree.addCommits(List.of(commit.getID()));
+        return commit;
+    }
+
+    /** Returns a blob with new contents, sized log-uniformly between the
+     *  profile's minimum and maximum.
+     * @param fileName name of the file
+     * @return blob */
+    private Blob newBlob(String fileName) {
+        double min = Math.log(Math.max(1, _profile.get("--min-size")));
+        double max = Math.log(Math.max(1, _profile.get("--max-size")));
+        int size = (int) Math.min(POOL_SIZE,
+                Math.exp(min + _random.nextDouble() * (max - min)));
+        String pool = _random.nextInt(100) < _profile.get("--binary")
+                ? _binaryPool : _textPool;
+        int offset = _random.nextInt(POOL_SIZE - size + 1);
+        return new Blob(fileName, pool.substring(offset, offset + size));
+    }
+
+    /** Option name mapped to value. */
+    private final LinkedHashMap<String, Integer> _profile;
+
+    /** Source of every random choice. */
+    private final Random _random;
+
+    /** Text contents are cut from this. */
+    private final String _textPool;
+
+    /** Binary contents are cut from this. */
+    private final String _binaryPool;
+}
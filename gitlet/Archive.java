@@ -1,7 +1,18 @@
 package gitlet;
 
 import java.io.File;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.OffsetDateTime;
+import java.time.ZoneId;
+import java.time.format.DateTimeParseException;
+import java.time.temporal.ChronoUnit;
 import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
 
 /** Handles commands related to viewing archived commits.
  *  @author Chris Seo
@@ -14,66 +25,176 @@ public class Archive {
     /** Gitlet directory, where gitlet is stored. */
     static final File GITLET_DIR = Main.GITLET_DIR;
 
-    /** Handles the log command for branch and global.
-     * @param global true if log should be global */
-    public static void doLog(boolean global) {
-        Tree workingTree = Utils.readObject(TREE_DIR, Tree.class);
-        if (global) {
-            for (String commitID : workingTree.getAllCommits()) {
-                File commitFile = findFromGitletDir(commitID);
-                Commit commit = Utils.readObject(commitFile, Commit.class);
-                System.out.println("===\n"
-                        + "commit " + commit.getID() + "\n"
-                        + "Date: " + commit.getTimestamp() + "\n"
-                        + commit.getMessage() + "\n");
+    /** Handles the log command for branch and global. The branch log
+     *  follows first parents back from the head; the global log walks the
+     *  time index back from the newest commit. Both stop as soon as they
+     *  pass the earliest time asked for or have printed enough commits.
+     * @param global true if log should be global
+     * @param args takes log or global-log, optionally + -n + count,
+     *             --since + date and --until + date */
+    public static void doLog(boolean global, String[] args) {
+        long since = Long.MIN_VALUE;
+        long until = Long.MAX_VALUE;
+        int limit = Integer.MAX_VALUE;
+        for (int i = 1; i < args.length; i += 1) {
+            String option = args[i];
+            String value;
+            if (option.contains("=")) {
+                value = option.substring(option.indexOf('=') + 1);
+                option = option.substring(0, option.indexOf('='));
+            } else if (i + 1 < args.length) {
+                i += 1;
+                value = args[i];
+            } else {
+                Utils.exit("Incorrect operands.");
+                return;
+            }
+            switch (option) {
+            case "-n":
+                try {
+                    limit = Integer.parseInt(value);
+                } catch (NumberFormatException excp) {
+                    Utils.exit("Incorrect operands.");
+                }
+                break;
+            case "--since":
+                since = parseTime(value, false);
+                break;
+            case "--until":
+                until = parseTime(value, true);
+                break;
+            default:
+                Utils.exit("Incorrect operands.");
             }
+        }
+        Tree workingTree = Utils.readMapped(TREE_DIR, Tree.class);
+        int[] printed = {0};
+        if (global) {
+            ensureIndexes(workingTree);
+            HashSet<String> allCommits = workingTree.getAllCommits();
+            int max = limit;
+            TimeIndex.newestFirst(GITLET_DIR, since, until, id -> {
+                if (allCommits.contains(id)) {
+                    print(Utils.readObject(Utils.join(GITLET_DIR, id),
+                            Commit.class));
+                    printed[0] += 1;
+                }
+                return printed[0] < max;
+            });
         } else {
             Commit currHead = workingTree.getCurrHead();
-            while (currHead != null) {
-                System.out.println("===\n"
-                        + "commit " + currHead.getID() + "\n"
-                        + "Date: " + currHead.getTimestamp() + "\n"
-                        + currHead.getMessage() + "\n");
+            while (currHead != null && printed[0] < limit
+                    && currHead.getTime() >= since) {
+                if (currHead.getTime() <= until) {
+                    print(currHead);
+                    printed[0] += 1;
+                }
                 currHead = currHead.getParent();
             }
         }
     }
 
-    /** Finds and returns a file from the .gitlet directory.
-     * @param fileName name of file to be returned
-     * @return file */
-    private static File findFromGitletDir(String fileName) {
-        for (File file : GITLET_DIR.listFiles()) {
-            if (!file.isDirectory()) {
-                if (file.getName().equals(fileName)) {
-                    return file;
+    /** Prints a commit as log shows it.
+     * @param commit commit to print */
+    private static void print(Commit commit) {
+        System.out.println("===\n"
+                + "commit " + commit.getID() + "\n"
+                + "Date: " + commit.getTimestamp() + "\n"
+                + commit.getMessage() + "\n");
+    }
+
+    /** Builds the time and message indexes of a repository made before
+     *  they existed.
+     * @param workingTree the tree */
+    @SuppressWarnings("try")
+    static void ensureIndexes(Tree workingTree) {
+        if (TimeIndex.exists(GITLET_DIR) && MessageIndex.exists(GITLET_DIR)) {
+            return;
+        }
+        File lockFile = new File(TREE_DIR.getPath() + ".lock");
+        try (FileChannel lock = Lock.waitFor(lockFile)) {
+            if (!TimeIndex.exists(GITLET_DIR)) {
+                TimeIndex.rebuild(GITLET_DIR, workingTree.getAllCommits());
+            }
+            if (!MessageIndex.exists(GITLET_DIR)) {
+                MessageIndex.rebuild(GITLET_DIR,
+                        workingTree.getAllCommits());
+            }
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+    }
+
+    /** Returns the time VALUE names, in milliseconds. Takes an ISO date,
+     *  which is the start of that day, or its end if END, an ISO date and
+     *  time, with or without an offset, or "N minutes|hours|days|weeks
+     *  ago".
+     * @param value time given
+     * @param end true if a bare date means the end of the day
+     * @return milliseconds since the epoch */
+    static long parseTime(String value, boolean end) {
+        String[] words = value.trim().split("\\s+");
+        try {
+            if (words.length == 3 && words[2].equals("ago")) {
+                long amount = Long.parseLong(words[0]);
+                String unit = words[1].endsWith("s") ? words[1]
+                        : words[1] + "s";
+                return System.currentTimeMillis() - amount
+                        * ChronoUnit.valueOf(unit.toUpperCase()).
+                        getDuration().toMillis();
+            } else if (value.length() == "yyyy-mm-dd".length()) {
+                LocalDate date = LocalDate.parse(value);
+                if (end) {
+                    date = date.plusDays(1);
                 }
+                return date.atStartOfDay(ZoneId.systemDefault()).
+                        toInstant().toEpochMilli() - (end ? 1 : 0);
+            } else if (value.endsWith("Z") || value.lastIndexOf('+') > 0
+                    || value.lastIndexOf('-') > "yyyy-mm-dd".length()) {
+                return OffsetDateTime.parse(value).toInstant().toEpochMilli();
             }
+            return LocalDateTime.parse(value).atZone(ZoneId.systemDefault()).
+                    toInstant().toEpochMilli();
+        } catch (DateTimeParseException | IllegalArgumentException excp) {
+            Utils.exit("Incorrect date: " + value);
+            return 0;
         }
-        return null;
     }
 
-    /** Does the find command.
-     * @param args takes find + message of commit */
+    /** Does the find command. Prints the IDs of the commits with the
+     *  given message, with a message that has the given word, or with a
+     *  message the given pattern matches part of, looked up in the message
+     *  index without reading any commit.
+     * @param args takes find + message of commit, find + --word + word, or
+     *             find + --grep + pattern */
     public static void doFind(String[] args) {
-        Tree workingTree = Utils.readObject(TREE_DIR, Tree.class);
+        Tree workingTree = Utils.readMapped(TREE_DIR, Tree.class);
+        ensureIndexes(workingTree);
         HashSet<String> allCommits = workingTree.getAllCommits();
-        String message = args[1];
-        HashSet<String> result = new HashSet<>();
-        for (File file : GITLET_DIR.listFiles()) {
-            if (!file.isDirectory()) {
-                if (allCommits.contains(file.getName())) {
-                    Commit currCommit = Utils.readObject(file, Commit.class);
-                    if (currCommit.getMessage().equals(message)) {
-                        System.out.println(currCommit.getID());
-                        result.add(currCommit.getID());
-                    }
-                }
+        LinkedHashSet<String> found;
+        if (args.length == 3 && args[1].equals("--grep")) {
+            try {
+                found = MessageIndex.matching(GITLET_DIR,
+                        Pattern.compile(args[2]));
+            } catch (PatternSyntaxException excp) {
+                Utils.exit("Incorrect pattern: " + excp.getDescription());
+                return;
             }
+        } else if (args.length == 3 && args[1].equals("--word")) {
+            found = MessageIndex.withWord(GITLET_DIR, args[2]);
+        } else if (args.length == 2) {
+            found = MessageIndex.withMessage(GITLET_DIR, args[1]);
+        } else {
+            Utils.exit("Incorrect operands.");
+            return;
         }
-        if (result.isEmpty()) {
+        found.retainAll(allCommits);
+        if (found.isEmpty()) {
             System.out.println("Found no commit with that message.");
             System.exit(0);
         }
+        for (String id : found) {
+            System.out.println(id);
+        }
     }
 }
@@ -0,0 +1,226 @@
+package gitlet;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.PriorityQueue;
+
+/** Finds the commit that last changed each line of a file. History is
+ *  walked from the current head, newest commit first, carrying only the
+ *  lines not yet attributed. Each commit's version is diffed against its
+ *  parents' alone; lines a parent has are passed to it, and the rest
+ *  belong to the commit. Where a parent has the same blob ID, every line
+ *  is passed on without splitting or diffing. The walk ends as soon as no
+ *  line is left. Results are cached in .gitlet/blame by commit and blob
+ *  ID, and a later walk that reaches a cached version stops there.
+ *  @author Chris Seo
+ */
+public class Blame {
+
+    /** Gitlet directory, where gitlet is stored. */
+    static final File GITLET_DIR = Main.GITLET_DIR;
+
+    /** Stores commit tree. */
+    static final File TREE_DIR = Tree.TREE_DIR;
+
+    /** Name of the cache directory in a gitlet directory. */
+    static final String CACHE_NAME = "blame";
+
+    /** Characters of a commit ID printed. */
+    static final int SHORT_ID = 8;
+
+    /** Handles the blame command. Prints each line of a file in the
+     *  current head with the ID and date of the commit that last changed
+     *  it.
+     * @param args takes blame + file name */
+    public static void doBlame(String[] args) {
+        Tree workingTree = Utils.readMapped(TREE_DIR, Tree.class);
+        Commit head = workingTree.getCurrHead();
+        String name = args[1];
+        Blob blob = head.getBlobs().get(name);
+        if (blob == null) {
+            Utils.exit("File does not exist in that commit.");
+        }
+        String[] lines = Diff.lines(blob.getContents());
+        String[] origins = new Blame(name).origins(head, lines.length);
+        String format = "%s (%s %" + String.valueOf(lines.length).length()
+                + "d) %s%n";
+        for (int i = 0; i < lines.length; i++) {
+            int space = origins[i].indexOf(' ');
+            System.out.printf(format, origins[i].substring(0, SHORT_ID),
+                    origins[i].substring(space + 1), i + 1, lines[i]);
+        }
+    }
+
+    /** Deletes the cached results for the commits named COMMITIDS, which
+     *  gc has deleted.
+     * @param gitletDir gitlet directory
+     * @param commitIDs IDs of deleted commits */
+    static void forget(File gitletDir, Collection<String> commitIDs) {
+        File[] cached = Utils.join(gitletDir, CACHE_NAME).listFiles();
+        if (cached == null || commitIDs.isEmpty()) {
+            return;
+        }
+        for (File file : cached) {
+            String name = file.getName();
+            int dot = name.indexOf('.');
+            if (dot > 0 && commitIDs.contains(name.substring(0, dot))) {
+                file.delete();
+            }
+        }
+    }
+
+    /** Constructor for a blame.
+     * @param name name of the file */
+    Blame(String name) {
+        _name = name;
+    }
+
+    /** Returns "ID TIMESTAMP" of the commit that last changed each line
+     *  of the file in HEAD, and caches it.
+     * @param head commit to start from
+     * @param count number of lines in HEAD's version
+     * @return origin of each line */
+    String[] origins(Commit head, int count) {
+        String blobID = head.getBlobs().get(_name).getID();
+        String[] cached = cached(head.getID(), blobID, count);
+        if (cached != null) {
+            return cached;
+        }
+        String[] result = new String[count];
+        ArrayList<int[]> all = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            all.add(new int[] {i, i});
+        }
+        HashMap<String, ArrayList<int[]>> pending = new HashMap<>();
+        HashMap<String, Commit> queued = new HashMap<>();
+        PriorityQueue<Commit> walk = new PriorityQueue<>(Comparator.
+                comparingLong(Commit::getTime).reversed().
+                thenComparing(Commit::getID));
+        if (count > 0) {
+            pending.put(head.getID(), all);
+            queued.put(head.getID(), head);
+            walk.add(head);
+        }
+        while (!walk.isEmpty()) {
+            Commit commit = walk.poll();
+            queued.remove(commit.getID());
+            ArrayList<int[]> lines = pending.remove(commit.getID());
+            Blob blob = commit.getBlobs().get(_name);
+            String[] known = cached(commit.getID(), blob.getID(), -1);
+            if (known != null) {
+                for (int[] line : lines) {
+                    result[line[1]] = known[line[0]];
+                }
+                continue;
+            }
+            String[] contents = null;
+            for (Commit parent : parents(commit, queued)) {
+                Blob older = parent.getBlobs().get(_name);
+                if (older == null || lines.isEmpty()) {
+                    continue;
+                }
+                ArrayList<int[]> passed;
+                if (older.getID().equals(blob.getID())) {
+                    passed = lines;
+                    lines = new ArrayList<>();
+                } else {
+                    if (contents == null) {
+                        contents = Diff.lines(blob.getContents());
+                    }
+                    int[] matches = Diff.matches(Diff.lines(
+                            older.getContents()), contents);
+                    passed = new ArrayList<>();
+                    ArrayList<int[]> kept = new ArrayList<>();
+                    for (int[] line : lines) {
+                        int match = matches[line[0]];
+                        if (match >= 0) {
+                            passed.add(new int[] {match, line[1]});
+                        } else {
+                            kept.add(line);
+                        }
+                    }
+                    lines = kept;
+                }
+                if (passed.isEmpty()) {
+                    continue;
+                }
+                ArrayList<int[]> waiting = pending.get(parent.getID());
+                if (waiting == null) {
+                    pending.put(parent.getID(), passed);
+                    queued.put(parent.getID(), parent);
+                    walk.add(parent);
+                } else {
+                    waiting.addAll(passed);
+                }
+            }
+            String origin = commit.getID() + " " + commit.getTimestamp();
+            for (int[] line : lines) {
+                result[line[1]] = origin;
+            }
+        }
+        cache(head.getID(), blobID, result);
+        return result;
+    }
+
+    /** Returns the parents of COMMIT, taking those already in QUEUED from
+     *  there instead of reading them again.
+     * @param commit a commit
+     * @param queued commits waiting to be visited, by ID
+     * @return its parents, first parent first */
+    private static ArrayList<Commit> parents(Commit commit,
+                                             HashMap<String, Commit> queued) {
+        ArrayList<Commit> result = new ArrayList<>();
+        for (String id : new String[] {commit.getParentID(),
+            commit.isMerge() ? commit.getParent2ID() : null}) {
+            if (id != null) {
+                Commit parent = queued.get(id);
+                result.add(parent != null ? parent : Utils.readObject(
+                        Utils.join(GITLET_DIR, id), Commit.class));
+            }
+        }
+        return result;
+    }
+
+    /** Returns the cached origins of the lines of the blob BLOBID in the
+     *  commit COMMITID, or null if there are none or they do not have
+     *  COUNT lines.
+     * @param commitID ID of the commit
+     * @param blobID ID of the file's blob in it
+     * @param count number of lines expected, or -1 for any
+     * @return origin of each line, or null */
+    private static String[] cached(String commitID, String blobID,
+                                   int count) {
+        File file = cacheFile(commitID, blobID);
+        if (!file.exists()) {
+            return null;
+        }
+        String[] result = Utils.readObject(file, String[].class);
+        return count < 0 || result.length == count ? result : null;
+    }
+
+    /** Caches ORIGINS for the blob BLOBID in the commit COMMITID. Commits
+     *  never change, so neither does a cached result.
+     * @param commitID ID of the commit
+     * @param blobID ID of the file's blob in it
+     * @param origins origin of each line */
+    private static void cache(String commitID, String blobID,
+                              String[] origins) {
+        File file = cacheFile(commitID, blobID);
+        file.getParentFile().mkdir();
+        Utils.replaceObject(file, origins, false);
+    }
+
+    /** Returns the cache file for the blob BLOBID in the commit COMMITID.
+     * @param commitID ID of the commit
+     * @param blobID ID of the file's blob in it
+     * @return cache file */
+    private static File cacheFile(String commitID, String blobID) {
+        return Utils.join(GITLET_DIR, CACHE_NAME, commitID + "." + blobID);
+    }
+
+    /** Name of the file blamed. */
+    private final String _name;
+}
@@ -1,24 +1,157 @@
 package gitlet;
 
 import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.ObjectOutputStream;
 import java.io.Serializable;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
 
-/** Blob class that holds contents and ID for a file.
+/** Blob class that holds contents and ID for a file. Files stored in
+ *  chunks, see Chunks, hold the chunk IDs instead of their contents.
+ *  Blobs of commits made with FileMaps are stored once each, under their
+ *  IDs, in .gitlet/blobs, and read from there only when their contents
+ *  are needed.
  *  @author Chris Seo
  */
 public class Blob implements Serializable {
 
+    /** Keeps blobs saved before this class changed readable. */
+    private static final long serialVersionUID = -574841705529180027L;
+
     /** String to be hashed in with contents for ID. */
     static final String BLOB_STR = "blob";
 
+    /** Name of the blob directory in a gitlet directory. */
+    static final String BLOBS_NAME = "blobs";
+
+    /** First byte of a stored blob that holds its contents. */
+    static final byte WHOLE = 'c';
+
+    /** First byte of a stored blob that holds its chunk IDs. */
+    static final byte CHUNKED = 'k';
+
     /** Constructor for Blob class.
      * @param file to be made blob of */
     public Blob(File file) {
-        _contents = Utils.readContentsAsString(file);
         _name = file.getName();
+        if (Chunks.isLarge(file)) {
+            _chunks = new ArrayList<>();
+            _identifier = Chunks.store(file, _chunks);
+        } else {
+            _contents = Utils.readContentsAsString(file);
+            generateID();
+        }
+    }
+
+    /** Constructor for a blob that has no file behind it.
+     * @param name file name
+     * @param contents file contents */
+    Blob(String name, String contents) {
+        _contents = contents;
+        _name = name;
         generateID();
     }
 
+    /** Returns the blob NAME, with ID, stored in GITLETDIR, without
+     *  reading it.
+     * @param gitletDir gitlet directory
+     * @param name file name
+     * @param id blob ID
+     * @return blob */
+    static Blob stored(File gitletDir, String name, String id) {
+        Blob blob = new Blob();
+        blob._name = name;
+        blob._identifier = id;
+        blob._dir = gitletDir;
+        return blob;
+    }
+
+    /** Constructor for a blob filled in by stored or decode. */
+    private Blob() {
+    }
+
+    /** Returns the file blob ID is stored in, under GITLETDIR. Blobs are
+     *  spread over subdirectories named by their first two digits.
+     * @param gitletDir gitlet directory
+     * @param id blob ID
+     * @return blob file */
+    static File file(File gitletDir, String id) {
+        return Utils.join(gitletDir, BLOBS_NAME, id.substring(0, 2),
+                id.substring(2));
+    }
+
+    /** Returns the IDs of the chunks blob ID is stored in under GITLETDIR,
+     *  or an empty list if it is stored whole, missing or unreadable. Of a
+     *  whole blob only the first byte is read.
+     * @param gitletDir gitlet directory
+     * @param id blob ID
+     * @return chunk IDs */
+    static List<String> chunksOf(File gitletDir, String id) {
+        File file = file(gitletDir, id);
+        try (InputStream in = new FileInputStream(file)) {
+            if (in.read() != CHUNKED) {
+                return List.of();
+            }
+            Blob blob = new Blob();
+            blob.fill(Utils.readContents(file));
+            return blob._chunks;
+        } catch (IOException excp) {
+            return List.of();
+        }
+    }
+
+    /** Stores the blob in GITLETDIR unless it is there already.
+     * @param gitletDir gitlet directory */
+    void store(File gitletDir) {
+        if (gitletDir.equals(_dir)) {
+            return;
+        }
+        File dest = file(gitletDir, _identifier);
+        if (!dest.exists()) {
+            byte[] bytes = encode();
+            Utils.writeNew(dest, bytes, 0, bytes.length);
+        }
+    }
+
+    /** Returns true if the blob is read from a blob file. */
+    boolean isStored() {
+        return _dir != null;
+    }
+
+    /** Returns the bytes the blob is stored as: WHOLE and its contents,
+     *  or CHUNKED and its chunk IDs. */
+    byte[] encode() {
+        load();
+        byte[] body = (_chunks != null ? String.join("", _chunks)
+                : _contents).getBytes(StandardCharsets.UTF_8);
+        byte[] result = new byte[body.length + 1];
+        result[0] = _chunks != null ? CHUNKED : WHOLE;
+        System.arraycopy(body, 0, result, 1, body.length);
+        return result;
+    }
+
+    /** Returns the blob NAME stored as BYTES, with its ID recomputed from
+     *  them, so that blobs received from elsewhere can be checked.
+     * @param gitletDir gitlet directory holding its chunks
+     * @param name file name
+     * @param bytes stored blob
+     * @return blob
+     * @throws IOException if the bytes are not a blob or a chunk is
+     *         missing */
+    static Blob decode(File gitletDir, String name, byte[] bytes)
+        throws IOException {
+        Blob blob = new Blob();
+        blob._name = name;
+        blob.fill(bytes);
+        blob._identifier = blob.rehash(gitletDir);
+        return blob;
+    }
+
     /** Returns name of blob. */
     public String getName() {
         return _name;
@@ -29,17 +162,152 @@ public class Blob implements Serializable {
         _identifier = Utils.sha1(_contents, BLOB_STR);
     }
 
-    /** Returns the contents of the blob. */
+    /** Returns the ID of the blob. */
+    public String getID() {
+        return _identifier;
+    }
+
+    /** Returns the ID a blob made from FILE would have, without making it.
+     * @param file file to be hashed
+     * @return blob ID */
+    public static String idOf(File file) {
+        if (Chunks.isLarge(file)) {
+            return Chunks.idOf(file);
+        }
+        return Utils.sha1(Utils.readContentsAsString(file), BLOB_STR);
+    }
+
+    /** Returns the contents of the blob, reassembling them if it is
+     *  stored in chunks. */
     public String getContents() {
+        load();
+        if (_chunks != null) {
+            return new String(Chunks.read(_chunks), StandardCharsets.UTF_8);
+        }
         return _contents;
     }
 
+    /** Returns true if the blob is stored in chunks. */
+    public boolean isChunked() {
+        load();
+        return _chunks != null;
+    }
+
+    /** Returns the IDs of the blob's chunks, or null if it is stored
+     *  whole. */
+    public List<String> getChunks() {
+        load();
+        return _chunks;
+    }
+
+    /** Writes the contents of the blob to DEST. Chunks are transferred
+     *  from their files without passing through the heap, and contents
+     *  held in the blob are encoded once and written straight from that
+     *  array.
+     * @param dest file to write */
+    public void writeTo(File dest) {
+        load();
+        if (_chunks != null) {
+            Chunks.write(_chunks, dest);
+            return;
+        }
+        long start = Trace.start();
+        byte[] bytes = _contents.getBytes(StandardCharsets.UTF_8);
+        try {
+            Files.write(dest.toPath(), bytes);
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+        Trace.count("bytes_written", bytes.length);
+        Trace.end("writeContents", start);
+    }
+
+    /** Returns the ID the blob's contents hash to now, which differs from
+     *  its ID if they are corrupt.
+     * @param gitletDir gitlet directory holding its chunks
+     * @return blob ID
+     * @throws IOException if a chunk is missing */
+    String rehash(File gitletDir) throws IOException {
+        try {
+            load();
+        } catch (IllegalArgumentException excp) {
+            throw new IOException(excp.getMessage());
+        }
+        if (_chunks != null) {
+            return Chunks.rehash(gitletDir, _chunks);
+        }
+        return Utils.sha1(_contents, BLOB_STR);
+    }
+
+    /** Reads the contents or chunk IDs of a stored blob, once.
+     * @throws IllegalArgumentException if the blob file is missing or
+     *         is not a blob */
+    private void load() {
+        if (_dir == null || _loaded) {
+            return;
+        }
+        File file = file(_dir, _identifier);
+        if (!file.isFile()) {
+            throw new IllegalArgumentException("missing blob "
+                    + _identifier);
+        }
+        try {
+            fill(Utils.readContents(file));
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+        _loaded = true;
+    }
+
+    /** Sets the contents or chunk IDs from BYTES, a stored blob.
+     * @param bytes stored blob
+     * @throws IOException if BYTES is not a blob */
+    private void fill(byte[] bytes) throws IOException {
+        String body = new String(bytes, 1, Math.max(bytes.length - 1, 0),
+                StandardCharsets.UTF_8);
+        if (bytes.length > 0 && bytes[0] == WHOLE) {
+            _contents = body;
+        } else if (bytes.length > 0 && bytes[0] == CHUNKED
+                && body.length() % Utils.UID_LENGTH == 0) {
+            _chunks = new ArrayList<>();
+            for (int i = 0; i < body.length(); i += Utils.UID_LENGTH) {
+                String chunk = body.substring(i, i + Utils.UID_LENGTH);
+                if (!Utils.isID(chunk)) {
+                    throw new IOException("not a blob");
+                }
+                _chunks.add(chunk);
+            }
+        } else {
+            throw new IOException("not a blob");
+        }
+    }
+
+    /** Reads a stored blob's contents before the blob is serialized, so
+     *  that it can be read without its blob file.
+     * @param out stream to write to
+     * @throws IOException if the stream cannot be written */
+    private void writeObject(ObjectOutputStream out) throws IOException {
+        load();
+        out.defaultWriteObject();
+    }
+
     /** Name of blob. */
     private String _name;
 
     /** ID for blob. */
     private String _identifier;
 
-    /** Contents of blob. */
+    /** Contents of blob, or null if it is stored in chunks. */
     private String _contents;
+
+    /** IDs of the chunks of blob, in order, or null if it is stored
+     *  whole. */
+    private ArrayList<String> _chunks;
+
+    /** Gitlet directory the blob is stored in, if it is read from
+     *  there. */
+    private transient File _dir;
+
+    /** Whether a stored blob has been read. */
+    private transient boolean _loaded;
 }
@@ -4,6 +4,7 @@ import java.io.File;
 import java.io.IOException;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.Map;
 
 /** Handles checkouts.
  *  @author Chris Seo
@@ -46,7 +47,7 @@ public class Checkout {
     /** Handles checkout for a given file in current head commit.
      * @param input file name */
     public static void checkoutFile(String input) {
-        Tree workingTree = Utils.readObject(TREE_DIR, Tree.class);
+        Tree workingTree = Utils.readMapped(TREE_DIR, Tree.class);
         if (workingTree.getCurrHead().getBlobs().containsKey(input)) {
             Commit currHead = workingTree.getCurrHead();
             checkoutHelper(currHead, input);
@@ -59,7 +60,7 @@ public class Checkout {
      * @param fileInput file name in commit ID
      * @param commitID commit ID */
     public static void checkoutCommitFile(String fileInput, String commitID) {
-        Tree workingTree = Utils.readObject(TREE_DIR, Tree.class);
+        Tree workingTree = Utils.readMapped(TREE_DIR, Tree.class);
         commitID = Utils.checkAbbreviated(commitID);
         if (workingTree.getAllCommits().contains(commitID)) {
             Commit selectedCommit =
@@ -78,11 +79,15 @@ public class Checkout {
     /** Handles checkout of branch.
      * @param branchName takes branch name */
     public static void checkoutBranch(String branchName) {
-        Tree workingTree = Utils.readObject(TREE_DIR, Tree.class);
+        Tree workingTree = Utils.readMapped(TREE_DIR, Tree.class);
         if (workingTree.getBranches().containsKey(branchName)) {
             if (branchName.equals(workingTree.currentBranch())) {
                 Utils.exit("No need to checkout the current branch.");
             }
+            if (workingTree.checkedOutElsewhere(branchName)) {
+                Utils.exit("That branch is checked out in another "
+                        + "worktree.");
+            }
             Commit selectedCommit = workingTree.getHead(branchName);
             Commit currCommit = workingTree.getCurrHead();
             if (trackedTest(currCommit, selectedCommit)) {
@@ -105,8 +110,7 @@ public class Checkout {
      * @param fileName name of file */
     public static void checkoutHelper(Commit commit, String fileName) {
         File dest = Utils.join(WORKING_DIR, fileName);
-        String newContents =
-                commit.getBlobs().get(fileName).getContents();
+        Blob blob = commit.getBlobs().get(fileName);
         if (!dest.exists()) {
             try {
                 dest.createNewFile();
@@ -114,34 +118,45 @@ public class Checkout {
                 return;
             }
         }
-        Utils.writeContents(dest, newContents);
+        blob.writeTo(dest);
     }
 
     /** Writes the files from inputted commit to working directory.
      *  Overwrites and creates new files as necessary. Also deletes
-     *  files to match commit.
+     *  files to match commit. Files left out by sparse checkout are not
+     *  written.
      * @param commit commit to select from
      * @param fromCommit commit selecting to */
     public static void checkoutHelper(Commit commit, Commit fromCommit) {
-        HashMap<String, Blob> blobs = commit.getBlobs();
-        HashMap<String, Blob> fromBlobs = fromCommit.getBlobs();
+        Map<String, Blob> blobs = commit.getBlobs();
+        Map<String, Blob> fromBlobs = fromCommit.getBlobs();
         HashSet<String> fileNames = new HashSet<>();
 
+        long start = Trace.start();
         for (File file : WORKING_DIR.listFiles()) {
+            Trace.count("files_stated", 1);
             if (!file.isDirectory()) {
                 String fileName = file.getName();
                 fileNames.add(fileName);
             }
         }
+        Trace.end("scan", start);
+        Events.CheckoutEvent event = null;
+        if (Events.recording()) {
+            event = new Events.CheckoutEvent();
+            event.begin();
+        }
+        int deleted = 0;
+        int written = 0;
         for (String fileName : fileNames) {
             if (!blobs.containsKey(fileName) && fromBlobs.
                     containsKey(fileName)) {
                 File file = Utils.join(WORKING_DIR, fileName);
                 file.delete();
+                deleted += 1;
             }
         }
-        for (String blobName : blobs.keySet()) {
-            String newContents = blobs.get(blobName).getContents();
+        for (String blobName : Sparse.select(blobs)) {
             File workingFile = Utils.join(WORKING_DIR, blobName);
             if (!fileNames.contains(blobName)) {
                 try {
@@ -150,7 +165,14 @@ public class Checkout {
                     return;
                 }
             }
-            Utils.writeContents(workingFile, newContents);
+            blobs.get(blobName).writeTo(workingFile);
+            written += 1;
+        }
+        if (event != null && event.shouldCommit()) {
+            event.commit = commit.getID();
+            event.filesDeleted = deleted;
+            event.filesWritten = written;
+            event.commit();
         }
     }
 
@@ -159,16 +181,9 @@ public class Checkout {
      * @param commit commit to be surveyed
      * @return a hashset containing the untracked file names */
     public static HashSet<String> everythingTracked(Commit commit) {
-        HashMap<String, Blob> blobs = commit.getBlobs();
-        HashSet<String> fileNames = new HashSet<>();
+        Map<String, Blob> blobs = commit.getBlobs();
         HashSet<String> result = new HashSet<>();
-        for (File file : WORKING_DIR.listFiles()) {
-            if (!file.isDirectory()) {
-                String fileName = file.getName();
-                fileNames.add(fileName);
-            }
-        }
-        for (String file : fileNames) {
+        for (String file : WorkingDir.files()) {
             if (!blobs.containsKey(file)) {
                 result.add(file);
             }
@@ -183,7 +198,7 @@ public class Checkout {
      * @return true if both untracked */
     public static boolean trackedTest(Commit currCommit,
                                         Commit selectedCom) {
-        HashMap<String, Blob> blobs = selectedCom.getBlobs();
+        Map<String, Blob> blobs = selectedCom.getBlobs();
         for (String el : everythingTracked(currCommit)) {
             if (blobs.containsKey(el)) {
                 return false;
@@ -0,0 +1,275 @@
+package gitlet;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Random;
+
+/** Storage for large files in pieces. Once largefile.threshold is set,
+ *  files at least that big are cut, FastCDC style, where a rolling gear
+ *  hash of the last bytes read matches a mask, so cut points move with
+ *  the contents rather than with offsets and an edit only changes the
+ *  chunks around it. Each chunk is kept once, under the SHA-1 of its
+ *  bytes, in .gitlet/chunks, and the blob keeps the list of chunk IDs.
+ *  Files are read, hashed and cut as a stream, never whole.
+ *  @author Chris Seo
+ */
+public class Chunks {
+
+    /** Gitlet directory, where gitlet is stored. */
+    static final File GITLET_DIR = Main.GITLET_DIR;
+
+    /** Name of the chunk directory in a gitlet directory. */
+    static final String CHUNKS_NAME = "chunks";
+
+    /** Default smallest chunk, in bytes. */
+    static final int DEFAULT_MIN = 16 * 1024;
+
+    /** Default chunk size aimed for, in bytes. */
+    static final int DEFAULT_AVERAGE = 64 * 1024;
+
+    /** Default largest chunk, in bytes. */
+    static final int DEFAULT_MAX = 256 * 1024;
+
+    /** Largest chunk.max allowed, so that the buffer of two chunks files
+     *  are cut in fits in an array. */
+    static final int MAX_CHUNK = (Integer.MAX_VALUE - 8) / 2;
+
+    /** Random value added into the hash for each byte value. */
+    static final long[] GEAR = new long[256];
+
+    static {
+        Random random = new Random(0x6769746c6574L);
+        for (int i = 0; i < GEAR.length; i++) {
+            GEAR[i] = random.nextLong();
+        }
+    }
+
+    /** Returns true if FILE is big enough to be stored in chunks.
+     * @param file a file
+     * @return true if it should be chunked */
+    static boolean isLarge(File file) {
+        long threshold = Config.getLong(Config.LARGE_FILE_THRESHOLD, 0);
+        return threshold > 0 && file.length() >= threshold;
+    }
+
+    /** Cuts FILE into chunks, storing those not stored yet, and adds
+     *  their IDs, in order, to IDS.
+     * @param file file to store
+     * @param ids list to add chunk IDs to
+     * @return blob ID of the file */
+    static String store(File file, List<String> ids) {
+        return cut(file, ids);
+    }
+
+    /** Returns the blob ID FILE would have if stored, without storing it.
+     * @param file a file
+     * @return blob ID */
+    static String idOf(File file) {
+        return cut(file, null);
+    }
+
+    /** Writes the chunks named IDS, in order, to DEST. Each chunk file
+     *  is transferred into DEST by the kernel, without being copied
+     *  through the heap.
+     * @param ids chunk IDs
+     * @param dest file to write */
+    static void write(List<String> ids, File dest) {
+        long start = Trace.start();
+        try (FileChannel out = FileChannel.open(dest.toPath(),
+                StandardOpenOption.WRITE, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            for (String id : ids) {
+                try (FileChannel in = FileChannel.open(file(GITLET_DIR,
+                        id).toPath(), StandardOpenOption.READ)) {
+                    long size = in.size();
+                    for (long done = 0; done < size; ) {
+                        done += in.transferTo(done, size - done, out);
+                    }
+                    Trace.count("bytes_written", size);
+                }
+            }
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+        Trace.end("writeChunks", start);
+    }
+
+    /** Returns the bytes of the chunks named IDS, in order.
+     * @param ids chunk IDs
+     * @return contents */
+    static byte[] read(List<String> ids) {
+        ArrayList<byte[]> chunks = new ArrayList<>();
+        int size = 0;
+        for (String id : ids) {
+            byte[] chunk = Utils.readContents(file(GITLET_DIR, id));
+            chunks.add(chunk);
+            size += chunk.length;
+        }
+        byte[] result = new byte[size];
+        int position = 0;
+        for (byte[] chunk : chunks) {
+            System.arraycopy(chunk, 0, result, position, chunk.length);
+            position += chunk.length;
+        }
+        return result;
+    }
+
+    /** Returns the blob ID of the chunks named IDS, recomputed from their
+     *  stored bytes.
+     * @param dir gitlet directory holding the chunks
+     * @param ids chunk IDs
+     * @return blob ID
+     * @throws IOException if a chunk is missing */
+    static String rehash(File dir, List<String> ids) throws IOException {
+        MessageDigest blob = digest();
+        for (String id : ids) {
+            File chunk = file(dir, id);
+            if (!chunk.exists()) {
+                throw new IOException("missing chunk " + id);
+            }
+            blob.update(Files.readAllBytes(chunk.toPath()));
+        }
+        blob.update(Blob.BLOB_STR.getBytes(StandardCharsets.UTF_8));
+        return HexFormat.of().formatHex(blob.digest());
+    }
+
+    /** Returns the file chunk ID is stored in, under DIR. Chunks are
+     *  spread over subdirectories named by their first two digits.
+     * @param dir gitlet directory
+     * @param id chunk ID
+     * @return chunk file */
+    static File file(File dir, String id) {
+        return Utils.join(dir, CHUNKS_NAME, id.substring(0, 2),
+                id.substring(2));
+    }
+
+    /** Stores the chunk ID, with contents BYTES[OFFSET..OFFSET+LENGTH),
+     *  in DIR unless it is there already.
+     * @param dir gitlet directory
+     * @param id chunk ID
+     * @param bytes buffer holding the chunk
+     * @param offset start of the chunk in BYTES
+     * @param length size of the chunk */
+    static void save(File dir, String id, byte[] bytes, int offset,
+                     int length) {
+        Utils.writeNew(file(dir, id), bytes, offset, length);
+    }
+
+    /** Reads FILE once, hashing it whole and cutting it into chunks. If
+     *  IDS is not null, chunk IDs are added to it and new chunks stored.
+     * @param file file to read
+     * @param ids list to add chunk IDs to, or null
+     * @return blob ID of the file */
+    private static String cut(File file, List<String> ids) {
+        int[] sizes = Config.chunkSizes();
+        int min = sizes[0];
+        int average = sizes[1];
+        int max = sizes[2];
+        int bits = 63 - Long.numberOfLeadingZeros(average);
+        long small = mask(bits + 1);
+        long large = mask(bits - 1);
+        MessageDigest blob = digest();
+        MessageDigest chunk = digest();
+        HexFormat hex = HexFormat.of();
+        byte[] buffer = new byte[2 * max];
+        int start = 0;
+        int end = 0;
+        long started = Trace.start();
+        try (InputStream in = new FileInputStream(file)) {
+            boolean more = true;
+            while (more || start < end) {
+                if (more && end - start < max) {
+                    System.arraycopy(buffer, start, buffer, 0, end - start);
+                    end -= start;
+                    start = 0;
+                    end += in.readNBytes(buffer, end, buffer.length - end);
+                    more = end == buffer.length;
+                }
+                int length = cutPoint(buffer, start, Math.min(end - start,
+                        max), min, average, small, large);
+                blob.update(buffer, start, length);
+                if (ids != null) {
+                    chunk.update(buffer, start, length);
+                    String id = hex.formatHex(chunk.digest());
+                    save(GITLET_DIR, id, buffer, start, length);
+                    ids.add(id);
+                }
+                start += length;
+            }
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+        Trace.end("chunk", started);
+        blob.update(Blob.BLOB_STR.getBytes(StandardCharsets.UTF_8));
+        return hex.formatHex(blob.digest());
+    }
+
+    /** Returns the length of the chunk starting at BYTES[OFFSET], at most
+     *  LENGTH. Bytes before MIN are skipped. Until AVERAGE the stricter
+     *  mask SMALL must match, and after it the looser LARGE, which pulls
+     *  chunk sizes towards AVERAGE.
+     * @param bytes buffer
+     * @param offset start of the chunk
+     * @param length bytes available, no more than the largest chunk
+     * @param min smallest chunk
+     * @param average chunk size aimed for
+     * @param small mask used before AVERAGE
+     * @param large mask used after AVERAGE
+     * @return length of the chunk */
+    private static int cutPoint(byte[] bytes, int offset, int length,
+                                int min, int average, long small,
+                                long large) {
+        if (length <= min) {
+            return length;
+        }
+        int normal = Math.min(average, length);
+        long hash = 0;
+        int i = min;
+        for (; i < normal; i++) {
+            hash = (hash << 1) + GEAR[bytes[offset + i] & 0xff];
+            if ((hash & small) == 0) {
+                return i + 1;
+            }
+        }
+        for (; i < length; i++) {
+            hash = (hash << 1) + GEAR[bytes[offset + i] & 0xff];
+            if ((hash & large) == 0) {
+                return i + 1;
+            }
+        }
+        return length;
+    }
+
+    /** Returns a mask of the top BITS bits of a hash. Each step shifts the
+     *  hash left, so its top bits depend on the most bytes.
+     * @param bits number of bits
+     * @return mask */
+    private static long mask(int bits) {
+        return bits <= 0 ? 0 : -1L << (64 - Math.min(bits, 63));
+    }
+
+    /** Returns a new SHA-1 digest.
+     * @return digest */
+    private static MessageDigest digest() {
+        try {
+            return MessageDigest.getInstance("SHA-1");
+        } catch (NoSuchAlgorithmException excp) {
+            throw new IllegalArgumentException("System does not support "
+                    + "SHA-1");
+        }
+    }
+}
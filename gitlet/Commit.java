@@ -2,55 +2,87 @@ package gitlet;
 
 import java.io.File;
 import java.io.Serializable;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
 import java.time.ZonedDateTime;
 import java.time.format.DateTimeFormatter;
 import java.util.HashMap;
+import java.util.Map;
 
 /** Class that contains file blobs, a commit message, references to parents,
- *  and a timestamp of creation.
+ *  and a timestamp of creation. The blobs are kept in a FileMap, of which
+ *  the commit stores only the root node's ID; commits made before that
+ *  hold theirs in a HashMap.
  *  @author Chris Seo
  */
 public class Commit implements Serializable {
 
+    /** Keeps commits saved before this class changed readable. */
+    private static final long serialVersionUID = 6987877890503560581L;
+
     /** Message of initial commit. */
     static final String COMMIT_STR = "commit";
 
     /** Date of initial commit. */
     static final String INIT_DATE = "Wed Dec 31 16:00:00 1969 -0800";
 
+    /** Zone offset, in seconds, of the initial commit's date. */
+    static final int INIT_OFFSET = -8 * 60 * 60;
+
+    /** Format of commit dates. */
+    static final DateTimeFormatter DATE_FORMAT =
+            DateTimeFormatter.ofPattern("EEE LLL dd HH:mm:ss yyyy Z");
+
     /** Gitlet directory, where gitlet is stored. */
     static final File GITLET_DIR = Main.GITLET_DIR;
 
     /** Constructor for commit.
      * @param message message of commit
      * @param parent parent's ID
-     * @param blobs blobs stored
+     * @param blobs blobs stored, best a FileMap made from the parent's
      * @param isMerge true if commit is a merge commit
      * @param isInitial true if commit is initial commit */
     public Commit(String message, String parent,
-                  HashMap<String, Blob> blobs, boolean isMerge,
+                  Map<String, Blob> blobs, boolean isMerge,
                                                 boolean isInitial) {
         if (isInitial) {
-            _timestamp = INIT_DATE;
+            _time = 0;
+            _offset = INIT_OFFSET;
         } else {
-            String date = DateTimeFormatter.ofPattern("EEE " + "LLL " + "dd "
-                    + "HH:mm:ss " + "yyyy " + "Z").
-                    format(ZonedDateTime.now());
-            _timestamp = date;
+            _time = System.currentTimeMillis();
+            _offset = ZoneId.systemDefault().getRules().
+                    getOffset(Instant.ofEpochMilli(_time)).getTotalSeconds();
         }
         _parent2 = null;
         _message = message;
         _parent = parent;
-        _blobs = blobs;
+        _files = FileMap.of(GITLET_DIR, blobs);
+        _root = _files.save();
         _isMerge = isMerge;
         generateID();
     }
 
-    /** Return timestamp. */
+    /** Return timestamp, formatted in the zone it was made in. */
     public String getTimestamp() {
+        if (_timestamp == null) {
+            _timestamp = DATE_FORMAT.format(Instant.ofEpochMilli(_time).
+                    atOffset(ZoneOffset.ofTotalSeconds(_offset)));
+        }
         return _timestamp;
     }
 
+    /** Return the time the commit was made, in milliseconds since the
+     *  epoch. Commits saved before times were stored have theirs parsed
+     *  from the timestamp. */
+    public long getTime() {
+        if (_time == 0 && _timestamp != null && !_timestamp.equals(INIT_DATE)) {
+            _time = ZonedDateTime.parse(_timestamp, DATE_FORMAT).toInstant().
+                    toEpochMilli();
+        }
+        return _time;
+    }
+
     /** Return the commit message. */
     public String getMessage() {
         return _message;
@@ -74,6 +106,16 @@ public class Commit implements Serializable {
         return null;
     }
 
+    /** Return the ID of the parent of the commit, or null. */
+    public String getParentID() {
+        return _parent;
+    }
+
+    /** Return the ID of the merged-in parent of the commit, or null. */
+    public String getParent2ID() {
+        return _parent2;
+    }
+
     /** Set the merged in parent.
      * @param parent2ID merged in parent iD */
     public void setParent2ID(String parent2ID) {
@@ -86,8 +128,30 @@ public class Commit implements Serializable {
     }
 
     /** Return the blobs of the commit. */
-    public HashMap<String, Blob> getBlobs() {
-        return _blobs;
+    public Map<String, Blob> getBlobs() {
+        if (_blobs != null) {
+            return _blobs;
+        }
+        if (_files == null) {
+            _files = FileMap.open(GITLET_DIR, _root);
+        }
+        return _files;
+    }
+
+    /** Return the blobs of the commit, with nodes read from GITLETDIR,
+     *  for commits read from another repository.
+     * @param gitletDir gitlet directory the commit is in */
+    Map<String, Blob> getBlobs(File gitletDir) {
+        if (_blobs != null) {
+            return _blobs;
+        }
+        return FileMap.open(gitletDir, _root);
+    }
+
+    /** Return the ID of the root node of the commit's FileMap, or null if
+     *  it has no files or holds them in a HashMap. */
+    String getRootID() {
+        return _root;
     }
 
     /** Generate the commit ID. */
@@ -96,6 +160,27 @@ public class Commit implements Serializable {
         _identifier = Utils.sha1(thisAsBytes, COMMIT_STR);
     }
 
+    /** Returns the ID the commit's contents hash to, the way generateID
+     *  made it, before the ID and the merged-in parent were set, so that
+     *  stored and received commits can be checked. Returns null for
+     *  commits that keep their files in a HashMap, which were hashed by
+     *  earlier versions of this class. */
+    String contentID() {
+        if (_blobs != null) {
+            return null;
+        }
+        String identifier = _identifier;
+        String parent2 = _parent2;
+        _identifier = null;
+        _parent2 = null;
+        try {
+            return Utils.sha1(Utils.serialize(this), COMMIT_STR);
+        } finally {
+            _identifier = identifier;
+            _parent2 = parent2;
+        }
+    }
+
     /** Returns the ID of this commit. */
     public String getID() {
         return _identifier;
@@ -113,12 +198,26 @@ public class Commit implements Serializable {
     /** ID of commit. */
     private String _identifier;
 
-    /** Timestamp of the commit. */
+    /** Timestamp of commits saved before times were stored, or the
+     *  formatted time once asked for. Never set when the ID is made. */
     private String _timestamp;
 
+    /** Time the commit was made, in milliseconds since the epoch. */
+    private long _time;
+
+    /** Offset from UTC, in seconds, of the zone the commit was made in. */
+    private int _offset;
+
     /** Commit's message. */
     private String _message;
 
-    /** Blobs of the commit. */
+    /** Blobs of commits made before FileMap, or null. */
     private HashMap<String, Blob> _blobs;
+
+    /** ID of the root node of the commit's files, or null if it has
+     *  none. */
+    private String _root;
+
+    /** Files of the commit, once read. */
+    private transient FileMap _files;
 }
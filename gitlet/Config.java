@@ -0,0 +1,123 @@
+package gitlet;
+
+import java.io.File;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TreeMap;
+
+/** Repository settings, saved in .gitlet/config as names and values and
+ *  set with the config command. Every setting is optional; code asks for
+ *  one with the default it should use when it is not set.
+ *  @author Chris Seo
+ */
+public class Config {
+
+    /** Stores the settings. */
+    static final File CONFIG_SAVE = Utils.join(Main.GITLET_DIR, "config");
+
+    /** Size in bytes from which files are stored in chunks. Unset or 0
+     *  stores every file whole. */
+    static final String LARGE_FILE_THRESHOLD = "largefile.threshold";
+
+    /** Smallest chunk, in bytes. */
+    static final String CHUNK_MIN = "chunk.min";
+
+    /** Chunk size, in bytes, the chunker aims for. */
+    static final String CHUNK_AVERAGE = "chunk.average";
+
+    /** Largest chunk, in bytes. */
+    static final String CHUNK_MAX = "chunk.max";
+
+    /** Handles the config command. With a name and value, sets the
+     *  setting, or unsets it if the value is empty; with a name, prints
+     *  its value; with nothing, prints every setting.
+     * @param args takes config, optionally + name, optionally + value */
+    public static void doConfig(String[] args) {
+        HashMap<String, String> settings = settings();
+        if (args.length == 1) {
+            for (Map.Entry<String, String> setting
+                    : new TreeMap<>(settings).entrySet()) {
+                System.out.println(setting.getKey() + "="
+                        + setting.getValue());
+            }
+        } else if (args.length == 2) {
+            if (settings.containsKey(args[1])) {
+                System.out.println(settings.get(args[1]));
+            }
+        } else {
+            if (args[2].isEmpty()) {
+                settings.remove(args[1]);
+            } else {
+                if (args[1].equals(LARGE_FILE_THRESHOLD)
+                        || args[1].startsWith("chunk.")) {
+                    long value;
+                    try {
+                        value = Long.parseLong(args[2]);
+                    } catch (NumberFormatException excp) {
+                        value = -1;
+                    }
+                    if (value < 0) {
+                        Utils.exit("Incorrect value: " + args[2]);
+                    }
+                }
+                settings.put(args[1], args[2]);
+                if (args[1].startsWith("chunk.")) {
+                    chunkSizes();
+                }
+            }
+            Utils.replaceObject(CONFIG_SAVE, settings, true);
+            _settings = settings;
+        }
+    }
+
+    /** Returns the setting NAME as a number, or DEFAULTVALUE if it is not
+     *  set.
+     * @param name name of the setting
+     * @param defaultValue value to use when it is not set
+     * @return its value */
+    static long getLong(String name, long defaultValue) {
+        String value = settings().get(name);
+        if (value == null) {
+            return defaultValue;
+        }
+        try {
+            return Long.parseLong(value);
+        } catch (NumberFormatException excp) {
+            Utils.exit("Incorrect value of " + name + ": " + value);
+            return defaultValue;
+        }
+    }
+
+    /** Returns the smallest, average and largest chunk sizes set, or the
+     *  defaults of Chunks for those not set. Exits with a message unless
+     *  0 < min <= average <= max <= Chunks.MAX_CHUNK, as anything else
+     *  would make chunking stop cutting or overflow its buffer.
+     * @return min, average and max, in bytes */
+    static int[] chunkSizes() {
+        long min = getLong(CHUNK_MIN, Chunks.DEFAULT_MIN);
+        long average = getLong(CHUNK_AVERAGE, Chunks.DEFAULT_AVERAGE);
+        long max = getLong(CHUNK_MAX, Chunks.DEFAULT_MAX);
+        if (min <= 0 || min > average || average > max
+                || max > Chunks.MAX_CHUNK) {
+            Utils.exit("Chunk sizes must satisfy 0 < " + CHUNK_MIN
+                    + " <= " + CHUNK_AVERAGE + " <= " + CHUNK_MAX + " <= "
+                    + Chunks.MAX_CHUNK + ".");
+        }
+        return new int[] {(int) min, (int) average, (int) max};
+    }
+
+    /** Returns the saved settings, reading them once per command.
+     * @return HashMap of setting name, value */
+    @SuppressWarnings("unchecked")
+    private static HashMap<String, String> settings() {
+        if (_settings == null) {
+            _settings = CONFIG_SAVE.exists()
+                    ? Utils.readMapped(CONFIG_SAVE, HashMap.class)
+                    : new HashMap<>();
+        }
+        return _settings;
+    }
+
+    /** Settings read by this command. */
+    private static HashMap<String, String> _settings;
+}
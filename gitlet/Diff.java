@@ -0,0 +1,140 @@
+package gitlet;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+
+/** Line diffs between two versions of a file, by Myers' O(ND) algorithm.
+ *  Lines are numbered first so that the search compares integers, and a
+ *  common prefix and suffix are matched before searching, so the cost
+ *  grows with the size of the change rather than of the file.
+ *  @author Chris Seo
+ */
+public class Diff {
+
+    /** Returns the lines of CONTENTS, without the empty line after a
+     *  final newline.
+     * @param contents contents of a file
+     * @return its lines */
+    static String[] lines(String contents) {
+        if (contents.isEmpty()) {
+            return new String[0];
+        }
+        if (contents.endsWith("\n")) {
+            contents = contents.substring(0, contents.length() - 1);
+        }
+        return contents.split("\n", -1);
+    }
+
+    /** Returns, for each line of AFTER, the line of BEFORE it is kept
+     *  from in a shortest edit from BEFORE to AFTER, or -1 if it was added.
+     * @param before lines of the older version
+     * @param after lines of the newer version
+     * @return index into BEFORE for each line of AFTER */
+    static int[] matches(String[] before, String[] after) {
+        int[] result = new int[after.length];
+        Arrays.fill(result, -1);
+        HashMap<String, Integer> numbers = new HashMap<>();
+        int[] a = number(before, numbers);
+        int[] b = number(after, numbers);
+        int start = 0;
+        while (start < a.length && start < b.length
+                && a[start] == b[start]) {
+            result[start] = start;
+            start += 1;
+        }
+        int endA = a.length;
+        int endB = b.length;
+        while (endA > start && endB > start && a[endA - 1] == b[endB - 1]) {
+            endA -= 1;
+            endB -= 1;
+            result[endB] = endA;
+        }
+        myers(a, start, endA, b, start, endB, result);
+        return result;
+    }
+
+    /** Numbers LINES so that equal lines get equal numbers.
+     * @param lines lines to number
+     * @param numbers numbers given so far, added to
+     * @return number of each line */
+    private static int[] number(String[] lines,
+                                HashMap<String, Integer> numbers) {
+        int[] result = new int[lines.length];
+        for (int i = 0; i < lines.length; i++) {
+            Integer next = numbers.size();
+            result[i] = numbers.computeIfAbsent(lines[i], k -> next);
+        }
+        return result;
+    }
+
+    /** Fills RESULT with the matches of a shortest edit from A[LOA..HIA)
+     *  to B[LOB..HIB). Only the diagonals reached at each step are kept,
+     *  so memory is quadratic in the number of edits only.
+     * @param a numbered lines of the older version
+     * @param loA first line of A to diff
+     * @param hiA end of the lines of A to diff
+     * @param b numbered lines of the newer version
+     * @param loB first line of B to diff
+     * @param hiB end of the lines of B to diff
+     * @param result index into A for each line of B, filled in */
+    private static void myers(int[] a, int loA, int hiA, int[] b, int loB,
+                              int hiB, int[] result) {
+        int n = hiA - loA;
+        int m = hiB - loB;
+        int max = n + m;
+        int offset = max + 1;
+        int[] v = new int[2 * max + 3];
+        ArrayList<int[]> trace = new ArrayList<>();
+        int depth = -1;
+        for (int d = 0; d <= max && depth < 0; d++) {
+            trace.add(Arrays.copyOfRange(v, offset - d, offset + d + 1));
+            for (int k = -d; k <= d; k += 2) {
+                int x;
+                if (k == -d || (k != d
+                        && v[offset + k - 1] < v[offset + k + 1])) {
+                    x = v[offset + k + 1];
+                } else {
+                    x = v[offset + k - 1] + 1;
+                }
+                int y = x - k;
+                while (x < n && y < m && a[loA + x] == b[loB + y]) {
+                    x += 1;
+                    y += 1;
+                }
+                v[offset + k] = x;
+                if (x >= n && y >= m) {
+                    depth = d;
+                    break;
+                }
+            }
+        }
+        int x = n;
+        int y = m;
+        for (int d = depth; d > 0; d--) {
+            int[] previous = trace.get(d);
+            int k = x - y;
+            int prevK;
+            if (k == -d || (k != d
+                    && previous[k - 1 + d] < previous[k + 1 + d])) {
+                prevK = k + 1;
+            } else {
+                prevK = k - 1;
+            }
+            int prevX = previous[prevK + d];
+            int prevY = prevX - prevK;
+            while (x > prevX && y > prevY) {
+                x -= 1;
+                y -= 1;
+                result[loB + y] = loA + x;
+            }
+            x = prevX;
+            y = prevY;
+        }
+        while (x > 0 && y > 0) {
+            x -= 1;
+            y -= 1;
+            result[loB + y] = loA + x;
+        }
+    }
+}
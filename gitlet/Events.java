@@ -0,0 +1,106 @@
+package gitlet;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.FlightRecorder;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/** Java Flight Recorder events for gitlet operations. They are only
+ *  made once the flight recorder has started, e.g. with
+ *  -XX:StartFlightRecording or, for serve and monitor, with jcmd, so that
+ *  other commands do not load the event classes and the JFR classes they
+ *  pull in.
+ *  @author Chris Seo
+ */
+public class Events {
+
+    /** Returns true if the flight recorder has started, so that events
+     *  may be recorded. */
+    static boolean recording() {
+        return FlightRecorder.isInitialized();
+    }
+
+    /** A gitlet command, or one session of a long-lived command. */
+    @Name("gitlet.Command")
+    @Label("Gitlet Command")
+    @Category("Gitlet")
+    static class CommandEvent extends Event {
+        /** Name of the command. */
+        @Label("Command")
+        String command;
+    }
+
+    /** An object read from a file and deserialized. */
+    @Name("gitlet.ObjectRead")
+    @Label("Object Read")
+    @Category("Gitlet")
+    static class ObjectReadEvent extends Event {
+        /** File the object was read from. */
+        @Label("Path")
+        String path;
+
+        /** Class of the object. */
+        @Label("Type")
+        String type;
+
+        /** Size of the file. */
+        @Label("Size")
+        @DataAmount
+        long bytes;
+    }
+
+    /** An object serialized and written to a file. */
+    @Name("gitlet.ObjectWrite")
+    @Label("Object Write")
+    @Category("Gitlet")
+    static class ObjectWriteEvent extends Event {
+        /** File the object was written to. */
+        @Label("Path")
+        String path;
+
+        /** Class of the object. */
+        @Label("Type")
+        String type;
+
+        /** Size of the file. */
+        @Label("Size")
+        @DataAmount
+        long bytes;
+    }
+
+    /** Computation of the split point of a merge. */
+    @Name("gitlet.MergeBase")
+    @Label("Merge Base")
+    @Category("Gitlet")
+    @Description("Finding the latest common ancestor of two branches")
+    static class MergeBaseEvent extends Event {
+        /** Branch being merged in. */
+        @Label("Branch")
+        String branch;
+
+        /** ID of the split point found. */
+        @Label("Split Point")
+        String splitPoint;
+    }
+
+    /** Writing a commit's files into the working directory. */
+    @Name("gitlet.CheckoutMaterialize")
+    @Label("Checkout Materialization")
+    @Category("Gitlet")
+    static class CheckoutEvent extends Event {
+        /** ID of the commit checked out. */
+        @Label("Commit")
+        String commit;
+
+        /** Number of files written. */
+        @Label("Files Written")
+        int filesWritten;
+
+        /** Number of files deleted. */
+        @Label("Files Deleted")
+        int filesDeleted;
+    }
+}
@@ -0,0 +1,958 @@
+package gitlet;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.TreeSet;
+
+/** The files of a commit, a persistent map from file names to blobs kept
+ *  as a hash array mapped trie. Each node holds the files whose name
+ *  hashes end up there and points to nodes deeper down, and is stored
+ *  once, under the SHA-1 of its bytes, in .gitlet/nodes. Those bytes are
+ *  a fixed encoding of the node's bitmaps, file names, blob IDs and child
+ *  IDs; the blobs themselves are stored apart, see Blob. Adding or
+ *  removing a file copies only the nodes on its path and shares the rest
+ *  with the map it came from, both in memory and on disk, so a commit
+ *  costs the files it changes times the depth of the trie rather than the
+ *  size of the tree. Nodes are read when first needed. Every set of files
+ *  has exactly one shape, so equal maps have equal root IDs. The map is
+ *  immutable; with and without return changed copies.
+ *  @author Chris Seo
+ */
+public class FileMap extends AbstractMap<String, Blob> {
+
+    /** Name of the node directory in a gitlet directory. */
+    static final String NODES_NAME = "nodes";
+
+    /** First byte of an encoded node. */
+    static final byte FORMAT = 'N';
+
+    /** Bits of a name's hash used at each level. */
+    static final int BITS = 5;
+
+    /** Depth of the nodes that hold every name whose hash is the same in
+     *  all the bits used above them. */
+    static final int MAX_DEPTH = 64 / BITS;
+
+    /** Nodes kept in memory between maps. Cached nodes hold names and
+     *  IDs only, so this bounds the memory the cache takes. */
+    static final int CACHED_NODES = 4096;
+
+    /** Returns an empty map whose nodes go in GITLETDIR.
+     * @param gitletDir gitlet directory
+     * @return empty map */
+    static FileMap empty(File gitletDir) {
+        return new FileMap(gitletDir, null);
+    }
+
+    /** Returns the map stored in GITLETDIR under ROOTID.
+     * @param gitletDir gitlet directory
+     * @param rootID ID of the root node, or null for an empty map
+     * @return map */
+    static FileMap open(File gitletDir, String rootID) {
+        return new FileMap(gitletDir, rootID == null ? null
+                : load(gitletDir, rootID));
+    }
+
+    /** Returns FILES as a map whose nodes go in GITLETDIR.
+     * @param gitletDir gitlet directory
+     * @param files names mapped to blobs
+     * @return map */
+    static FileMap of(File gitletDir, Map<String, Blob> files) {
+        if (files instanceof FileMap
+                && ((FileMap) files)._dir.equals(gitletDir)) {
+            return (FileMap) files;
+        }
+        FileMap result = empty(gitletDir);
+        for (Map.Entry<String, Blob> file : files.entrySet()) {
+            result = result.with(file.getKey(), file.getValue());
+        }
+        return result;
+    }
+
+    /** Returns the file node ID is stored in, under GITLETDIR.
+     * @param gitletDir gitlet directory
+     * @param id node ID
+     * @return node file */
+    static File nodeFile(File gitletDir, String id) {
+        return Utils.join(gitletDir, NODES_NAME, id.substring(0, 2),
+                id.substring(2));
+    }
+
+    /** Constructor for a map.
+     * @param dir gitlet directory holding its nodes
+     * @param root root node, or null if empty */
+    private FileMap(File dir, Node root) {
+        _dir = dir;
+        _root = root;
+    }
+
+    /** Returns this map with NAME mapped to BLOB.
+     * @param name file name
+     * @param blob its blob
+     * @return changed map, or this one if NAME already has BLOB */
+    FileMap with(String name, Blob blob) {
+        Node root = _root == null ? single(0, hash(name), name, blob)
+                : put(_root, 0, hash(name), name, blob);
+        return root == _root ? this : new FileMap(_dir, root);
+    }
+
+    /** Returns this map without NAME.
+     * @param name file name
+     * @return changed map, or this one if NAME is not in it */
+    FileMap without(String name) {
+        if (_root == null) {
+            return this;
+        }
+        Node root = remove(_root, 0, hash(name), name);
+        return root == _root ? this : new FileMap(_dir, root);
+    }
+
+    /** Stores the nodes of this map that are not stored yet, deepest
+     *  first, each forced to disk with the next durable write.
+     * @return ID of the root node, or null if the map is empty */
+    String save() {
+        return _root == null ? null : store(_root);
+    }
+
+    /** Adds to IDS the nodes of this map that none of OLDS has in the same
+     *  place and that are not in SENT, adding them to SENT, and adds to
+     *  FILES the files those nodes hold. Since equal nodes are equal
+     *  subtrees, only nodes on the paths to changed files are read.
+     * @param olds maps this one was made from
+     * @param sent IDs of nodes already accounted for
+     * @param ids list to add node IDs to
+     * @param files map to add changed files to */
+    void changes(List<FileMap> olds, Set<String> sent, List<String> ids,
+                 Map<String, Blob> files) {
+        if (_root == null) {
+            return;
+        }
+        ArrayList<Node> oldRoots = new ArrayList<>();
+        for (FileMap old : olds) {
+            oldRoots.add(old._root);
+        }
+        changes(_root, oldRoots, sent, ids, files);
+    }
+
+    /** Returns the names of the files that OTHER, a map in the same
+     *  directory, has with a different blob from this one or only one of
+     *  the two has. Subtrees the maps share, by ID or in memory, are
+     *  skipped, so the cost follows the differences.
+     * @param other another map
+     * @return names of the files that differ, in order */
+    TreeSet<String> diff(FileMap other) {
+        TreeSet<String> result = new TreeSet<>();
+        diff(_root, other._root, result);
+        return result;
+    }
+
+    /** Adds to NAMES the files that differ between the nodes A and B, in
+     *  the same place of two maps.
+     * @param a a node, or null
+     * @param b another node, or null
+     * @param names set to add names to */
+    private void diff(Node a, Node b, Set<String> names) {
+        if (a == b || (a != null && b != null && a._id != null
+                && a._id.equals(b._id))) {
+            return;
+        }
+        if (a == null || b == null || a._collision || b._collision) {
+            compare(a, -1, b, -1, names);
+            return;
+        }
+        int bits = a._dataMap | a._nodeMap | b._dataMap | b._nodeMap;
+        while (bits != 0) {
+            int bit = Integer.lowestOneBit(bits);
+            bits ^= bit;
+            if ((a._nodeMap & bit) != 0 && (b._nodeMap & bit) != 0) {
+                diff(child(a, index(a._nodeMap, bit)),
+                        child(b, index(b._nodeMap, bit)), names);
+            } else {
+                compare(a, bit, b, bit, names);
+            }
+        }
+    }
+
+    /** Adds to NAMES the files that differ between what A holds at the
+     *  position BITA and B at BITB, or all they hold for a position of
+     *  -1.
+     * @param a a node, or null
+     * @param bitA position in A
+     * @param b another node, or null
+     * @param bitB position in B
+     * @param names set to add names to */
+    private void compare(Node a, int bitA, Node b, int bitB,
+                         Set<String> names) {
+        HashMap<String, Blob> left = new HashMap<>();
+        HashMap<String, Blob> right = new HashMap<>();
+        collect(a, bitA, left);
+        collect(b, bitB, right);
+        for (Map.Entry<String, Blob> file : left.entrySet()) {
+            Blob blob = right.remove(file.getKey());
+            if (blob == null || !same(blob, file.getValue())) {
+                names.add(file.getKey());
+            }
+        }
+        names.addAll(right.keySet());
+    }
+
+    /** Adds to FILES what NODE holds at the position BIT, or everything
+     *  it holds for a position of -1, including the files below.
+     * @param node a node, or null
+     * @param bit position in NODE, or -1
+     * @param files map to add files to */
+    private void collect(Node node, int bit, Map<String, Blob> files) {
+        if (node == null) {
+            return;
+        }
+        if (bit < 0 || node._collision) {
+            for (int i = 0; i < node._names.length; i++) {
+                files.put(node._names[i], node._blobs[i]);
+            }
+            for (int i = 0; i < node._childIDs.length; i++) {
+                collect(child(node, i), -1, files);
+            }
+        } else if ((node._dataMap & bit) != 0) {
+            int i = index(node._dataMap, bit);
+            files.put(node._names[i], node._blobs[i]);
+        } else if ((node._nodeMap & bit) != 0) {
+            collect(child(node, index(node._nodeMap, bit)), -1, files);
+        }
+    }
+
+    /** Checks the node ID in GITLETDIR and those under it, skipping any in
+     *  CHECKED and adding the rest to it. Each node must be stored under
+     *  the hash of its bytes. Files held by the nodes checked are added to
+     *  FILES, for their blobs to be checked.
+     * @param gitletDir gitlet directory
+     * @param id ID of a node
+     * @param checked IDs of the nodes checked already
+     * @param files map to add the files of checked nodes to
+     * @param problems list to add problems found to */
+    static void check(File gitletDir, String id, Set<String> checked,
+                      Map<String, Blob> files, List<String> problems) {
+        if (!checked.add(id)) {
+            return;
+        }
+        File file = nodeFile(gitletDir, id);
+        if (!file.isFile()) {
+            problems.add("missing node " + id);
+            return;
+        }
+        byte[] bytes = Utils.readContents(file);
+        if (!Utils.sha1(bytes).equals(id)) {
+            problems.add("corrupt node " + id);
+            return;
+        }
+        Node node;
+        try {
+            node = decode(gitletDir, bytes);
+        } catch (IOException excp) {
+            problems.add("corrupt node " + id);
+            return;
+        }
+        for (int i = 0; i < node._names.length; i++) {
+            files.put(node._names[i], node._blobs[i]);
+        }
+        for (String child : node._childIDs) {
+            check(gitletDir, child, checked, files, problems);
+        }
+    }
+
+    /** Adds the node ID in GITLETDIR and those under it to NODES,
+     *  skipping any there already, and the IDs of the blobs they hold to
+     *  BLOBS, so that gc keeps them. Nodes that are missing or unreadable
+     *  are skipped, being fsck's to report.
+     * @param gitletDir gitlet directory
+     * @param id ID of a node
+     * @param nodes IDs of the nodes marked already
+     * @param blobs IDs of the blobs marked already */
+    static void mark(File gitletDir, String id, Set<String> nodes,
+                     Set<String> blobs) {
+        if (!nodes.add(id)) {
+            return;
+        }
+        File file = nodeFile(gitletDir, id);
+        if (!file.isFile()) {
+            return;
+        }
+        Node node;
+        try {
+            node = decode(gitletDir, Utils.readContents(file));
+        } catch (IOException excp) {
+            return;
+        }
+        for (Blob blob : node._blobs) {
+            blobs.add(blob.getID());
+        }
+        for (String child : node._childIDs) {
+            mark(gitletDir, child, nodes, blobs);
+        }
+    }
+
+    /** Returns the files held by the node stored as BYTES, not those
+     *  under it, so that a node received from elsewhere can be checked.
+     * @param gitletDir gitlet directory its blobs are stored in
+     * @param bytes stored node
+     * @return names mapped to blobs
+     * @throws IOException if BYTES is not a node */
+    static Map<String, Blob> files(File gitletDir, byte[] bytes)
+        throws IOException {
+        Node node = decode(gitletDir, bytes);
+        HashMap<String, Blob> result = new HashMap<>();
+        for (int i = 0; i < node._names.length; i++) {
+            result.put(node._names[i], node._blobs[i]);
+        }
+        return result;
+    }
+
+    @Override
+    public Blob get(Object key) {
+        if (!(key instanceof String) || _root == null) {
+            return null;
+        }
+        String name = (String) key;
+        long hash = hash(name);
+        Node node = _root;
+        for (int depth = 0; ; depth++) {
+            if (node._collision) {
+                int i = Arrays.asList(node._names).indexOf(name);
+                return i < 0 ? null : node._blobs[i];
+            }
+            int bit = bit(hash, depth);
+            if ((node._dataMap & bit) != 0) {
+                int i = index(node._dataMap, bit);
+                return node._names[i].equals(name) ? node._blobs[i] : null;
+            }
+            if ((node._nodeMap & bit) == 0) {
+                return null;
+            }
+            node = child(node, index(node._nodeMap, bit));
+        }
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        return get(key) != null;
+    }
+
+    @Override
+    public int size() {
+        return _root == null ? 0 : _root._count;
+    }
+
+    @Override
+    public Set<Map.Entry<String, Blob>> entrySet() {
+        return new AbstractSet<>() {
+            @Override
+            public Iterator<Map.Entry<String, Blob>> iterator() {
+                return new Entries();
+            }
+
+            @Override
+            public int size() {
+                return FileMap.this.size();
+            }
+        };
+    }
+
+    /** Iterates over the files of the map, reading each node only when
+     *  its files are reached. */
+    private class Entries implements Iterator<Map.Entry<String, Blob>> {
+
+        /** Constructor for an iteration from the root. */
+        Entries() {
+            if (_root != null) {
+                _pending.push(_root);
+            }
+        }
+
+        @Override
+        public boolean hasNext() {
+            while (_node == null || _next == _node._names.length) {
+                if (_pending.isEmpty()) {
+                    return false;
+                }
+                _node = _pending.pop();
+                _next = 0;
+                for (int i = _node._childIDs.length - 1; i >= 0; i--) {
+                    _pending.push(child(_node, i));
+                }
+            }
+            return true;
+        }
+
+        @Override
+        public Map.Entry<String, Blob> next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            _next += 1;
+            return new AbstractMap.SimpleImmutableEntry<>(
+                    _node._names[_next - 1], _node._blobs[_next - 1]);
+        }
+
+        /** Nodes still to be visited. */
+        private final ArrayDeque<Node> _pending = new ArrayDeque<>();
+
+        /** Node whose files are being visited. */
+        private Node _node;
+
+        /** Index of the next file of _node. */
+        private int _next;
+    }
+
+    /** A node of the trie. Ordinary nodes place each file and child by
+     *  BITS bits of the name's hash, at positions set in two bitmaps, and
+     *  keep them in the order of those positions. Collision nodes, at
+     *  MAX_DEPTH, hold files sorted by name. Nodes are stored with
+     *  encode. */
+    static final class Node {
+
+        /** Constructor for a node.
+         * @param dataMap positions of the files held here
+         * @param nodeMap positions of the children
+         * @param collision true if this is a collision node
+         * @param names names of the files held here
+         * @param blobs their blobs
+         * @param childIDs IDs of the children, null for unstored ones
+         * @param children children in memory, or null
+         * @param count number of files here and under here */
+        Node(int dataMap, int nodeMap, boolean collision, String[] names,
+             Blob[] blobs, String[] childIDs, Node[] children, int count) {
+            _dataMap = dataMap;
+            _nodeMap = nodeMap;
+            _collision = collision;
+            _names = names;
+            _blobs = blobs;
+            _childIDs = childIDs;
+            _children = children;
+            _count = count;
+        }
+
+        /** Positions of the files held here. */
+        private final int _dataMap;
+
+        /** Positions of the children. */
+        private final int _nodeMap;
+
+        /** True if this is a collision node. */
+        private final boolean _collision;
+
+        /** Names of the files held here. */
+        private final String[] _names;
+
+        /** Blobs of the files held here. Those of nodes read from disk
+         *  are read from their blob files when needed. */
+        private final Blob[] _blobs;
+
+        /** IDs of the children. */
+        private final String[] _childIDs;
+
+        /** Number of files here and under here. */
+        private final int _count;
+
+        /** Children read or made so far, by index, or null. */
+        private Node[] _children;
+
+        /** ID of the node once stored or read. */
+        private String _id;
+    }
+
+    /** Returns NODE with NAME, of hash HASH, mapped to BLOB.
+     * @param node a node at DEPTH
+     * @param depth depth of NODE
+     * @param hash hash of NAME
+     * @param name file name
+     * @param blob its blob
+     * @return changed node, or NODE if it already had BLOB */
+    private Node put(Node node, int depth, long hash, String name,
+                     Blob blob) {
+        if (node._collision) {
+            int i = Arrays.asList(node._names).indexOf(name);
+            if (i >= 0) {
+                return same(node._blobs[i], blob) ? node
+                        : new Node(0, 0, true, node._names,
+                        replace(node._blobs, i, blob), node._childIDs, null,
+                        node._count);
+            }
+            i = -Arrays.binarySearch(node._names, name) - 1;
+            return new Node(0, 0, true, insert(node._names, i, name),
+                    insert(node._blobs, i, blob), node._childIDs, null,
+                    node._count + 1);
+        }
+        int bit = bit(hash, depth);
+        if ((node._dataMap & bit) != 0) {
+            int i = index(node._dataMap, bit);
+            String other = node._names[i];
+            if (other.equals(name)) {
+                return same(node._blobs[i], blob) ? node
+                        : new Node(node._dataMap, node._nodeMap, false,
+                        node._names, replace(node._blobs, i, blob),
+                        node._childIDs, node._children, node._count);
+            }
+            Node pair = pair(depth + 1, other, hash(other), node._blobs[i],
+                    name, hash, blob);
+            int nodeMap = node._nodeMap | bit;
+            int j = index(nodeMap, bit);
+            return new Node(node._dataMap ^ bit, nodeMap, false,
+                    delete(node._names, i), delete(node._blobs, i),
+                    insert(node._childIDs, j, null),
+                    insert(children(node), j, pair), node._count + 1);
+        }
+        if ((node._nodeMap & bit) != 0) {
+            int i = index(node._nodeMap, bit);
+            Node child = child(node, i);
+            Node changed = put(child, depth + 1, hash, name, blob);
+            if (changed == child) {
+                return node;
+            }
+            return new Node(node._dataMap, node._nodeMap, false,
+                    node._names, node._blobs,
+                    replace(node._childIDs, i, null),
+                    replace(children(node), i, changed),
+                    node._count + changed._count - child._count);
+        }
+        int dataMap = node._dataMap | bit;
+        int i = index(dataMap, bit);
+        return new Node(dataMap, node._nodeMap, false,
+                insert(node._names, i, name), insert(node._blobs, i, blob),
+                node._childIDs, node._children, node._count + 1);
+    }
+
+    /** Returns NODE without NAME, of hash HASH. A child left with a single
+     *  file is replaced by that file, which keeps the shape of the trie
+     *  the same for the same files.
+     * @param node a node at DEPTH
+     * @param depth depth of NODE
+     * @param hash hash of NAME
+     * @param name file name
+     * @return changed node, NODE if NAME is not in it, or null if NAME
+     *         was its only file */
+    private Node remove(Node node, int depth, long hash, String name) {
+        if (node._collision) {
+            int i = Arrays.asList(node._names).indexOf(name);
+            if (i < 0) {
+                return node;
+            }
+            return node._count == 1 ? null : new Node(0, 0, true,
+                    delete(node._names, i), delete(node._blobs, i),
+                    node._childIDs, null, node._count - 1);
+        }
+        int bit = bit(hash, depth);
+        if ((node._dataMap & bit) != 0) {
+            int i = index(node._dataMap, bit);
+            if (!node._names[i].equals(name)) {
+                return node;
+            }
+            return node._count == 1 ? null : new Node(node._dataMap ^ bit,
+                    node._nodeMap, false, delete(node._names, i),
+                    delete(node._blobs, i), node._childIDs, node._children,
+                    node._count - 1);
+        }
+        if ((node._nodeMap & bit) == 0) {
+            return node;
+        }
+        int i = index(node._nodeMap, bit);
+        Node child = child(node, i);
+        Node changed = remove(child, depth + 1, hash, name);
+        if (changed == child) {
+            return node;
+        }
+        if (changed._count == 1) {
+            int dataMap = node._dataMap | bit;
+            int j = index(dataMap, bit);
+            return new Node(dataMap, node._nodeMap ^ bit, false,
+                    insert(node._names, j, changed._names[0]),
+                    insert(node._blobs, j, changed._blobs[0]),
+                    delete(node._childIDs, i), delete(children(node), i),
+                    node._count - 1);
+        }
+        return new Node(node._dataMap, node._nodeMap, false, node._names,
+                node._blobs, replace(node._childIDs, i, null),
+                replace(children(node), i, changed), node._count - 1);
+    }
+
+    /** Returns a node at DEPTH holding only NAME, of hash HASH.
+     * @param depth depth of the node
+     * @param hash hash of NAME
+     * @param name file name
+     * @param blob its blob
+     * @return node */
+    private static Node single(int depth, long hash, String name,
+                               Blob blob) {
+        return new Node(depth >= MAX_DEPTH ? 0 : bit(hash, depth), 0,
+                depth >= MAX_DEPTH, new String[] {name}, new Blob[] {blob},
+                new String[0], null, 1);
+    }
+
+    /** Returns a node at DEPTH holding two files, with as many nodes below
+     *  it as it takes to tell their hashes apart.
+     * @param depth depth of the node
+     * @param name1 name of a file
+     * @param hash1 hash of NAME1
+     * @param blob1 its blob
+     * @param name2 name of another file
+     * @param hash2 hash of NAME2
+     * @param blob2 its blob
+     * @return node */
+    private static Node pair(int depth, String name1, long hash1, Blob blob1,
+                             String name2, long hash2, Blob blob2) {
+        if (depth >= MAX_DEPTH) {
+            boolean first = name1.compareTo(name2) < 0;
+            return new Node(0, 0, true,
+                    first ? new String[] {name1, name2}
+                            : new String[] {name2, name1},
+                    first ? new Blob[] {blob1, blob2}
+                            : new Blob[] {blob2, blob1},
+                    new String[0], null, 2);
+        }
+        int bit1 = bit(hash1, depth);
+        int bit2 = bit(hash2, depth);
+        if (bit1 == bit2) {
+            return new Node(0, bit1, false, new String[0], new Blob[0],
+                    new String[] {null}, new Node[] {pair(depth + 1, name1,
+                    hash1, blob1, name2, hash2, blob2)}, 2);
+        }
+        boolean first = Integer.compareUnsigned(bit1, bit2) < 0;
+        return new Node(bit1 | bit2, 0, false,
+                first ? new String[] {name1, name2}
+                        : new String[] {name2, name1},
+                first ? new Blob[] {blob1, blob2}
+                        : new Blob[] {blob2, blob1},
+                new String[0], null, 2);
+    }
+
+    /** Returns the child of NODE at index I, reading it if needed.
+     * @param node a node
+     * @param i index of the child
+     * @return child */
+    private Node child(Node node, int i) {
+        Node[] children = node._children;
+        if (children == null) {
+            children = new Node[node._childIDs.length];
+            node._children = children;
+        }
+        if (children[i] == null) {
+            children[i] = load(_dir, node._childIDs[i]);
+        }
+        return children[i];
+    }
+
+    /** Returns the children NODE has in memory, as an array to copy.
+     * @param node a node
+     * @return its children array, or one of nulls */
+    private static Node[] children(Node node) {
+        return node._children != null ? node._children
+                : new Node[node._childIDs.length];
+    }
+
+    /** Stores NODE and its unstored children, deepest first.
+     * @param node a node
+     * @return its ID */
+    private String store(Node node) {
+        if (node._id != null) {
+            return node._id;
+        }
+        for (int i = 0; i < node._childIDs.length; i++) {
+            if (node._childIDs[i] == null) {
+                node._childIDs[i] = store(node._children[i]);
+            }
+        }
+        for (Blob blob : node._blobs) {
+            blob.store(_dir);
+        }
+        byte[] bytes = encode(node);
+        String id = Utils.sha1(bytes);
+        Utils.writeNew(nodeFile(_dir, id), bytes, 0, bytes.length);
+        node._id = id;
+        remember(node, _dir);
+        return id;
+    }
+
+    /** Adds the nodes under NODE that differ from those of OLDS in the
+     *  same place to IDS, and their files to FILES.
+     * @param node a stored node
+     * @param olds nodes of older maps in the same place, or nulls
+     * @param sent IDs of nodes already accounted for
+     * @param ids list to add node IDs to
+     * @param files map to add changed files to */
+    private void changes(Node node, List<Node> olds, Set<String> sent,
+                         List<String> ids, Map<String, Blob> files) {
+        for (Node old : olds) {
+            if (old != null && node._id.equals(old._id)) {
+                return;
+            }
+        }
+        if (!sent.add(node._id)) {
+            return;
+        }
+        ids.add(node._id);
+        for (int i = 0; i < node._names.length; i++) {
+            files.put(node._names[i], node._blobs[i]);
+        }
+        int bits = node._nodeMap;
+        for (int i = 0; i < node._childIDs.length; i++) {
+            int bit = Integer.lowestOneBit(bits);
+            bits ^= bit;
+            ArrayList<Node> oldChildren = new ArrayList<>();
+            for (Node old : olds) {
+                if (old != null && (old._nodeMap & bit) != 0) {
+                    oldChildren.add(child(old, index(old._nodeMap, bit)));
+                }
+            }
+            changes(child(node, i), oldChildren, sent, ids, files);
+        }
+    }
+
+    /** Returns the node ID, from memory if it was used lately.
+     * @param gitletDir gitlet directory
+     * @param id node ID
+     * @return node */
+    private static Node load(File gitletDir, String id) {
+        synchronized (CACHE) {
+            Node node = CACHE.get(id);
+            Metrics.cacheLookup("file_map_nodes", node != null);
+            if (node != null) {
+                return detached(node, gitletDir);
+            }
+        }
+        Node node;
+        try {
+            node = decode(gitletDir, Utils.readContents(nodeFile(gitletDir,
+                    id)));
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+        node._id = id;
+        remember(node, gitletDir);
+        return node;
+    }
+
+    /** Returns the bytes NODE is stored as: FORMAT, its bitmaps and
+     *  counts, then the names of its files, their blob IDs and the IDs of
+     *  its children, all stored already. The same node always has the
+     *  same bytes.
+     * @param node a node
+     * @return encoded node */
+    private static byte[] encode(Node node) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeByte(FORMAT);
+            out.writeInt(node._dataMap);
+            out.writeInt(node._nodeMap);
+            out.writeBoolean(node._collision);
+            out.writeInt(node._count);
+            out.writeInt(node._names.length);
+            out.writeInt(node._childIDs.length);
+            for (int i = 0; i < node._names.length; i++) {
+                byte[] name = node._names[i].getBytes(
+                        StandardCharsets.UTF_8);
+                out.writeInt(name.length);
+                out.write(name);
+                out.writeBytes(node._blobs[i].getID());
+            }
+            for (String child : node._childIDs) {
+                out.writeBytes(child);
+            }
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+        return bytes.toByteArray();
+    }
+
+    /** Returns the node stored as BYTES in GITLETDIR, whose blobs are read
+     *  from there when needed.
+     * @param gitletDir gitlet directory
+     * @param bytes stored node
+     * @return node
+     * @throws IOException if BYTES is not a node */
+    private static Node decode(File gitletDir, byte[] bytes)
+        throws IOException {
+        if (bytes.length == 0 || bytes[0] != FORMAT) {
+            throw new IOException("not a node");
+        }
+        DataInputStream in = new DataInputStream(
+                new ByteArrayInputStream(bytes, 1, bytes.length - 1));
+        int dataMap = in.readInt();
+        int nodeMap = in.readInt();
+        boolean collision = in.readBoolean();
+        int count = in.readInt();
+        int files = in.readInt();
+        int children = in.readInt();
+        if (files < 0 || children < 0 || files + children > bytes.length) {
+            throw new IOException("not a node");
+        }
+        String[] names = new String[files];
+        Blob[] blobs = new Blob[files];
+        for (int i = 0; i < files; i++) {
+            int length = in.readInt();
+            if (length < 0 || length > bytes.length) {
+                throw new IOException("not a node");
+            }
+            byte[] name = new byte[length];
+            in.readFully(name);
+            names[i] = new String(name, StandardCharsets.UTF_8);
+            blobs[i] = Blob.stored(gitletDir, names[i], readID(in));
+        }
+        String[] childIDs = new String[children];
+        for (int i = 0; i < children; i++) {
+            childIDs[i] = readID(in);
+        }
+        if (in.available() > 0) {
+            throw new IOException("not a node");
+        }
+        return new Node(dataMap, nodeMap, collision, names, blobs, childIDs,
+                null, count);
+    }
+
+    /** Reads an ID from IN.
+     * @param in stream to read from
+     * @return ID
+     * @throws IOException if the next bytes are not an ID */
+    private static String readID(DataInputStream in) throws IOException {
+        byte[] id = new byte[Utils.UID_LENGTH];
+        in.readFully(id);
+        String result = new String(id, StandardCharsets.US_ASCII);
+        if (!Utils.isID(result)) {
+            throw new IOException("not a node");
+        }
+        return result;
+    }
+
+    /** Keeps a copy of NODE, stored in GITLETDIR, in memory for later
+     *  maps.
+     * @param node a stored node
+     * @param gitletDir gitlet directory it is stored in */
+    private static void remember(Node node, File gitletDir) {
+        Node copy = detached(node, gitletDir);
+        synchronized (CACHE) {
+            CACHE.put(node._id, copy);
+        }
+    }
+
+    /** Returns a copy of NODE, a stored node, whose blobs are read from
+     *  GITLETDIR and whose children are read when needed. Neither file
+     *  contents read through NODE nor its children are kept, so a cached
+     *  copy holds only names and IDs.
+     * @param node a stored node
+     * @param gitletDir gitlet directory its blobs are read from
+     * @return copy */
+    private static Node detached(Node node, File gitletDir) {
+        Blob[] blobs = new Blob[node._blobs.length];
+        for (int i = 0; i < blobs.length; i++) {
+            blobs[i] = Blob.stored(gitletDir, node._names[i],
+                    node._blobs[i].getID());
+        }
+        Node result = new Node(node._dataMap, node._nodeMap,
+                node._collision, node._names, blobs, node._childIDs, null,
+                node._count);
+        result._id = node._id;
+        return result;
+    }
+
+    /** Returns a 64-bit FNV-1a hash of NAME, the same in every run.
+     * @param name file name
+     * @return hash */
+    private static long hash(String name) {
+        long hash = 0xcbf29ce484222325L;
+        for (int i = 0; i < name.length(); i++) {
+            hash ^= name.charAt(i);
+            hash *= 0x100000001b3L;
+        }
+        return hash;
+    }
+
+    /** Returns the position bit of HASH at DEPTH.
+     * @param hash hash of a name
+     * @param depth depth of a node
+     * @return bit */
+    private static int bit(long hash, int depth) {
+        return 1 << (int) ((hash >>> (BITS * depth)) & ((1 << BITS) - 1));
+    }
+
+    /** Returns the index, among the positions set in MAP, of BIT.
+     * @param map a bitmap
+     * @param bit a position bit
+     * @return index */
+    private static int index(int map, int bit) {
+        return Integer.bitCount(map & (bit - 1));
+    }
+
+    /** Returns true if blobs A and B are the same file.
+     * @param a a blob
+     * @param b another blob
+     * @return true if they have the same name and ID */
+    private static boolean same(Blob a, Blob b) {
+        return a.getID().equals(b.getID()) && a.getName().equals(b.getName());
+    }
+
+    /** Returns a copy of ARRAY with VALUE inserted at I.
+     * @param array an array
+     * @param i index
+     * @param value value to insert
+     * @param <T> type of the elements
+     * @return new array */
+    private static <T> T[] insert(T[] array, int i, T value) {
+        T[] result = Arrays.copyOf(array, array.length + 1);
+        System.arraycopy(array, i, result, i + 1, array.length - i);
+        result[i] = value;
+        return result;
+    }
+
+    /** Returns a copy of ARRAY without the element at I.
+     * @param array an array
+     * @param i index
+     * @param <T> type of the elements
+     * @return new array */
+    private static <T> T[] delete(T[] array, int i) {
+        T[] result = Arrays.copyOf(array, array.length - 1);
+        System.arraycopy(array, i + 1, result, i, array.length - i - 1);
+        return result;
+    }
+
+    /** Returns a copy of ARRAY with the element at I replaced by VALUE.
+     * @param array an array
+     * @param i index
+     * @param value new value
+     * @param <T> type of the elements
+     * @return new array */
+    private static <T> T[] replace(T[] array, int i, T value) {
+        T[] result = array.clone();
+        result[i] = value;
+        return result;
+    }
+
+    /** Nodes used lately, by ID, least recently used first. */
+    private static final LinkedHashMap<String, Node> CACHE =
+            new LinkedHashMap<>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(
+                        Map.Entry<String, Node> eldest) {
+                    return size() > CACHED_NODES;
+                }
+            };
+
+    /** Gitlet directory holding the nodes. */
+    private final File _dir;
+
+    /** Root node, or null if the map is empty. */
+    private final Node _root;
+}
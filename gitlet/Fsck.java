@@ -0,0 +1,161 @@
+package gitlet;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/** Verifies the integrity of the repository. Every object is read and
+ *  checked on its own, spread across all cores, so only as many commits
+ *  as there are workers are in memory at once.
+ *  @author Chris Seo
+ */
+public class Fsck {
+
+    /** Gitlet directory, where gitlet is stored. */
+    static final File GITLET_DIR = Main.GITLET_DIR;
+
+    /** Stores commit tree. */
+    static final File TREE_DIR = Tree.TREE_DIR;
+
+    /** Handles the fsck command. Checks that each commit hashes to the
+     *  ID it is stored under, or for commits hashed by earlier versions of
+     *  Commit holds that ID, that each of its files still hashes to its
+     *  blob ID, that its parents exist, and that every branch head, stash
+     *  and logged commit exists. Prints each problem found, then each
+     *  commit nothing refers to.
+     * @param args takes fsck */
+    public static void doFsck(String[] args) {
+        Tree workingTree = Utils.readMapped(TREE_DIR, Tree.class);
+        Set<String> objects = Pack.objects(GITLET_DIR);
+        Set<String> referenced = ConcurrentHashMap.newKeySet();
+        Queue<String> problems = new ConcurrentLinkedQueue<>();
+        objects.parallelStream().forEach(id ->
+                check(id, objects, referenced, problems));
+        for (Map.Entry<String, Commit> branch
+                : workingTree.getBranches().entrySet()) {
+            String headID = branch.getValue().getID();
+            referenced.add(headID);
+            if (!objects.contains(headID)) {
+                problems.add("error: branch " + branch.getKey()
+                        + " points to missing commit " + headID);
+            }
+        }
+        ArrayList<String> stashes = Stash.entries(GITLET_DIR);
+        for (int i = 0; i < stashes.size(); i++) {
+            referenced.add(stashes.get(i));
+            if (!objects.contains(stashes.get(i))) {
+                problems.add("error: stash@{" + i + "} points to missing "
+                        + "commit " + stashes.get(i));
+            }
+        }
+        for (String id : workingTree.getAllCommits()) {
+            if (!objects.contains(id)) {
+                problems.add("error: logged commit " + id + " is missing");
+            }
+        }
+        ArrayList<String> report = new ArrayList<>(problems);
+        Collections.sort(report);
+        ArrayList<String> dangling = new ArrayList<>(objects);
+        dangling.removeAll(referenced);
+        Collections.sort(dangling);
+        for (String line : report) {
+            System.out.println(line);
+        }
+        for (String id : dangling) {
+            System.out.println("dangling commit " + id);
+        }
+        System.out.println("Checked " + objects.size() + " objects: "
+                + report.size() + " errors, " + dangling.size()
+                + " dangling.");
+    }
+
+    /** Checks the object ID and records the objects it refers to.
+     * @param id name of the object file
+     * @param objects names of all object files
+     * @param referenced IDs referred to by checked objects
+     * @param problems problems found so far */
+    private static void check(String id, Set<String> objects,
+                              Set<String> referenced, Queue<String> problems) {
+        Commit commit;
+        try {
+            commit = Utils.readObject(Utils.join(GITLET_DIR, id),
+                    Commit.class);
+        } catch (IllegalArgumentException excp) {
+            problems.add("error: object " + id + " cannot be read");
+            return;
+        }
+        String hashed = commit.contentID();
+        if (hashed != null && !id.equals(hashed)) {
+            problems.add("error: commit " + id + " hashes to " + hashed);
+        } else if (!id.equals(commit.getID())) {
+            problems.add("error: commit " + id + " has ID "
+                    + commit.getID());
+        }
+        if (commit.isMerge() && commit.getParent2ID() == null) {
+            problems.add("error: merge commit " + id
+                    + " has no second parent");
+        }
+        for (String parentID
+                : new String[] {commit.getParentID(), commit.getParent2ID()}) {
+            if (parentID == null) {
+                continue;
+            }
+            referenced.add(parentID);
+            if (!objects.contains(parentID)) {
+                problems.add("error: commit " + id + " has missing parent "
+                        + parentID);
+            }
+        }
+        Map<String, Blob> files = commit.getBlobs();
+        if (files == null) {
+            return;
+        }
+        if (commit.getRootID() != null) {
+            ArrayList<String> broken = new ArrayList<>();
+            files = new HashMap<>();
+            FileMap.check(GITLET_DIR, commit.getRootID(), NODES, files,
+                    broken);
+            for (String problem : broken) {
+                problems.add("error: commit " + id + " has " + problem);
+            }
+        }
+        for (Map.Entry<String, Blob> file : files.entrySet()) {
+            Blob blob = file.getValue();
+            boolean shared = blob != null
+                    && (blob.isStored() || blob.isChunked());
+            if (blob == null || (!shared && blob.getContents() == null)) {
+                problems.add("error: commit " + id + " has no contents for "
+                        + file.getKey());
+            } else if (!file.getKey().equals(blob.getName())) {
+                problems.add("error: commit " + id + " stores " + file.getKey()
+                        + " under the name " + blob.getName());
+            } else if (!shared || BLOBS.add(blob.getID())) {
+                try {
+                    if (!blob.rehash(GITLET_DIR).equals(blob.getID())) {
+                        problems.add("error: commit " + id + " has corrupt "
+                                + file.getKey() + ", expected blob "
+                                + blob.getID());
+                    }
+                } catch (IOException excp) {
+                    problems.add("error: commit " + id + " has "
+                            + excp.getMessage() + " in " + file.getKey());
+                }
+            }
+        }
+    }
+
+    /** IDs of the FileMap nodes checked so far. Commits share most of
+     *  their nodes with their parents, and only new ones are read. */
+    private static final Set<String> NODES = ConcurrentHashMap.newKeySet();
+
+    /** IDs of the stored and chunked blobs checked so far. Many commits
+     *  share each of them, and it is only read once. */
+    private static final Set<String> BLOBS = ConcurrentHashMap.newKeySet();
+}
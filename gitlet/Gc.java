@@ -0,0 +1,200 @@
+package gitlet;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+
+/** Deletes commits that can no longer be reached. A commit is kept if a
+ *  branch head, a stash, or any reflog entry newer than the retention
+ *  window leads to it, or if its file is itself newer than the window, which
+ *  protects commits another command has written but not yet pointed a
+ *  branch at. The nodes, blobs and chunks no kept commit refers to are
+ *  deleted too, under the same age rule. Reflog entries older than the
+ *  window are dropped. Gc holds the objects lock alone, so no other
+ *  command in any worktree runs meanwhile.
+ *  @author Chris Seo
+ */
+public class Gc {
+
+    /** Gitlet directory, where gitlet is stored. */
+    static final File GITLET_DIR = Main.GITLET_DIR;
+
+    /** Stores commit tree. */
+    static final File TREE_DIR = Tree.TREE_DIR;
+
+    /** Days reflog entries and new commits are kept by default. */
+    static final int DEFAULT_EXPIRE_DAYS = 30;
+
+    /** Milliseconds in a day. */
+    static final long DAY = 24L * 60 * 60 * 1000;
+
+    /** Handles the gc command.
+     * @param args takes gc, optionally + --expire + number of days */
+    public static void doGc(String[] args) {
+        int days = DEFAULT_EXPIRE_DAYS;
+        if (args.length == 3 && args[1].equals("--expire")) {
+            try {
+                days = Integer.parseInt(args[2]);
+            } catch (NumberFormatException excp) {
+                Utils.exit("Incorrect operands.");
+            }
+            if (days < 0) {
+                Utils.exit("Incorrect operands.");
+            }
+        } else if (args.length != 1) {
+            Utils.exit("Incorrect operands.");
+        }
+        Lock.holdObjects(GITLET_DIR);
+        long cutoff = System.currentTimeMillis() - days * DAY;
+        Tree workingTree = Utils.readMapped(TREE_DIR, Tree.class);
+        ArrayDeque<String> roots = new ArrayDeque<>();
+        for (Commit head : workingTree.getBranches().values()) {
+            roots.push(head.getID());
+        }
+        for (File log : Reflog.logFiles(GITLET_DIR)) {
+            for (String[] entry : Reflog.tail(log, Integer.MAX_VALUE,
+                    cutoff)) {
+                roots.push(entry[0]);
+                roots.push(entry[1]);
+            }
+        }
+        for (String id : Stash.entries(GITLET_DIR)) {
+            roots.push(id);
+        }
+        HashSet<String> reachable = reachable(roots);
+        ArrayList<String> deleted = new ArrayList<>();
+        HashSet<String> nodes = new HashSet<>();
+        HashSet<String> blobs = new HashSet<>();
+        HashSet<String> chunks = new HashSet<>();
+        for (String id : Pack.objects(GITLET_DIR)) {
+            File object = Utils.join(GITLET_DIR, id);
+            if (!reachable.contains(id) && object.lastModified() < cutoff
+                    && object.delete()) {
+                deleted.add(id);
+            } else if (object.isFile()) {
+                mark(Utils.readObject(object, Commit.class), nodes, blobs,
+                        chunks);
+            }
+        }
+        for (String id : blobs) {
+            chunks.addAll(Blob.chunksOf(GITLET_DIR, id));
+        }
+        int swept = sweep(FileMap.NODES_NAME, nodes, cutoff)
+                + sweep(Blob.BLOBS_NAME, blobs, cutoff)
+                + sweep(Chunks.CHUNKS_NAME, chunks, cutoff);
+        workingTree.dropCommits(deleted);
+        Blame.forget(GITLET_DIR, new HashSet<>(deleted));
+        workingTree.saveTo(TREE_DIR);
+        expireLogs(cutoff);
+        System.out.println("Removed " + deleted.size()
+                + " unreachable commits and " + swept + " other objects.");
+    }
+
+    /** Adds the nodes COMMIT refers to to NODES and their blobs to BLOBS.
+     *  A commit that holds its files in a HashMap has neither, so the
+     *  chunks of its chunked blobs are added to CHUNKS instead.
+     * @param commit a kept commit
+     * @param nodes IDs of the nodes to keep
+     * @param blobs IDs of the blobs to keep
+     * @param chunks IDs of the chunks to keep */
+    private static void mark(Commit commit, HashSet<String> nodes,
+                             HashSet<String> blobs, HashSet<String> chunks) {
+        if (commit.getRootID() != null) {
+            FileMap.mark(GITLET_DIR, commit.getRootID(), nodes, blobs);
+            return;
+        }
+        for (Blob blob : commit.getBlobs(GITLET_DIR).values()) {
+            if (!blob.isStored() && blob.isChunked()) {
+                chunks.addAll(blob.getChunks());
+            }
+        }
+    }
+
+    /** Deletes the objects in the subdirectories of the directory NAME in
+     *  the gitlet directory that are not in KEPT and were written before
+     *  CUTOFF.
+     * @param name name of the directory objects are spread over
+     * @param kept IDs of the objects to keep
+     * @param cutoff earliest time, in milliseconds, to keep objects from
+     * @return number of objects deleted */
+    private static int sweep(String name, HashSet<String> kept,
+                             long cutoff) {
+        File[] dirs = Utils.join(GITLET_DIR, name).listFiles();
+        if (dirs == null) {
+            return 0;
+        }
+        int result = 0;
+        for (File dir : dirs) {
+            File[] files = dir.listFiles();
+            if (files == null) {
+                continue;
+            }
+            for (File file : files) {
+                if (!kept.contains(dir.getName() + file.getName())
+                        && file.lastModified() < cutoff && file.delete()) {
+                    result += 1;
+                }
+            }
+        }
+        return result;
+    }
+
+    /** Returns the IDs of the commits reachable from ROOTS, ignoring IDs
+     *  with no commit. Only IDs are kept, one commit read at a time.
+     * @param roots IDs to start from, emptied by the walk
+     * @return reachable IDs */
+    private static HashSet<String> reachable(ArrayDeque<String> roots) {
+        HashSet<String> result = new HashSet<>();
+        while (!roots.isEmpty()) {
+            String id = roots.pop();
+            File file = Utils.join(GITLET_DIR, id);
+            if (id.equals(Reflog.ZERO) || result.contains(id)
+                    || !file.exists()) {
+                continue;
+            }
+            result.add(id);
+            Commit commit = Utils.readObject(file, Commit.class);
+            if (commit.getParentID() != null) {
+                roots.push(commit.getParentID());
+            }
+            if (commit.getParent2ID() != null) {
+                roots.push(commit.getParent2ID());
+            }
+        }
+        return result;
+    }
+
+    /** Rewrites each reflog without its entries older than CUTOFF, with
+     *  the tree locked so that no entry is appended meanwhile.
+     * @param cutoff earliest time, in milliseconds, to keep */
+    @SuppressWarnings("try")
+    private static void expireLogs(long cutoff) {
+        File lockFile = new File(TREE_DIR.getPath() + ".lock");
+        try (FileChannel lock = Lock.waitFor(lockFile)) {
+            for (File log : Reflog.logFiles(GITLET_DIR)) {
+                List<String[]> kept = Reflog.tail(log, Integer.MAX_VALUE,
+                        cutoff);
+                StringBuilder contents = new StringBuilder();
+                for (int i = kept.size() - 1; i >= 0; i--) {
+                    contents.append(String.join(" ", kept.get(i))).
+                            append('\n');
+                }
+                File temp = new File(log.getPath() + ".tmp");
+                Files.write(temp.toPath(), contents.toString().
+                        getBytes(StandardCharsets.UTF_8));
+                Files.move(temp.toPath(), log.toPath(),
+                        StandardCopyOption.REPLACE_EXISTING,
+                        StandardCopyOption.ATOMIC_MOVE);
+            }
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+    }
+}
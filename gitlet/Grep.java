@@ -0,0 +1,180 @@
+package gitlet;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
+
+/** Searches file contents across commits. Each distinct blob is searched
+ *  once, on a pool of one thread per core, however many commits and
+ *  paths share it, and its matching lines are then printed under every
+ *  commit and path that has it. Commits are read one at a time and
+ *  printed in order as their blobs finish, and only a bounded number of
+ *  blobs wait to be searched, so memory does not grow with history.
+ *  @author Chris Seo
+ */
+public class Grep {
+
+    /** Gitlet directory, where gitlet is stored. */
+    static final File GITLET_DIR = Main.GITLET_DIR;
+
+    /** Stores commit tree. */
+    static final File TREE_DIR = Tree.TREE_DIR;
+
+    /** Blobs waiting to be searched, per thread, before reading more
+     *  commits waits for them. */
+    static final int QUEUED_PER_THREAD = 16;
+
+    /** Handles the grep command. Prints "COMMIT:FILE:LINE:TEXT" for each
+     *  line matching the pattern in the given commits, the current head if
+     *  none are given, or all commits, newest first, with --all.
+     * @param args takes grep + pattern, optionally + --all or + commit IDs
+     *             and branch names */
+    public static void doGrep(String[] args) {
+        Pattern pattern;
+        try {
+            pattern = Pattern.compile(args[1]);
+        } catch (PatternSyntaxException excp) {
+            Utils.exit("Incorrect pattern: " + excp.getDescription());
+            return;
+        }
+        Tree workingTree = Utils.readMapped(TREE_DIR, Tree.class);
+        ArrayList<String> commitIDs = new ArrayList<>();
+        if (args.length == 3 && args[2].equals("--all")) {
+            Archive.ensureIndexes(workingTree);
+            HashSet<String> allCommits = workingTree.getAllCommits();
+            TimeIndex.newestFirst(GITLET_DIR, Long.MIN_VALUE, Long.MAX_VALUE,
+                id -> {
+                    if (allCommits.contains(id)) {
+                        commitIDs.add(id);
+                    }
+                    return true;
+                });
+        } else if (args.length == 2) {
+            commitIDs.add(workingTree.getCurrHead().getID());
+        } else {
+            for (int i = 2; i < args.length; i++) {
+                Commit head = workingTree.getHead(args[i]);
+                String id = head != null ? head.getID()
+                        : Utils.checkAbbreviated(args[i]);
+                if (id.length() != Utils.UID_LENGTH
+                        || !Utils.join(GITLET_DIR, id).isFile()) {
+                    Utils.exit("No commit with that id exists.");
+                }
+                commitIDs.add(id);
+            }
+        }
+        new Grep(pattern).search(commitIDs);
+    }
+
+    /** Constructor for a search.
+     * @param pattern pattern to search for */
+    Grep(Pattern pattern) {
+        _pattern = pattern;
+        int threads = Runtime.getRuntime().availableProcessors();
+        _pool = Executors.newFixedThreadPool(threads, runnable -> {
+            Thread thread = new Thread(runnable);
+            thread.setDaemon(true);
+            return thread;
+        });
+        _queued = new Semaphore(threads * QUEUED_PER_THREAD);
+    }
+
+    /** Searches the commits named COMMITIDS in order, printing each
+     *  commit's matches as soon as its blobs have been searched.
+     * @param commitIDs IDs of the commits */
+    void search(List<String> commitIDs) {
+        ArrayList<String> paths = new ArrayList<>();
+        ArrayList<Future<List<String>>> hits = new ArrayList<>();
+        String previous = null;
+        for (String commitID : commitIDs) {
+            Commit commit = Utils.readObject(Utils.join(GITLET_DIR,
+                    commitID), Commit.class);
+            int start = paths.size();
+            for (Map.Entry<String, Blob> file
+                    : commit.getBlobs().entrySet()) {
+                paths.add(commitID + ":" + file.getKey() + ":");
+                hits.add(submit(file.getValue()));
+            }
+            if (previous != null) {
+                print(paths, hits, start);
+            }
+            previous = commitID;
+        }
+        print(paths, hits, paths.size());
+        _pool.shutdown();
+    }
+
+    /** Returns the matching lines of BLOB, searching it unless a blob with
+     *  its ID has been searched already.
+     * @param blob blob to search
+     * @return "LINE:TEXT" for each matching line */
+    private Future<List<String>> submit(Blob blob) {
+        return _results.computeIfAbsent(blob.getID(), id -> {
+            _queued.acquireUninterruptibly();
+            String contents = blob.getContents();
+            return _pool.submit(() -> {
+                try {
+                    return matches(contents);
+                } finally {
+                    _queued.release();
+                }
+            });
+        });
+    }
+
+    /** Returns "LINE:TEXT" for each line of CONTENTS the pattern matches.
+     * @param contents contents of a file
+     * @return matching lines, numbered from 1 */
+    private List<String> matches(String contents) {
+        ArrayList<String> result = new ArrayList<>();
+        String[] lines = contents.split("\n", -1);
+        for (int i = 0; i < lines.length; i++) {
+            if (_pattern.matcher(lines[i]).find()) {
+                result.add((i + 1) + ":" + lines[i]);
+            }
+        }
+        return result;
+    }
+
+    /** Prints the matches of the first END paths and forgets them.
+     * @param paths "COMMIT:FILE:" for each file waiting to be printed
+     * @param hits matching lines of each of PATHS
+     * @param end number of paths to print */
+    private void print(ArrayList<String> paths,
+                       ArrayList<Future<List<String>>> hits, int end) {
+        try {
+            for (int i = 0; i < end; i++) {
+                for (String line : hits.get(i).get()) {
+                    System.out.println(paths.get(i) + line);
+                }
+            }
+        } catch (InterruptedException | ExecutionException excp) {
+            throw new IllegalStateException(excp);
+        }
+        paths.subList(0, end).clear();
+        hits.subList(0, end).clear();
+    }
+
+    /** Pattern searched for. */
+    private final Pattern _pattern;
+
+    /** Threads searching blobs. */
+    private final ExecutorService _pool;
+
+    /** Limits the blobs waiting to be searched. */
+    private final Semaphore _queued;
+
+    /** Blob IDs mapped to their matching lines. */
+    private final ConcurrentHashMap<String, Future<List<String>>> _results =
+            new ConcurrentHashMap<>();
+}
@@ -0,0 +1,204 @@
+package gitlet;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Set;
+import java.util.regex.Pattern;
+
+/** Matcher for the patterns in .gitletignore. Patterns are compiled once:
+ *  plain names and "*.ext" patterns go into hash tables and only the
+ *  remaining globs are kept as regular expressions. As in git, a later
+ *  pattern overrides an earlier one, "!" negates a pattern and a trailing
+ *  "/" only matches directories.
+ *  @author Chris Seo
+ */
+public class Ignore {
+
+    /** File in the working directory holding the ignore patterns. */
+    static final File IGNORE_FILE = Utils.join(Main.WORKING_DIR,
+            ".gitletignore");
+
+    /** Characters that make a pattern a glob rather than a plain name. */
+    static final String GLOB_CHARS = "*?[";
+
+    /** Constructor for a matcher.
+     * @param lines lines of an ignore file */
+    public Ignore(String[] lines) {
+        ArrayList<Boolean> negated = new ArrayList<>();
+        for (String line : lines) {
+            String pattern = line.trim();
+            if (pattern.isEmpty() || pattern.startsWith("#")) {
+                continue;
+            }
+            boolean negate = pattern.startsWith("!");
+            if (negate) {
+                pattern = pattern.substring(1);
+            }
+            boolean dirOnly = pattern.endsWith("/");
+            if (dirOnly) {
+                pattern = pattern.substring(0, pattern.length() - 1);
+            }
+            if (pattern.startsWith("/")) {
+                pattern = pattern.substring(1);
+            }
+            if (pattern.isEmpty() || pattern.contains("/")) {
+                continue;
+            }
+            int index = negated.size();
+            negated.add(negate);
+            String rest = pattern.substring(1);
+            if (!isGlob(pattern)) {
+                (dirOnly ? _dirLiterals : _literals).put(pattern, index);
+            } else if (!dirOnly && pattern.startsWith("*.")
+                    && !isGlob(rest)) {
+                _suffixes.put(rest, index);
+            } else {
+                _globs.add(Pattern.compile(globToRegex(pattern)));
+                _globIndices.add(index);
+                _globDirOnly.add(dirOnly);
+            }
+        }
+        _negated = new boolean[negated.size()];
+        for (int i = 0; i < _negated.length; i++) {
+            _negated[i] = negated.get(i);
+        }
+    }
+
+    /** Returns true if a file NAME in the working directory is ignored.
+     * @param name file name
+     * @return true if ignored */
+    static boolean isIgnored(String name) {
+        return current().matches(name, false);
+    }
+
+    /** Recompiles the patterns, for processes that outlive a change to
+     *  the ignore file. */
+    static void reload() {
+        _current = null;
+    }
+
+    /** Returns the compiled patterns, compiling them on first use. */
+    private static Ignore current() {
+        if (_current == null) {
+            if (IGNORE_FILE.isFile()) {
+                _current = new Ignore(Utils.readContentsAsString(IGNORE_FILE).
+                        split("\n"));
+            } else {
+                _current = new Ignore(new String[0]);
+            }
+        }
+        return _current;
+    }
+
+    /** Returns true if NAME matches the last pattern that applies to it and
+     *  that pattern is not negated.
+     * @param name file or directory name
+     * @param isDir true if NAME is a directory
+     * @return true if ignored */
+    boolean matches(String name, boolean isDir) {
+        if (_negated.length == 0) {
+            return false;
+        }
+        int best = _literals.getOrDefault(name, -1);
+        if (isDir) {
+            best = Math.max(best, _dirLiterals.getOrDefault(name, -1));
+        }
+        for (int dot = name.indexOf('.'); dot >= 0;
+             dot = name.indexOf('.', dot + 1)) {
+            best = Math.max(best,
+                    _suffixes.getOrDefault(name.substring(dot), -1));
+        }
+        for (int i = _globs.size() - 1; i >= 0; i--) {
+            int index = _globIndices.get(i);
+            if (index <= best) {
+                break;
+            }
+            if ((isDir || !_globDirOnly.get(i))
+                    && _globs.get(i).matcher(name).matches()) {
+                best = index;
+            }
+        }
+        return best >= 0 && !_negated[best];
+    }
+
+    /** Returns the names matched, if every pattern is a plain file name
+     *  that is not negated, so that callers can look names up instead
+     *  of testing each one.
+     * @return names matched, or null if a pattern is not a plain name */
+    Set<String> names() {
+        if (!_dirLiterals.isEmpty() || !_suffixes.isEmpty()
+                || !_globs.isEmpty()) {
+            return null;
+        }
+        for (boolean negate : _negated) {
+            if (negate) {
+                return null;
+            }
+        }
+        return _literals.keySet();
+    }
+
+    /** Returns true if PATTERN contains glob characters.
+     * @param pattern pattern
+     * @return true if a glob */
+    private static boolean isGlob(String pattern) {
+        for (int i = 0; i < pattern.length(); i++) {
+            if (GLOB_CHARS.indexOf(pattern.charAt(i)) >= 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /** Translates a glob into a regular expression.
+     * @param glob pattern using *, ? and [...]
+     * @return regular expression */
+    private static String globToRegex(String glob) {
+        StringBuilder result = new StringBuilder();
+        for (int i = 0; i < glob.length(); i++) {
+            char c = glob.charAt(i);
+            if (c == '*') {
+                result.append(".*");
+            } else if (c == '?') {
+                result.append('.');
+            } else if (c == '[' && glob.indexOf(']', i + 1) > i + 1) {
+                int close = glob.indexOf(']', i + 1);
+                String chars = glob.substring(i + 1, close);
+                if (chars.startsWith("!")) {
+                    chars = "^" + chars.substring(1);
+                }
+                result.append('[').append(chars.replace("\\", "\\\\")).
+                        append(']');
+                i = close;
+            } else {
+                result.append(Pattern.quote(String.valueOf(c)));
+            }
+        }
+        return result.toString();
+    }
+
+    /** Compiled patterns for this process. */
+    private static Ignore _current;
+
+    /** Plain names mapped to the index of their last pattern. */
+    private HashMap<String, Integer> _literals = new HashMap<>();
+
+    /** Plain directory names mapped to the index of their last pattern. */
+    private HashMap<String, Integer> _dirLiterals = new HashMap<>();
+
+    /** Extensions from "*.ext" patterns mapped to their last index. */
+    private HashMap<String, Integer> _suffixes = new HashMap<>();
+
+    /** Remaining patterns as regular expressions, in order. */
+    private ArrayList<Pattern> _globs = new ArrayList<>();
+
+    /** Index of each regular expression's pattern. */
+    private ArrayList<Integer> _globIndices = new ArrayList<>();
+
+    /** Whether each regular expression only matches directories. */
+    private ArrayList<Boolean> _globDirOnly = new ArrayList<>();
+
+    /** Whether each pattern, by index, is negated. */
+    private boolean[] _negated;
+}
@@ -0,0 +1,144 @@
+package gitlet;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashSet;
+
+/** Locks on a repository. Commands that change its working directory or
+ *  stage hold the repository lock throughout, so that a second one
+ *  started meanwhile stops at once instead of interleaving its writes.
+ *  Branches are guarded instead by a lock on the tree file, held only
+ *  while Tree.compareAndSave swaps it. Objects are guarded by a lock in
+ *  the gitlet directory the worktrees share, which every command but gc
+ *  shares and gc holds alone. The operating system drops a lock when its
+ *  holder exits, so a crash never leaves a repository locked.
+ *  @author Chris Seo
+ */
+public class Lock {
+
+    /** Name of the lock file in a gitlet directory. */
+    static final String LOCK_NAME = "lock";
+
+    /** Name of the objects lock file in a shared gitlet directory. */
+    static final String OBJECTS_LOCK_NAME = "objects.lock";
+
+    /** Locks the repository in GITLETDIR until this command exits. Exits
+     *  with a message if another command holds the lock.
+     * @param gitletDir gitlet directory */
+    static void hold(File gitletDir) {
+        keep(tryLock(Utils.join(gitletDir, LOCK_NAME), false));
+    }
+
+    /** Shares the objects lock of the repository in GITLETDIR, the shared
+     *  gitlet directory, until this command exits, so that gc cannot
+     *  delete objects this command reads or is about to refer to. Exits
+     *  with a message if gc holds the lock.
+     * @param gitletDir shared gitlet directory */
+    static void share(File gitletDir) {
+        File lockFile;
+        try {
+            lockFile = Utils.join(gitletDir, OBJECTS_LOCK_NAME).
+                    getCanonicalFile();
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+        if (SHARED.add(lockFile)) {
+            keep(tryLock(lockFile, true));
+        }
+    }
+
+    /** Holds the objects lock of the repository in GITLETDIR, the shared
+     *  gitlet directory, alone until this command exits. Exits with a
+     *  message if any other command shares it.
+     * @param gitletDir shared gitlet directory */
+    static void holdObjects(File gitletDir) {
+        keep(tryLock(Utils.join(gitletDir, OBJECTS_LOCK_NAME), false));
+    }
+
+    /** Returns an open channel sharing the objects lock of the repository
+     *  in GITLETDIR, which releases it when closed, waiting for gc to
+     *  finish first.
+     * @param gitletDir shared gitlet directory
+     * @return channel sharing the lock
+     * @throws IOException if the lock cannot be taken */
+    static FileChannel waitToShare(File gitletDir) throws IOException {
+        FileChannel channel = FileChannel.open(
+                Utils.join(gitletDir, OBJECTS_LOCK_NAME).toPath(),
+                StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE);
+        try {
+            channel.lock(0, Long.MAX_VALUE, true);
+        } catch (IOException | RuntimeException excp) {
+            channel.close();
+            throw excp;
+        }
+        return channel;
+    }
+
+    /** Keeps CHANNEL, holding a lock, open until this command exits.
+     *  Exits with a message if it is null, the lock being held elsewhere.
+     * @param channel channel holding a lock, or null */
+    private static void keep(FileChannel channel) {
+        if (channel == null) {
+            Utils.exit("Another gitlet command is running in this "
+                    + "repository.");
+        }
+        HELD.add(channel);
+    }
+
+    /** Returns an open channel holding a lock on LOCKFILE, shared with
+     *  other holders of shared locks if SHARED, which releases it when
+     *  closed, or null if the lock is held elsewhere.
+     * @param lockFile file to lock, created if missing
+     * @param shared true to take a shared lock
+     * @return channel holding the lock, or null */
+    private static FileChannel tryLock(File lockFile, boolean shared) {
+        try {
+            FileChannel channel = FileChannel.open(lockFile.toPath(),
+                    StandardOpenOption.CREATE, StandardOpenOption.READ,
+                    StandardOpenOption.WRITE);
+            FileLock lock;
+            try {
+                lock = channel.tryLock(0, Long.MAX_VALUE, shared);
+            } catch (OverlappingFileLockException excp) {
+                lock = null;
+            }
+            if (lock == null) {
+                channel.close();
+                return null;
+            }
+            return channel;
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+    }
+
+    /** Returns an open channel holding a lock on LOCKFILE, which releases
+     *  it when closed, waiting for other processes to release it first.
+     * @param lockFile file to lock, created if missing
+     * @return channel holding the lock
+     * @throws IOException if the lock cannot be taken */
+    static FileChannel waitFor(File lockFile) throws IOException {
+        FileChannel channel = FileChannel.open(lockFile.toPath(),
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+        try {
+            channel.lock();
+        } catch (IOException | RuntimeException excp) {
+            channel.close();
+            throw excp;
+        }
+        return channel;
+    }
+
+    /** Channels holding the locks taken by hold(), kept open until this
+     *  command exits. */
+    private static final ArrayList<FileChannel> HELD = new ArrayList<>();
+
+    /** Objects lock files shared by share(). */
+    private static final HashSet<File> SHARED = new HashSet<>();
+}
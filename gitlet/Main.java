@@ -1,6 +1,8 @@
 package gitlet;
 
 import java.io.File;
+import java.util.Arrays;
+import java.util.Set;
 
 /** Driver class for Gitlet, the tiny stupid version-control system.
  *  Initially checks for correct argument lengths.
@@ -11,23 +13,53 @@ public class Main {
     /** Working directory, where user initializes gitlet. */
     static final File WORKING_DIR = new File(System.getProperty("user.dir"));
 
-    /** Gitlet directory, where gitlet is stored. */
-    static final File GITLET_DIR = Utils.join(WORKING_DIR, ".gitlet");
+    /** Gitlet directory of this working directory, holding its stage and
+     *  caches. In a linked worktree it also names the shared one. */
+    static final File WORKTREE_DIR = Utils.join(WORKING_DIR, ".gitlet");
+
+    /** Gitlet directory, where gitlet is stored: commits, branches and
+     *  everything else the worktrees share. */
+    static final File GITLET_DIR = commonDir(WORKTREE_DIR);
 
     /** Stores commit tree. */
     static final File TREE_DIR = Tree.TREE_DIR;
 
+    /** Commands that run without the repository lock: those that only
+     *  read the repository or change nothing but its branches, which are
+     *  swapped atomically, and those that run until killed. */
+    static final Set<String> UNLOCKED = Set.of("log", "global-log", "find",
+            "status", "fsck", "reflog", "grep", "blame", "branch",
+            "rm-branch", "fetch", "push", "monitor", "serve");
+
+    /** Commands that do not share the objects lock throughout: gc, which
+     *  holds it alone, serve, which shares it for each session, and
+     *  monitor, which reads no objects. */
+    static final Set<String> UNSHARED = Set.of("gc", "serve", "monitor");
+
     /** Usage: java gitlet.Main ARGS, where ARGS contains
      *  <COMMAND> <OPERAND> .... */
     public static void main(String... args) {
+        if (args.length > 0 && args[0].startsWith("--trace")) {
+            System.setProperty(Trace.TRACE_PROPERTY,
+                    args[0].equals("--trace=json") ? "json" : "text");
+            args = Arrays.copyOfRange(args, 1, args.length);
+        }
         if (args.length == 0) {
             System.out.println("Please enter a command.");
             System.exit(0);
         }
+        Trace.begin(args[0]);
+        Reflog.setMessage(String.join(" ", args));
         if ("init".equals(args[0])) {
             init(args);
         } else {
-            if (GITLET_DIR.exists()) {
+            if (WORKTREE_DIR.exists()) {
+                if (!UNLOCKED.contains(args[0])) {
+                    Lock.hold(WORKTREE_DIR);
+                }
+                if (!UNSHARED.contains(args[0])) {
+                    Lock.share(GITLET_DIR);
+                }
                 switch (args[0]) {
                 case "add":
                     addFile(args);
@@ -65,6 +97,86 @@ public class Main {
                 case "merge":
                     merge(args);
                     break;
+                case "monitor":
+                    Monitor.doMonitor(args);
+                    break;
+                case "add-remote":
+                    remote(args, 3);
+                    break;
+                case "rm-remote":
+                    remote(args, 2);
+                    break;
+                case "fetch":
+                case "push":
+                case "pull":
+                    remote(args, 3);
+                    break;
+                case "serve":
+                    if (args.length > 4) {
+                        Utils.exit("Incorrect operands.");
+                    }
+                    Transport.doServe(args);
+                    break;
+                case "fsck":
+                    if (args.length != 1) {
+                        Utils.exit("Incorrect operands.");
+                    }
+                    Fsck.doFsck(args);
+                    break;
+                case "reflog":
+                    Reflog.doReflog(args);
+                    break;
+                case "gc":
+                    Gc.doGc(args);
+                    break;
+                case "grep":
+                    if (args.length < 2) {
+                        Utils.exit("Incorrect operands.");
+                    }
+                    Grep.doGrep(args);
+                    break;
+                case "cherry-pick":
+                    if (args.length != 2) {
+                        Utils.exit("Incorrect operands.");
+                    }
+                    Replay.doCherryPick(args);
+                    break;
+                case "rebase":
+                    if (args.length != 2) {
+                        Utils.exit("Incorrect operands.");
+                    }
+                    Replay.doRebase(args);
+                    break;
+                case "stash":
+                    if (args.length > 2 || (args.length == 2
+                            && !args[1].equals("pop")
+                            && !args[1].equals("list"))) {
+                        Utils.exit("Incorrect operands.");
+                    }
+                    Stash.doStash(args);
+                    break;
+                case "sparse":
+                    Sparse.doSparse(args);
+                    break;
+                case "worktree":
+                    if (args.length < 2 || (args[1].equals("add")
+                            ? args.length != 4 : args.length != 2)) {
+                        Utils.exit("Incorrect operands.");
+                    }
+                    Worktree.doWorktree(args);
+                    break;
+                case "blame":
+                    if (args.length != 2) {
+                        Utils.exit("Incorrect operands.");
+                    }
+                    Blame.doBlame(args);
+                    break;
+                case "config":
+                    if (args.length > 3) {
+                        Utils.exit("Incorrect operands.");
+                    }
+                    Config.doConfig(args);
+                    break;
                 default:
                     System.out.println("No command with "
                             + "that name exists.");
@@ -78,10 +190,22 @@ public class Main {
         }
     }
 
+    /** Returns the gitlet directory WORKTREEDIR shares with the other
+     *  worktrees: the one its link names, or WORKTREEDIR itself.
+     * @param worktreeDir gitlet directory of the working directory
+     * @return shared gitlet directory */
+    private static File commonDir(File worktreeDir) {
+        File link = Utils.join(worktreeDir, Worktree.LINK_NAME);
+        if (!link.isFile()) {
+            return worktreeDir;
+        }
+        return new File(Utils.readContentsAsString(link).trim());
+    }
+
     /** Handle init.
      * @param args takes init command */
     private static void init(String[] args) {
-        if (GITLET_DIR.exists()) {
+        if (WORKTREE_DIR.exists()) {
             System.out.println("A Gitlet version-control system "
                     + "already exists in the current directory.");
             System.exit(0);
@@ -101,7 +225,11 @@ public class Main {
             System.out.println("Incorrect operands.");
             System.exit(0);
         }
-        Stage.add(args[1]);
+        if (args[1].equals(".")) {
+            Stage.addAll();
+        } else {
+            Stage.add(args[1]);
+        }
     }
 
     /** Handle commit.
@@ -115,7 +243,7 @@ public class Main {
             System.out.println("Please enter a commit message.");
             System.exit(0);
         }
-        Tree workingTree = Utils.readObject(TREE_DIR, Tree.class);
+        Tree workingTree = Utils.readMapped(TREE_DIR, Tree.class);
         workingTree.commitCommand(args);
     }
 
@@ -129,13 +257,10 @@ public class Main {
     }
 
     /** Handle logs (global and branch).
-     * @param args takes log command
+     * @param args takes log or global-log + options
      * @param global true if global log */
     private static void log(String[] args, boolean global) {
-        if (args.length > 1) {
-            Utils.exit("Incorrect operands.");
-        }
-        Archive.doLog(global);
+        Archive.doLog(global, args);
     }
 
     /** Handle remove.
@@ -150,12 +275,9 @@ public class Main {
     }
 
     /** Handles find.
-     * @param args find + message of commit */
+     * @param args find + message of commit, or find + --word or --grep +
+     *             word or pattern */
     private static void find(String[] args) {
-        if (args.length > 2) {
-            System.out.println("Incorrect operands.");
-            System.exit(0);
-        }
         Archive.doFind(args);
     }
 
@@ -176,7 +298,7 @@ public class Main {
             System.out.println("Incorrect operands.");
             System.exit(0);
         }
-        Tree workingTree = Utils.readObject(TREE_DIR, Tree.class);
+        Tree workingTree = Utils.readMapped(TREE_DIR, Tree.class);
         workingTree.addBranch(args[1]);
     }
 
@@ -187,7 +309,7 @@ public class Main {
             System.out.println("Incorrect operands.");
             System.exit(0);
         }
-        Tree workingTree = Utils.readObject(TREE_DIR, Tree.class);
+        Tree workingTree = Utils.readMapped(TREE_DIR, Tree.class);
         workingTree.removeBranch(args[1]);
     }
 
@@ -202,12 +324,38 @@ public class Main {
     }
 
     /** Handle merge.
-     * @param args takes merge + branch name */
+     * @param args takes merge, optionally + --dry-run, + branch name */
     private static void merge(String[] args) {
-        if (args.length > 2) {
+        if (args.length < 2 || args.length > 3 || (args.length == 3
+                && !args[1].equals(Merge.DRY_RUN))) {
             System.out.println("Incorrect operands.");
             System.exit(0);
         }
         Merge.doMerge(args);
     }
+
+    /** Handle add-remote, rm-remote, fetch, push and pull.
+     * @param args takes the command + its operands
+     * @param length number of arguments the command takes */
+    private static void remote(String[] args, int length) {
+        if (args.length != length) {
+            Utils.exit("Incorrect operands.");
+        }
+        switch (args[0]) {
+        case "add-remote":
+            Remote.doAddRemote(args);
+            break;
+        case "rm-remote":
+            Remote.doRemoveRemote(args);
+            break;
+        case "fetch":
+            Remote.doFetch(args);
+            break;
+        case "push":
+            Remote.doPush(args);
+            break;
+        default:
+            Remote.doPull(args);
+        }
+    }
 }
@@ -1,13 +1,19 @@
 package gitlet;
 
 import java.io.File;
-import java.io.IOException;
-import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
-
-/** Handles merge command.
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+/** Handles merge command. The merge is worked out in memory from the
+ *  files of the two heads and their split point, conflicts included,
+ *  before anything is written; the result is then applied to the
+ *  working directory in one pass and committed without staging.
  *  @author Chris Seo
  */
 public class Merge {
@@ -15,6 +21,9 @@ public class Merge {
     /** Working directory, where user initializes gitlet. */
     static final File WORKING_DIR = Main.WORKING_DIR;
 
+    /** Gitlet directory, where gitlet is stored. */
+    static final File GITLET_DIR = Main.GITLET_DIR;
+
     /** Stores commit tree. */
     static final File TREE_DIR = Tree.TREE_DIR;
 
@@ -24,11 +33,16 @@ public class Merge {
     /** Staged for removal directory. */
     static final File STAGE_RM_DIR = Stage.STAGE_RM_DIR;
 
-    /** Does the merge command.
-     * @param args takes merge + branch name */
+    /** Option that prints what a merge would do instead of doing it. */
+    static final String DRY_RUN = "--dry-run";
+
+    /** Does the merge command. With --dry-run, prints what the merge
+     *  would do and changes nothing.
+     * @param args takes merge, optionally + --dry-run, + branch name */
     public static void doMerge(String[] args) {
-        Tree workingTree = Utils.readObject(TREE_DIR, Tree.class);
-        String inputBranch = args[1];
+        Tree workingTree = Utils.readMapped(TREE_DIR, Tree.class);
+        boolean dryRun = args[1].equals(DRY_RUN);
+        String inputBranch = args[args.length - 1];
 
         mergeError(workingTree, inputBranch);
 
@@ -39,242 +53,187 @@ public class Merge {
         if (splitPoint.getID().equals(inputHead.getID())) {
             Utils.exit("Given branch is an ancestor of the current branch.");
         } else if (splitPoint.getID().equals(currHead.getID())) {
+            if (dryRun) {
+                Utils.exit("Current branch would be fast-forwarded.");
+            }
             Checkout.doCheckout(args);
             Utils.exit("Current branch fast-forwarded.");
         }
 
-        doCheckouts(splitPoint, currHead, inputHead);
-
-        HashSet<String> unModCurr = unmodifiedSinceSplit(splitPoint,
-                                                            currHead);
-        for (String unmodifiedCurr : unModCurr) {
-            if (removedSinceSplit(splitPoint, inputHead).
-                                contains(unmodifiedCurr)) {
-                Remove.doRemove(unmodifiedCurr);
-            }
+        Result result = merge(splitPoint, currHead, inputHead);
+        if (dryRun) {
+            result.print();
+            return;
+        }
+        if (result.isEmpty()) {
+            Utils.exit("No changes added to the commit.");
+        }
+        result.apply();
+        if (result.hasConflicts()) {
+            System.out.println("Encountered a merge conflict.");
         }
-        checkConflicts(splitPoint, currHead, inputHead);
         String commitMessage = "Merged "
                 + inputBranch + " into "
                 + workingTree.currentBranch() + ".";
-
-        workingTree.commitFromStage(commitMessage, true,
-                                    inputHead.getID());
-        Stage.clear();
-        Stage.clearRemoved();
+        workingTree.commitFiles(commitMessage, result.getFiles(), true,
+                inputHead.getID());
     }
 
-    /** Checks modifications in both branches.
-     * @param splitPoint split point of tree
-     * @param currHead current head of branch merging into
-     * @param inputHead head of branch merging from */
-    public static void checkConflicts(Commit splitPoint, Commit currHead,
-                                      Commit inputHead) {
-        HashSet<String> currMod = modifiedSinceSplit(splitPoint, currHead);
-        HashSet<String> inputMod = modifiedSinceSplit(splitPoint, inputHead);
-        HashSet<String> currAdded = addedSinceSplit(splitPoint, currHead);
-        HashSet<String> inputAdded = addedSinceSplit(splitPoint, inputHead);
-        HashSet<String> currRemoved = removedSinceSplit(splitPoint, currHead);
-        HashSet<String> inputRemoved = removedSinceSplit(splitPoint,
-                                    inputHead);
-        HashMap<String, ArrayList<Blob>> conflictBlobs = new HashMap<>();
-        for (String modInInput : inputMod) {
-            if (currMod.contains(modInInput)) {
-                Blob currentModified = currHead.getBlobs().get(modInInput);
-                Blob inputModified = inputHead.getBlobs().get(modInInput);
-                if (!currentModified.getContents().equals(inputModified.
-                        getContents())) {
-                    ArrayList<Blob> conflicted = new ArrayList<>();
-                    conflicted.add(currentModified);
-                    conflicted.add(inputModified);
-                    conflictBlobs.put(modInInput, conflicted);
-                }
-            }
-        }
-        for (String modInInput : inputMod) {
-            if (currRemoved.contains(modInInput)) {
-                Blob inputModified = inputHead.getBlobs().get(modInInput);
-                ArrayList<Blob> conflicted = new ArrayList<>();
-                conflicted.add(null); conflicted.add(inputModified);
-                conflictBlobs.put(modInInput, conflicted);
-            }
-        }
-        for (String modInCurr : currMod) {
-            if (inputRemoved.contains(modInCurr)) {
-                Blob currentModified = currHead.getBlobs().get(modInCurr);
-                ArrayList<Blob> conflicted = new ArrayList<>();
-                conflicted.add(currentModified); conflicted.add(null);
-                conflictBlobs.put(modInCurr, conflicted);
-            }
-        }
-        for (String addedInInput : inputAdded) {
-            if (currAdded.contains(addedInInput)) {
-                Blob currentHeadAdded = currHead.getBlobs().get(addedInInput);
-                Blob inputHeadAdded = inputHead.getBlobs().get(addedInInput);
-                if (!currentHeadAdded.getContents().equals(inputHeadAdded.
-                        getContents())) {
-                    ArrayList<Blob> conflicted = new ArrayList<>();
-                    conflicted.add(currentHeadAdded);
-                    conflicted.add(inputHeadAdded);
-                    conflictBlobs.put(addedInInput, conflicted);
-                }
+    /** Merges the changes from SPLITPOINT to INPUTHEAD into CURRHEAD, in
+     *  memory. Only the files INPUTHEAD changed since SPLITPOINT can
+     *  differ from CURRHEAD's, and those are found by comparing the two
+     *  file maps, skipping the subtrees they share. Nothing is written
+     *  until the result is applied.
+     * @param splitPoint latest common ancestor
+     * @param currHead commit merged into
+     * @param inputHead commit merged in
+     * @return merged files, and the changes to the working directory */
+    static Result merge(Commit splitPoint, Commit currHead,
+                        Commit inputHead) {
+        FileMap split = FileMap.of(GITLET_DIR, splitPoint.getBlobs());
+        FileMap curr = FileMap.of(GITLET_DIR, currHead.getBlobs());
+        FileMap input = FileMap.of(GITLET_DIR, inputHead.getBlobs());
+        Result result = new Result(curr);
+        for (String name : split.diff(input)) {
+            String splitID = idOf(split.get(name));
+            String currID = idOf(curr.get(name));
+            String inputID = idOf(input.get(name));
+            if (Objects.equals(currID, inputID)) {
+                continue;
+            } else if (Objects.equals(splitID, currID)) {
+                result.take(name, input.get(name));
+            } else {
+                result.conflict(name, curr.get(name), input.get(name));
             }
         }
-        writeConflicts(conflictBlobs);
+        return result;
     }
 
-    /** Writes conflicts to conflicted file.
-     * @param conflictBlobs HashMap of file name, and an ArrayList of
-     * the conflicted blobs */
-    public static void writeConflicts(HashMap<String,
-            ArrayList<Blob>> conflictBlobs) {
-        if (!conflictBlobs.isEmpty()) {
-            System.out.println("Encountered a merge conflict.");
+    /** Returns the ID of BLOB, or null if there is none.
+     * @param blob a blob, or null
+     * @return its ID, or null */
+    private static String idOf(Blob blob) {
+        return blob == null ? null : blob.getID();
+    }
+
+    /** The outcome of a merge: the files of the merged commit and what
+     *  has to change in the working directory to match them. */
+    static class Result {
+
+        /** Constructor for a result that starts as FILES.
+         * @param files files of the commit merged into */
+        Result(FileMap files) {
+            _files = files;
         }
-        for (String fileName : conflictBlobs.keySet()) {
-            ArrayList<Blob> conflict = conflictBlobs.get(fileName);
-            Blob curr = conflict.get(0);
-            Blob input = conflict.get(1);
-            String currString;
-            String inputString;
-
-            if (curr == null) {
-                currString = "";
-            } else {
-                currString = curr.getContents();
-            }
-            if (input == null) {
-                inputString = "";
-            } else {
-                inputString = input.getContents();
-            }
-            File conflictedFile = Utils.join(WORKING_DIR, fileName);
-            if (!conflictedFile.exists()) {
-                try {
-                    conflictedFile.createNewFile();
-                } catch (IOException ignored) {
-                    return;
-                }
-            }
-            String fileString = "<<<<<<< HEAD\n"
-                    + currString
-                    + "=======\n"
-                    + inputString
-                    + ">>>>>>>\n";
-            Utils.writeContents(conflictedFile, fileString);
-            Stage.add(fileName);
+
+        /** Returns the files of the merged commit. */
+        FileMap getFiles() {
+            return _files;
         }
-    }
 
-    /** File modified in given branch but not in current branch should be
-     * checked out from version in given branch and staged. File added in
-     * given branch but not in current branch should be checked out and
-     * staged.
-     * @param splitPoint split point of tree
-     * @param currHead current branch's head
-     * @param inputHead given branch's head */
-    public static void doCheckouts(Commit splitPoint, Commit currHead,
-                                   Commit inputHead) {
-        HashSet<String> currMod = modifiedSinceSplit(splitPoint, currHead);
-        HashSet<String> inputMod = modifiedSinceSplit(splitPoint, inputHead);
-        for (String modInInput : inputMod) {
-            if (!currMod.contains(modInInput)) {
-                Checkout.checkoutCommitFile(modInInput, inputHead.getID());
-                Stage.add(modInInput);
-            }
+        /** Returns true if the merge changes no file. */
+        boolean isEmpty() {
+            return _written.isEmpty() && _removed.isEmpty();
         }
-        HashSet<String> currAdded = addedSinceSplit(splitPoint, currHead);
-        HashSet<String> inputAdded = addedSinceSplit(splitPoint, inputHead);
-        for (String addedInInput : inputAdded) {
-            if (!currAdded.contains(addedInInput)) {
-                Checkout.checkoutCommitFile(addedInInput, inputHead.getID());
-                Stage.add(addedInInput);
-            }
+
+        /** Returns true if any file conflicted. */
+        boolean hasConflicts() {
+            return !_conflicts.isEmpty();
         }
-    }
 
-    /** Returns a hashset of files that have been changed since the split.
-     * @param split splitpoint
-     * @param head head commit
-     * @return hashset */
-    public static HashSet<String> modifiedSinceSplit(Commit split,
-                                                     Commit head) {
-        HashSet<String> result = new HashSet<>();
+        /** Returns the names of the files written or deleted, in order. */
+        TreeSet<String> getChanged() {
+            TreeSet<String> result = new TreeSet<>(_written.keySet());
+            result.addAll(_removed);
+            return result;
+        }
 
-        HashMap<String, Blob> headBlobs = head.getBlobs();
-        HashMap<String, Blob> splitBlobs = split.getBlobs();
+        /** Returns the names of the conflicted files, in order. */
+        TreeSet<String> getConflicts() {
+            return _conflicts;
+        }
 
-        for (Blob headBlob : headBlobs.values()) {
-            String blobName = headBlob.getName();
-            if (splitBlobs.containsKey(blobName)) {
-                Blob splitBlob = splitBlobs.get(blobName);
-                if (!splitBlob.getContents().equals(headBlob.getContents())) {
-                    result.add(blobName);
-                }
+        /** Takes the other side's version of the file NAME, or removes it
+         *  if BLOB is null.
+         * @param name file name
+         * @param blob version to take, or null */
+        void take(String name, Blob blob) {
+            if (blob == null) {
+                _files = _files.without(name);
+                _removed.add(name);
+            } else {
+                _files = _files.with(name, blob);
+                _written.put(name, blob);
             }
         }
-        return result;
-    }
 
-    /** Returns a hashset of files that have not been changed since the split.
-     * @param split splitpoint
-     * @param head head commit
-     * @return hashset */
-    public static HashSet<String> unmodifiedSinceSplit(Commit split,
-                                                     Commit head) {
-        HashSet<String> result = new HashSet<>();
-
-        HashMap<String, Blob> headBlobs = head.getBlobs();
-        HashMap<String, Blob> splitBlobs = split.getBlobs();
+        /** Records a conflict in the file NAME between CURR and INPUT,
+         *  either of which is null if that side removed it.
+         * @param name file name
+         * @param curr current version, or null
+         * @param input other version, or null */
+        void conflict(String name, Blob curr, Blob input) {
+            String contents = "<<<<<<< HEAD\n"
+                    + (curr == null ? "" : curr.getContents())
+                    + "=======\n"
+                    + (input == null ? "" : input.getContents())
+                    + ">>>>>>>\n";
+            take(name, new Blob(name, contents));
+            _conflicts.add(name);
+        }
 
-        for (Blob headBlob : headBlobs.values()) {
-            String blobName = headBlob.getName();
-            if (splitBlobs.containsKey(blobName)) {
-                Blob splitBlob = splitBlobs.get(blobName);
-                if (splitBlob.getContents().equals(headBlob.getContents())) {
-                    result.add(blobName);
+        /** Brings the working directory in line with the merged files, in
+         *  one pass: removed files are deleted and every other change is
+         *  written, except to files sparse checkout leaves out that did
+         *  not conflict. */
+        void apply() {
+            long start = Trace.start();
+            for (String name : _removed) {
+                Utils.join(WORKING_DIR, name).delete();
+            }
+            for (Map.Entry<String, Blob> file : _written.entrySet()) {
+                if (Sparse.includes(file.getKey())
+                        || _conflicts.contains(file.getKey())) {
+                    file.getValue().writeTo(Utils.join(WORKING_DIR,
+                            file.getKey()));
                 }
             }
+            Trace.end("materialize", start);
         }
-        return result;
-    }
 
-    /** Returns a hashset of files that have been removed since the split.
-     * @param split splitpoint
-     * @param head head commit
-     * @return hashset */
-    public static HashSet<String> removedSinceSplit(Commit split,
-                                                  Commit head) {
-        HashSet<String> result = new HashSet<>();
-
-        HashMap<String, Blob> headBlobs = head.getBlobs();
-        HashMap<String, Blob> splitBlobs = split.getBlobs();
+        /** Prints the files the merge would update, remove and leave
+         *  conflicted. */
+        void print() {
+            TreeSet<String> updated = new TreeSet<>(_written.keySet());
+            updated.removeAll(_conflicts);
+            printSection("Updated Files", updated);
+            System.out.println();
+            printSection("Removed Files", _removed);
+            System.out.println();
+            printSection("Conflicted Files", _conflicts);
+        }
 
-        for (String splitBlob : splitBlobs.keySet()) {
-            if (!headBlobs.containsKey(splitBlob)) {
-                result.add(splitBlob);
+        /** Prints a section headed TITLE listing NAMES.
+         * @param title section title
+         * @param names file names, in order */
+        private static void printSection(String title, Set<String> names) {
+            System.out.println("=== " + title + " ===");
+            for (String name : names) {
+                System.out.println(name);
             }
         }
-        return result;
-    }
 
-    /** Returns a hashset of files that have been added since the split.
-     * @param split splitpoint
-     * @param head head commit
-     * @return hashset */
-    public static HashSet<String> addedSinceSplit(Commit split,
-                                                    Commit head) {
-        HashSet<String> result = new HashSet<>();
+        /** Files of the merged commit. */
+        private FileMap _files;
 
-        HashMap<String, Blob> headBlobs = head.getBlobs();
-        HashMap<String, Blob> splitBlobs = split.getBlobs();
+        /** Files to write to the working directory, by name. */
+        private final TreeMap<String, Blob> _written = new TreeMap<>();
 
-        for (String headBlob : headBlobs.keySet()) {
-            if (!splitBlobs.containsKey(headBlob)) {
-                result.add(headBlob);
-            }
-        }
-        return result;
+        /** Files to delete from the working directory. */
+        private final TreeSet<String> _removed = new TreeSet<>();
+
+        /** Files that conflicted. */
+        private final TreeSet<String> _conflicts = new TreeSet<>();
     }
 
     /** Handles errors for merge.
@@ -289,6 +248,13 @@ public class Merge {
                 || workingTree.currentBranch().equals(inputBranch)) {
             Utils.exit("Cannot merge a branch with itself.");
         }
+        uncommittedError(currHead);
+    }
+
+    /** Exits with a message if anything is staged or a file is untracked
+     *  in CURRHEAD, either of which a merge could lose.
+     * @param currHead current head */
+    static void uncommittedError(Commit currHead) {
         File[] staged = STAGE_DIR.listFiles();
         File[] stagedRM = STAGE_RM_DIR.listFiles();
         if (staged.length != 0 || stagedRM.length != 0) {
@@ -307,12 +273,38 @@ public class Merge {
      * @return the split point */
     public static Commit findSplitPoint(Tree workingTree,
                                         String inputtedBranch) {
+        Events.MergeBaseEvent event = null;
+        if (Events.recording()) {
+            event = new Events.MergeBaseEvent();
+            event.begin();
+        }
+        long start = Trace.start();
+        Commit splitPoint = walkToSplitPoint(workingTree, inputtedBranch);
+        Trace.end("mergeBase", start);
+        if (event != null && event.shouldCommit()) {
+            event.branch = inputtedBranch;
+            event.splitPoint = splitPoint == null ? null : splitPoint.getID();
+            event.commit();
+        }
+        return splitPoint;
+    }
+
+    /** Walks back from the current head to the latest ancestor it shares
+     *  with the inputted head.
+     * @param workingTree tree to be examined
+     * @param inputtedBranch branch given
+     * @return the split point */
+    private static Commit walkToSplitPoint(Tree workingTree,
+                                           String inputtedBranch) {
         Commit splitPoint;
         Commit givenHead = workingTree.getBranches().get(inputtedBranch);
         Commit currHead = workingTree.getCurrHead();
         HashSet<String> givenAncestors = findAllAncestors(givenHead);
         while (currHead != null) {
-            if (currHead.isMerge()) {
+            if (givenAncestors.contains(currHead.getID())) {
+                splitPoint = currHead;
+                return splitPoint;
+            } else if (currHead.isMerge()) {
                 HashMap<Integer, Commit> compares = new HashMap<>();
                 Commit parent1 = currHead.getParent();
                 Commit parent2 = currHead.getParent2();
@@ -337,9 +329,6 @@ public class Merge {
                 int closest = Collections.min(compares.keySet());
                 splitPoint = compares.get(closest);
                 return splitPoint;
-            } else if (givenAncestors.contains(currHead.getID())) {
-                splitPoint = currHead;
-                return splitPoint;
             }
             currHead = currHead.getParent();
         }
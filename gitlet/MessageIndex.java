@@ -0,0 +1,225 @@
+package gitlet;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.regex.Pattern;
+
+/** Index of commit messages. Every logged commit's message is appended to
+ *  .gitlet/messages, one "ID MESSAGE" line each, so that searching messages
+ *  never reads a commit. Each exact message and each word in it is also
+ *  appended, with the commit's ID, to one of the bucket files in
+ *  .gitlet/message_index chosen by its hash, so that finding a message or
+ *  word reads a single small file. Newlines and backslashes in messages
+ *  are escaped. The index is changed only with the tree file locked.
+ *  @author Chris Seo
+ */
+public class MessageIndex {
+
+    /** Name of the file of all messages in a gitlet directory. */
+    static final String MESSAGES_NAME = "messages";
+
+    /** Name of the directory of bucket files in a gitlet directory. */
+    static final String INDEX_NAME = "message_index";
+
+    /** Number of bucket files. */
+    static final int BUCKETS = 256;
+
+    /** Splits messages into words. */
+    static final Pattern WORD_BREAK = Pattern.compile("[^\\p{L}\\p{N}]+");
+
+    /** Adds the messages of COMMITS to the index of GITLETDIR.
+     * @param gitletDir gitlet directory
+     * @param commits commits to add */
+    static void add(File gitletDir, Collection<Commit> commits) {
+        StringBuilder messages = new StringBuilder();
+        HashMap<Integer, StringBuilder> buckets = new HashMap<>();
+        for (Commit commit : commits) {
+            String message = escape(commit.getMessage());
+            messages.append(commit.getID()).append(' ').append(message).
+                    append('\n');
+            TreeSet<String> keys = new TreeSet<>();
+            keys.add(exactKey(commit.getMessage()));
+            for (String word : WORD_BREAK.split(commit.getMessage())) {
+                if (!word.isEmpty()) {
+                    keys.add(wordKey(word));
+                }
+            }
+            for (String key : keys) {
+                buckets.computeIfAbsent(bucket(key),
+                        k -> new StringBuilder()).append(commit.getID()).
+                        append(' ').append(escape(key)).append('\n');
+            }
+        }
+        File indexDir = Utils.join(gitletDir, INDEX_NAME);
+        indexDir.mkdir();
+        append(Utils.join(gitletDir, MESSAGES_NAME), messages);
+        for (Map.Entry<Integer, StringBuilder> bucket : buckets.entrySet()) {
+            append(Utils.join(indexDir, String.format("%02x",
+                    bucket.getKey())), bucket.getValue());
+        }
+    }
+
+    /** Rebuilds the index of GITLETDIR from the commits named COMMITIDS,
+     *  for repositories made before it existed.
+     * @param gitletDir gitlet directory
+     * @param commitIDs IDs of every logged commit */
+    static void rebuild(File gitletDir, Collection<String> commitIDs) {
+        File indexDir = Utils.join(gitletDir, INDEX_NAME);
+        File[] buckets = indexDir.listFiles();
+        if (buckets != null) {
+            for (File bucket : buckets) {
+                bucket.delete();
+            }
+        }
+        ArrayList<Commit> commits = new ArrayList<>();
+        for (String id : commitIDs) {
+            File file = Utils.join(gitletDir, id);
+            if (file.exists()) {
+                commits.add(Utils.readObject(file, Commit.class));
+            }
+        }
+        File messages = Utils.join(gitletDir, MESSAGES_NAME);
+        messages.delete();
+        add(gitletDir, commits);
+    }
+
+    /** Returns true if the repository in GITLETDIR has a message index.
+     * @param gitletDir gitlet directory */
+    static boolean exists(File gitletDir) {
+        return Utils.join(gitletDir, MESSAGES_NAME).exists();
+    }
+
+    /** Returns the IDs of the commits whose message is exactly MESSAGE.
+     * @param gitletDir gitlet directory
+     * @param message message to find
+     * @return IDs, oldest first */
+    static LinkedHashSet<String> withMessage(File gitletDir, String message) {
+        return lookup(gitletDir, exactKey(message));
+    }
+
+    /** Returns the IDs of the commits whose message has the word WORD, in
+     *  any case.
+     * @param gitletDir gitlet directory
+     * @param word word to find
+     * @return IDs, oldest first */
+    static LinkedHashSet<String> withWord(File gitletDir, String word) {
+        return lookup(gitletDir, wordKey(word));
+    }
+
+    /** Returns the IDs of the commits with a message PATTERN matches part
+     *  of, reading only the messages file.
+     * @param gitletDir gitlet directory
+     * @param pattern pattern to match
+     * @return IDs, oldest first */
+    static LinkedHashSet<String> matching(File gitletDir, Pattern pattern) {
+        LinkedHashSet<String> result = new LinkedHashSet<>();
+        try (BufferedReader reader = Files.newBufferedReader(Utils.join(
+                gitletDir, MESSAGES_NAME).toPath(), StandardCharsets.UTF_8)) {
+            for (String line = reader.readLine(); line != null;
+                 line = reader.readLine()) {
+                int space = line.indexOf(' ');
+                if (space > 0 && pattern.matcher(unescape(
+                        line.substring(space + 1))).find()) {
+                    result.add(line.substring(0, space));
+                }
+            }
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+        return result;
+    }
+
+    /** Returns the IDs filed under KEY, reading the one bucket it is in.
+     * @param gitletDir gitlet directory
+     * @param key key of a message or word
+     * @return IDs, oldest first */
+    private static LinkedHashSet<String> lookup(File gitletDir, String key) {
+        LinkedHashSet<String> result = new LinkedHashSet<>();
+        File bucket = Utils.join(gitletDir, INDEX_NAME,
+                String.format("%02x", bucket(key)));
+        if (!bucket.exists()) {
+            return result;
+        }
+        String escaped = escape(key);
+        for (String line : Utils.readContentsAsString(bucket).split("\n")) {
+            int space = line.indexOf(' ');
+            if (space > 0 && line.substring(space + 1).equals(escaped)) {
+                result.add(line.substring(0, space));
+            }
+        }
+        return result;
+    }
+
+    /** Returns the key an exact message is filed under.
+     * @param message commit message
+     * @return key */
+    private static String exactKey(String message) {
+        return "m " + message;
+    }
+
+    /** Returns the key a word is filed under.
+     * @param word a word of a message
+     * @return key */
+    private static String wordKey(String word) {
+        return "w " + word.toLowerCase();
+    }
+
+    /** Returns the bucket KEY is filed in.
+     * @param key key of a message or word
+     * @return bucket number */
+    private static int bucket(String key) {
+        return Math.floorMod(key.hashCode(), BUCKETS);
+    }
+
+    /** Appends TEXT to FILE, creating it if needed.
+     * @param file file to append to
+     * @param text text to append */
+    private static void append(File file, CharSequence text) {
+        try {
+            Files.write(file.toPath(), text.toString().
+                    getBytes(StandardCharsets.UTF_8),
+                    StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+    }
+
+    /** Returns TEXT with backslashes and newlines escaped.
+     * @param text text to escape
+     * @return escaped text */
+    private static String escape(String text) {
+        return text.replace("\\", "\\\\").replace("\n", "\\n").
+                replace("\r", "\\r");
+    }
+
+    /** Reverses escape.
+     * @param text escaped text
+     * @return original text */
+    private static String unescape(String text) {
+        if (text.indexOf('\\') < 0) {
+            return text;
+        }
+        StringBuilder result = new StringBuilder();
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (c == '\\' && i + 1 < text.length()) {
+                i += 1;
+                c = text.charAt(i);
+                result.append(c == 'n' ? '\n' : c == 'r' ? '\r' : c);
+            } else {
+                result.append(c);
+            }
+        }
+        return result.toString();
+    }
+}
@@ -0,0 +1,139 @@
+package gitlet;
+
+import java.lang.management.ManagementFactory;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import javax.management.JMException;
+import javax.management.ObjectName;
+
+/** Cumulative metrics for long-lived gitlet processes, such as serve and
+ *  monitor, or a program embedding gitlet, exposed over JMX. Nothing is
+ *  recorded until register() is called, so one-shot commands pay only
+ *  for the check.
+ *  @author Chris Seo
+ */
+public class Metrics implements MetricsMXBean {
+
+    /** Name the MXBean is registered under. */
+    static final String OBJECT_NAME = "gitlet:type=Metrics";
+
+    /** Number of latency buckets; the last one holds everything slower
+     *  than about a minute. */
+    static final int BUCKETS = 27;
+
+    /** Registers the MXBean and starts recording. Does nothing if it is
+     *  already registered. */
+    public static synchronized void register() {
+        if (_registered) {
+            return;
+        }
+        try {
+            ManagementFactory.getPlatformMBeanServer().registerMBean(
+                    INSTANCE, new ObjectName(OBJECT_NAME));
+            _registered = true;
+        } catch (JMException excp) {
+            throw new IllegalStateException(excp);
+        }
+    }
+
+    /** Returns true if metrics are being recorded. */
+    static boolean isRegistered() {
+        return _registered;
+    }
+
+    /** Adds to a counter if metrics are being recorded.
+     * @param counter name of the counter
+     * @param amount amount to add */
+    static void count(String counter, long amount) {
+        if (!_registered) {
+            return;
+        }
+        INSTANCE._counters.computeIfAbsent(counter, k -> new LongAdder()).
+                add(amount);
+    }
+
+    /** Records how long a command or phase took if metrics are being
+     *  recorded.
+     * @param name name of the command or phase
+     * @param nanos nanoseconds taken */
+    static void latency(String name, long nanos) {
+        if (!_registered) {
+            return;
+        }
+        long micros = Math.max(1, nanos / 1000);
+        int bucket = Math.min(BUCKETS - 1,
+                64 - Long.numberOfLeadingZeros(micros) - 1);
+        INSTANCE._latencies.computeIfAbsent(name,
+                k -> new AtomicLongArray(BUCKETS)).incrementAndGet(bucket);
+    }
+
+    /** Records a lookup in a cache.
+     * @param cache name of the cache
+     * @param hit true if the lookup was a hit */
+    static void cacheLookup(String cache, boolean hit) {
+        count("cache_" + cache + (hit ? "_hits" : "_misses"), 1);
+    }
+
+    @Override
+    public Map<String, Long> getCounters() {
+        TreeMap<String, Long> result = new TreeMap<>();
+        for (Map.Entry<String, LongAdder> counter : _counters.entrySet()) {
+            result.put(counter.getKey(), counter.getValue().sum());
+        }
+        return result;
+    }
+
+    @Override
+    public Map<String, long[]> getLatencyHistograms() {
+        TreeMap<String, long[]> result = new TreeMap<>();
+        for (Map.Entry<String, AtomicLongArray> histogram
+                : _latencies.entrySet()) {
+            long[] buckets = new long[BUCKETS];
+            for (int i = 0; i < BUCKETS; i++) {
+                buckets[i] = histogram.getValue().get(i);
+            }
+            result.put(histogram.getKey(), buckets);
+        }
+        return result;
+    }
+
+    @Override
+    public Map<String, Double> getCacheHitRates() {
+        TreeMap<String, Double> result = new TreeMap<>();
+        for (String counter : _counters.keySet()) {
+            if (counter.startsWith("cache_") && counter.endsWith("_hits")) {
+                String cache = counter.substring("cache_".length(),
+                        counter.length() - "_hits".length());
+                long hits = _counters.get(counter).sum();
+                LongAdder misses = _counters.get("cache_" + cache
+                        + "_misses");
+                long total = hits + (misses == null ? 0 : misses.sum());
+                result.put(cache, total == 0 ? 0 : (double) hits / total);
+            }
+        }
+        return result;
+    }
+
+    @Override
+    public void reset() {
+        _counters.clear();
+        _latencies.clear();
+    }
+
+    /** The one instance, registered by register(). */
+    private static final Metrics INSTANCE = new Metrics();
+
+    /** True once register() has been called. */
+    private static volatile boolean _registered;
+
+    /** Counters by name. */
+    private final ConcurrentHashMap<String, LongAdder> _counters =
+            new ConcurrentHashMap<>();
+
+    /** Latency histograms by command or phase name. */
+    private final ConcurrentHashMap<String, AtomicLongArray> _latencies =
+            new ConcurrentHashMap<>();
+}
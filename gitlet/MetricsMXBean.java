@@ -0,0 +1,23 @@
+package gitlet;
+
+import java.util.Map;
+
+/** Management interface of Metrics, registered as gitlet:type=Metrics.
+ *  @author Chris Seo
+ */
+public interface MetricsMXBean {
+
+    /** Returns cumulative counters: bytes read, written and hashed, files
+     *  stat'ed, objects read by type and commands run. */
+    Map<String, Long> getCounters();
+
+    /** Returns, for each command and phase, how many calls took under
+     *  1, 2, 4, ... 2^(n-1) microseconds, and the rest in the last bucket. */
+    Map<String, long[]> getLatencyHistograms();
+
+    /** Returns each cache's hits as a share of its lookups. */
+    Map<String, Double> getCacheHitRates();
+
+    /** Sets everything back to zero. */
+    void reset();
+}
@@ -0,0 +1,261 @@
+package gitlet;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.Serializable;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.file.FileSystems;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.concurrent.TimeUnit;
+
+import static java.nio.file.StandardWatchEventKinds.ENTRY_CREATE;
+import static java.nio.file.StandardWatchEventKinds.ENTRY_DELETE;
+import static java.nio.file.StandardWatchEventKinds.ENTRY_MODIFY;
+import static java.nio.file.StandardWatchEventKinds.OVERFLOW;
+
+/** Long-lived filesystem monitor. Watches the working directory and keeps
+ *  a journal of the files in it and of which files changed when, so that
+ *  other gitlet commands only have to look at those files.
+ *  @author Chris Seo
+ */
+public class Monitor implements Serializable {
+
+    /** Keeps journals saved by this version readable. */
+    private static final long serialVersionUID = 3619512939561469245L;
+
+    /** Working directory, where user initializes gitlet. */
+    static final File WORKING_DIR = Main.WORKING_DIR;
+
+    /** Stores the monitor's journal. */
+    static final File MONITOR_SAVE = Utils.join(Main.WORKTREE_DIR, "monitor");
+
+    /** Locked by the running monitor for as long as it is alive. */
+    static final File MONITOR_LOCK = Utils.join(Main.WORKTREE_DIR,
+            "monitor_lock");
+
+    /** Created to ask the running monitor to stop. */
+    static final File MONITOR_STOP = Utils.join(Main.WORKTREE_DIR,
+            "monitor_stop");
+
+    /** Prefix of the cookie files used to sync with the monitor. */
+    static final String COOKIE_PREFIX = ".gitlet_cookie_";
+
+    /** Milliseconds the monitor waits for events before checking
+     *  whether it was asked to stop. */
+    static final long POLL_INTERVAL = 500;
+
+    /** Milliseconds a command waits for the monitor to see its cookie. */
+    static final long SYNC_TIMEOUT = 1000;
+
+    /** Constructor for a new journal. Starts from a full scan. */
+    private Monitor() {
+        _session = System.currentTimeMillis();
+        _sequence = 1;
+        rescan();
+    }
+
+    /** Handles the monitor command.
+     * @param args takes monitor, or monitor + stop */
+    public static void doMonitor(String[] args) {
+        if (args.length == 2 && args[1].equals("stop")) {
+            if (!isRunning()) {
+                Utils.exit("No monitor is running.");
+            }
+            try {
+                MONITOR_STOP.createNewFile();
+            } catch (IOException ignored) {
+                return;
+            }
+        } else if (args.length == 1) {
+            try (FileChannel channel = FileChannel.open(MONITOR_LOCK.toPath(),
+                    StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+                 FileLock lock = channel.tryLock();
+                 WatchService watcher = FileSystems.getDefault().
+                         newWatchService()) {
+                if (lock == null) {
+                    Utils.exit("A monitor is already running.");
+                }
+                MONITOR_STOP.delete();
+                Metrics.register();
+                WORKING_DIR.toPath().register(watcher, ENTRY_CREATE,
+                        ENTRY_DELETE, ENTRY_MODIFY);
+                new Monitor().run(watcher);
+            } catch (IOException | InterruptedException excp) {
+                Utils.exit("Monitor stopped: " + excp.getMessage());
+            } finally {
+                MONITOR_SAVE.delete();
+                MONITOR_STOP.delete();
+            }
+        } else {
+            Utils.exit("Incorrect operands.");
+        }
+    }
+
+    /** Records events from WATCHER until asked to stop.
+     * @param watcher watch service registered on the working directory
+     * @throws InterruptedException if interrupted while waiting */
+    private void run(WatchService watcher) throws InterruptedException {
+        save();
+        while (!MONITOR_STOP.exists()) {
+            WatchKey key = watcher.poll(POLL_INTERVAL, TimeUnit.MILLISECONDS);
+            if (key == null) {
+                continue;
+            }
+            _sequence += 1;
+            for (WatchEvent<?> event : key.pollEvents()) {
+                Metrics.count("monitor_events", 1);
+                if (event.kind() == OVERFLOW) {
+                    rescan();
+                    continue;
+                }
+                String fileName = event.context().toString();
+                File file = Utils.join(WORKING_DIR, fileName);
+                if (fileName.startsWith(COOKIE_PREFIX)) {
+                    if (event.kind() == ENTRY_DELETE) {
+                        _cookies.remove(fileName);
+                    } else {
+                        _cookies.add(fileName);
+                    }
+                } else if (fileName.equals(Ignore.IGNORE_FILE.getName())) {
+                    Ignore.reload();
+                    rescan();
+                } else if (Ignore.isIgnored(fileName)) {
+                    continue;
+                } else if (file.isFile()) {
+                    _files.add(fileName);
+                    _changed.put(fileName, _sequence);
+                } else {
+                    _files.remove(fileName);
+                    _changed.put(fileName, _sequence);
+                }
+            }
+            if (!key.reset()) {
+                break;
+            }
+            save();
+        }
+    }
+
+    /** Forgets all recorded changes and lists the working directory again,
+     *  after which every cached blob ID must be recomputed. */
+    private void rescan() {
+        Metrics.count("monitor_rescans", 1);
+        _files = WorkingDir.scan();
+        _changed.clear();
+        _rescan = _sequence;
+    }
+
+    /** Writes the journal to a temporary file and renames it into place,
+     *  so that commands never read a partially written journal. */
+    private void save() {
+        Utils.replaceObject(MONITOR_SAVE, this, false);
+    }
+
+    /** Returns true if a monitor currently holds the monitor lock. */
+    static boolean isRunning() {
+        if (!MONITOR_LOCK.exists()) {
+            return false;
+        }
+        try (FileChannel channel = FileChannel.open(MONITOR_LOCK.toPath(),
+                StandardOpenOption.WRITE)) {
+            FileLock lock = channel.tryLock();
+            if (lock == null) {
+                return true;
+            }
+            lock.release();
+            return false;
+        } catch (OverlappingFileLockException excp) {
+            return true;
+        } catch (IOException excp) {
+            return false;
+        }
+    }
+
+    /** Returns the journal once the monitor has seen every change made to
+     *  the working directory before this call. Drops a cookie file into the
+     *  working directory and waits for it to show up in the journal.
+     * @return the journal, or null if no monitor is running or it did not
+     * answer in time */
+    static Monitor sync() {
+        if (!isRunning()) {
+            return null;
+        }
+        String cookieName = COOKIE_PREFIX + ProcessHandle.current().pid()
+                + "_" + System.nanoTime();
+        File cookie = Utils.join(WORKING_DIR, cookieName);
+        try {
+            cookie.createNewFile();
+            long deadline = System.currentTimeMillis() + SYNC_TIMEOUT;
+            long lastRead = -1;
+            while (System.currentTimeMillis() < deadline) {
+                long modified = MONITOR_SAVE.lastModified();
+                if (modified != lastRead && MONITOR_SAVE.exists()) {
+                    lastRead = modified;
+                    Monitor journal = Utils.readMapped(MONITOR_SAVE,
+                            Monitor.class);
+                    if (journal._cookies.contains(cookieName)) {
+                        return journal;
+                    }
+                }
+                Thread.sleep(2);
+            }
+            return null;
+        } catch (IOException | InterruptedException
+                | IllegalArgumentException excp) {
+            return null;
+        } finally {
+            cookie.delete();
+        }
+    }
+
+    /** Returns the names of the plain files in the working directory. */
+    HashSet<String> getFiles() {
+        return _files;
+    }
+
+    /** Returns each changed file name and the sequence number of its
+     *  latest change. */
+    HashMap<String, Long> getChanged() {
+        return _changed;
+    }
+
+    /** Returns the sequence number of the latest batch of events. */
+    long getSequence() {
+        return _sequence;
+    }
+
+    /** Returns the sequence number of the latest full rescan. */
+    long getRescan() {
+        return _rescan;
+    }
+
+    /** Returns an identifier for this run of the monitor. */
+    long getSession() {
+        return _session;
+    }
+
+    /** Identifier for this run of the monitor. */
+    private long _session;
+
+    /** Sequence number of the latest batch of events. */
+    private long _sequence;
+
+    /** Sequence number of the latest full rescan. */
+    private long _rescan;
+
+    /** Names of the plain files in the working directory. */
+    private HashSet<String> _files = new HashSet<>();
+
+    /** File names mapped to the sequence number of their latest change. */
+    private HashMap<String, Long> _changed = new HashMap<>();
+
+    /** Cookie files currently in the working directory. */
+    private HashSet<String> _cookies = new HashSet<>();
+}
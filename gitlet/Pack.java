@@ -0,0 +1,411 @@
+package gitlet;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.PipedInputStream;
+import java.io.PipedOutputStream;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+
+/** Streams commits from one repository to another as a single pack.
+ *  Each object is followed by a checksum and stored by the receiver as
+ *  soon as it is verified, so an interrupted transfer keeps every object
+ *  that made it across. The FileMap nodes, blobs and large file chunks a
+ *  commit adds travel just ahead of it. Objects are named in a plan by
+ *  their type followed by their ID, and the sender leaves out those the
+ *  receiver says it holds, so a retried transfer only sends what is
+ *  still missing.
+ *  @author Chris Seo
+ */
+public class Pack {
+
+    /** First thing written to every pack. */
+    static final String MAGIC = "gitlet-pack-3";
+
+    /** Marks a commit in a pack. */
+    static final byte COMMIT = 'c';
+
+    /** Marks a chunk of a large file in a pack. */
+    static final byte CHUNK = 'k';
+
+    /** Marks a node of a FileMap in a pack. */
+    static final byte NODE = 'n';
+
+    /** Marks a blob stored apart from the FileMap nodes in a pack. */
+    static final byte BLOB = 'b';
+
+    /** Marks the end of a pack. */
+    static final byte END = 'e';
+
+    /** Largest object a pack may carry, in bytes. */
+    static final int MAX_OBJECT = Integer.MAX_VALUE - 8;
+
+    /** Returns the objects a pack of the commits IDS in DIR carries, in
+     *  the order they are sent. Each commit is preceded by the nodes of
+     *  its FileMap, and the blobs and the chunks of its large files, that
+     *  neither its parents nor an earlier commit in the pack have, since
+     *  the receiver has every parent of what it is sent.
+     * @param dir gitlet directory holding the objects
+     * @param ids IDs of the commits to send, parents first
+     * @return objects, each its type followed by its ID */
+    static ArrayList<String> plan(File dir, List<String> ids) {
+        ArrayList<String> result = new ArrayList<>();
+        HashSet<String> sentNodes = new HashSet<>();
+        HashSet<String> sentBlobs = new HashSet<>();
+        HashSet<String> sentChunks = new HashSet<>();
+        Commit previous = null;
+        for (String id : ids) {
+            Commit commit = Utils.readObject(Utils.join(dir, id),
+                    Commit.class);
+            ArrayList<Map<String, Blob>> parents = new ArrayList<>();
+            for (String parentID : new String[] {commit.getParentID(),
+                commit.getParent2ID()}) {
+                if (parentID != null) {
+                    parents.add((previous != null
+                            && parentID.equals(previous.getID()) ? previous
+                            : Utils.readObject(Utils.join(dir, parentID),
+                            Commit.class)).getBlobs(dir));
+                }
+            }
+            Map<String, Blob> files = commit.getBlobs(dir);
+            ArrayList<String> nodes = new ArrayList<>();
+            if (files instanceof FileMap) {
+                ArrayList<FileMap> olds = new ArrayList<>();
+                for (Map<String, Blob> parent : parents) {
+                    if (parent instanceof FileMap) {
+                        olds.add((FileMap) parent);
+                    }
+                }
+                HashMap<String, Blob> changed = new HashMap<>();
+                ((FileMap) files).changes(olds, sentNodes, nodes, changed);
+                files = changed;
+            }
+            for (String chunk : newChunks(files, parents, sentChunks)) {
+                result.add(object(CHUNK, chunk));
+            }
+            for (String blob : newBlobs(dir, files, parents, sentBlobs)) {
+                result.add(object(BLOB, blob));
+            }
+            for (String node : nodes) {
+                result.add(object(NODE, node));
+            }
+            result.add(object(COMMIT, id));
+            previous = commit;
+        }
+        return result;
+    }
+
+    /** Writes OBJECTS, from a plan, in DIR to DATA, in order.
+     * @param dir gitlet directory holding the objects
+     * @param objects objects to send, each its type followed by its ID
+     * @param data stream to write the pack to
+     * @throws IOException if the pack could not be written */
+    static void send(File dir, List<String> objects, DataOutputStream data)
+        throws IOException {
+        data.writeUTF(MAGIC);
+        for (String object : objects) {
+            write(data, (byte) object.charAt(0), object.substring(1),
+                    Utils.readContents(file(dir, object)));
+        }
+        data.writeByte(END);
+        data.flush();
+    }
+
+    /** Returns the name of the object of type TYPE with ID in a plan.
+     * @param type COMMIT, CHUNK, NODE or BLOB
+     * @param id ID of the object
+     * @return its type followed by its ID */
+    static String object(byte type, String id) {
+        return (char) type + id;
+    }
+
+    /** Returns true if OBJECT names an object of a plan.
+     * @param object a name, perhaps from another repository
+     * @return true if it is a type followed by an ID */
+    static boolean isObject(String object) {
+        if (object == null || object.isEmpty()) {
+            return false;
+        }
+        char type = object.charAt(0);
+        return (type == COMMIT || type == CHUNK || type == NODE
+                || type == BLOB) && Utils.isID(object.substring(1));
+    }
+
+    /** Returns the file OBJECT, named as in a plan, is stored in in DIR.
+     * @param dir gitlet directory
+     * @param object type followed by ID
+     * @return its file */
+    static File file(File dir, String object) {
+        String id = object.substring(1);
+        switch (object.charAt(0)) {
+        case CHUNK:
+            return Chunks.file(dir, id);
+        case NODE:
+            return FileMap.nodeFile(dir, id);
+        case BLOB:
+            return Blob.file(dir, id);
+        default:
+            return Utils.join(dir, id);
+        }
+    }
+
+    /** Reads a pack from DATA and stores each object in DIR. Commits
+     *  hashed by earlier versions of Commit cannot be hashed again, and
+     *  are only taken from packs that are LOCAL.
+     * @param dir gitlet directory to store the objects in
+     * @param data stream to read the pack from
+     * @param local true if the pack comes from a repository on this
+     *              filesystem rather than over the network
+     * @return IDs of the commits received
+     * @throws IOException if the pack is cut short or corrupted */
+    static ArrayList<String> receive(File dir, DataInputStream data,
+                                     boolean local) throws IOException {
+        if (!data.readUTF().equals(MAGIC)) {
+            throw new IOException("not a gitlet pack");
+        }
+        ArrayList<String> result = new ArrayList<>();
+        for (byte type = data.readByte(); type != END;
+             type = data.readByte()) {
+            String id = data.readUTF();
+            if (!Utils.isID(id)) {
+                throw new IOException("bad object ID in pack");
+            }
+            int length = data.readInt();
+            if (length < 0 || length > MAX_OBJECT) {
+                throw new IOException("bad length for " + id);
+            }
+            byte[] contents = data.readNBytes(length);
+            if (contents.length != length) {
+                throw new IOException("pack cut short in " + id);
+            }
+            String checksum = Utils.sha1(contents);
+            if (!data.readUTF().equals(checksum)) {
+                throw new IOException("checksum mismatch in " + id);
+            }
+            if (type == CHUNK || type == NODE) {
+                if (!checksum.equals(id)) {
+                    throw new IOException("object " + id + " has ID "
+                            + checksum);
+                }
+                if (type == NODE) {
+                    checkChunks(id, FileMap.files(dir, contents).values());
+                }
+                Utils.writeNew(type == CHUNK ? Chunks.file(dir, id)
+                        : FileMap.nodeFile(dir, id), contents, 0,
+                        contents.length);
+            } else if (type == BLOB) {
+                String blobID = Blob.decode(dir, "", contents).getID();
+                if (!blobID.equals(id)) {
+                    throw new IOException("blob " + id + " has ID "
+                            + blobID);
+                }
+                Utils.writeNew(Blob.file(dir, id), contents, 0,
+                        contents.length);
+            } else if (type == COMMIT) {
+                store(dir, id, contents, local);
+                result.add(id);
+            } else {
+                throw new IOException("unknown object type in pack");
+            }
+        }
+        return result;
+    }
+
+    /** Writes one object to DATA.
+     * @param data stream to write the pack to
+     * @param type COMMIT, CHUNK, NODE or BLOB
+     * @param id ID of the object
+     * @param contents its bytes
+     * @throws IOException if it could not be written */
+    private static void write(DataOutputStream data, byte type, String id,
+                              byte[] contents) throws IOException {
+        data.writeByte(type);
+        data.writeUTF(id);
+        data.writeInt(contents.length);
+        data.write(contents);
+        data.writeUTF(Utils.sha1(contents));
+    }
+
+    /** Returns the chunks of FILES that PARENTS' versions of the same
+     *  files do not have and that are not in SENT, adding them to SENT.
+     * @param files files of a commit about to be sent, or those of them
+     *              that changed
+     * @param parents files of its parents
+     * @param sent chunks sent so far
+     * @return IDs of the chunks to send */
+    private static ArrayList<String> newChunks(Map<String, Blob> files,
+            List<Map<String, Blob>> parents, HashSet<String> sent) {
+        ArrayList<String> result = new ArrayList<>();
+        for (Map.Entry<String, Blob> file : files.entrySet()) {
+            if (!file.getValue().isChunked()) {
+                continue;
+            }
+            HashSet<String> known = new HashSet<>();
+            for (Map<String, Blob> parent : parents) {
+                Blob older = parent.get(file.getKey());
+                if (older != null && older.isChunked()) {
+                    known.addAll(older.getChunks());
+                }
+            }
+            for (String chunk : file.getValue().getChunks()) {
+                if (!known.contains(chunk) && sent.add(chunk)) {
+                    result.add(chunk);
+                }
+            }
+        }
+        return result;
+    }
+
+    /** Returns the stored blobs of FILES that PARENTS do not have under
+     *  the same names and that are not in SENT, adding them to SENT.
+     *  Blobs that commits of earlier versions hold whole have no blob
+     *  file and travel in their commits.
+     * @param dir gitlet directory holding the blobs
+     * @param files files of a commit about to be sent, or those of them
+     *              that changed
+     * @param parents files of its parents
+     * @param sent blobs sent so far
+     * @return IDs of the blobs to send */
+    private static ArrayList<String> newBlobs(File dir,
+            Map<String, Blob> files, List<Map<String, Blob>> parents,
+            HashSet<String> sent) {
+        ArrayList<String> result = new ArrayList<>();
+        for (Map.Entry<String, Blob> file : files.entrySet()) {
+            String id = file.getValue().getID();
+            boolean known = false;
+            for (Map<String, Blob> parent : parents) {
+                Blob older = parent.get(file.getKey());
+                known |= older != null && older.isStored()
+                        && older.getID().equals(id);
+            }
+            if (!known && !sent.contains(id)
+                    && Blob.file(dir, id).isFile()) {
+                sent.add(id);
+                result.add(id);
+            }
+        }
+        return result;
+    }
+
+    /** Streams the commits named IDS from FROMDIR into TODIR through a
+     *  pipe, so the pack is never held in memory or on disk as a whole.
+     *  Other objects TODIR already holds are left out.
+     * @param fromDir gitlet directory to copy from
+     * @param toDir gitlet directory to copy to
+     * @param ids IDs of the commits to copy, parents first
+     * @return IDs of the commits copied */
+    static ArrayList<String> transfer(File fromDir, File toDir,
+                                      List<String> ids) {
+        ArrayList<String> objects = plan(fromDir, ids);
+        objects.removeIf(object -> object.charAt(0) != COMMIT
+                && file(toDir, object).isFile());
+        try (PipedInputStream in = new PipedInputStream()) {
+            PipedOutputStream out = new PipedOutputStream(in);
+            IOException[] failure = new IOException[1];
+            Thread sender = new Thread(() -> {
+                try (DataOutputStream stream = new DataOutputStream(
+                        new BufferedOutputStream(out))) {
+                    send(fromDir, objects, stream);
+                } catch (IOException excp) {
+                    failure[0] = excp;
+                }
+            });
+            sender.start();
+            ArrayList<String> result = receive(toDir, new DataInputStream(
+                    new BufferedInputStream(in)), true);
+            sender.join();
+            if (failure[0] != null) {
+                throw failure[0];
+            }
+            return result;
+        } catch (IOException | InterruptedException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+    }
+
+    /** Returns the IDs of all objects in a gitlet directory.
+     * @param dir gitlet directory
+     * @return HashSet of object IDs */
+    static HashSet<String> objects(File dir) {
+        HashSet<String> result = new HashSet<>();
+        for (String fileName : dir.list()) {
+            if (fileName.length() == Utils.UID_LENGTH
+                    && fileName.matches("[0-9a-f]+")) {
+                result.add(fileName);
+            }
+        }
+        return result;
+    }
+
+    /** Stores an object under its ID in DIR, after checking that it is a
+     *  commit whose contents hash to that ID and whose references are
+     *  all IDs. Only gitlet's classes are deserialized. Commits hashed by
+     *  earlier versions of Commit cannot be hashed again; those from a
+     *  LOCAL repository are checked against the ID they hold, and the
+     *  rest are refused. Objects already present are left alone.
+     * @param dir gitlet directory
+     * @param id ID of the object
+     * @param contents serialized object
+     * @param local true if the object comes from this filesystem
+     * @throws IOException if the object does not match its ID */
+    private static void store(File dir, String id, byte[] contents,
+                              boolean local) throws IOException {
+        File dest = Utils.join(dir, id);
+        if (dest.exists()) {
+            return;
+        }
+        Commit commit;
+        try {
+            commit = Utils.deserialize(contents, Commit.class);
+        } catch (IllegalArgumentException excp) {
+            throw new IOException("object " + id + " is not a commit");
+        }
+        String hashed = commit.contentID();
+        if (hashed == null && !local) {
+            throw new IOException("commit " + id + " was made by an older "
+                    + "gitlet and cannot be checked over the network");
+        } else if (hashed == null) {
+            hashed = commit.getID();
+        }
+        if (!id.equals(hashed)) {
+            throw new IOException("object " + id + " has ID " + hashed);
+        }
+        for (String ref : new String[] {commit.getParentID(),
+            commit.getParent2ID(), commit.getRootID()}) {
+            if (ref != null && !Utils.isID(ref)) {
+                throw new IOException("commit " + id + " has a bad ID");
+            }
+        }
+        if (commit.getRootID() == null) {
+            checkChunks(id, commit.getBlobs(dir).values());
+        }
+        Utils.writeNew(dest, contents, 0, contents.length);
+    }
+
+    /** Checks that the chunks of BLOBS, held whole by object ID, are named
+     *  by IDs, since they are read as files.
+     * @param id ID of the object holding the blobs
+     * @param blobs its blobs
+     * @throws IOException if a chunk is not named by an ID */
+    private static void checkChunks(String id, Iterable<Blob> blobs)
+        throws IOException {
+        for (Blob blob : blobs) {
+            if (blob == null || blob.isStored() || !blob.isChunked()) {
+                continue;
+            }
+            for (String chunk : blob.getChunks()) {
+                if (!Utils.isID(chunk)) {
+                    throw new IOException("object " + id
+                            + " has a bad chunk ID");
+                }
+            }
+        }
+    }
+}
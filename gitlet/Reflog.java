@@ -0,0 +1,189 @@
+package gitlet;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+
+/** Append-only journals of where each branch, and the current head, have
+ *  pointed. Each movement is one line, "OLD NEW MILLIS MESSAGE", added to
+ *  .gitlet/logs/HEAD or .gitlet/logs/refs/BRANCH when Tree saves it, so
+ *  commits left behind by reset or rm-branch can still be found. A
+ *  branch that did not exist, or no longer does, is written as ZERO.
+ *  @author Chris Seo
+ */
+public class Reflog {
+
+    /** Gitlet directory, where gitlet is stored. */
+    static final File GITLET_DIR = Main.GITLET_DIR;
+
+    /** Name of the directory holding the logs in a gitlet directory. */
+    static final String LOGS = "logs";
+
+    /** Name of the log of the current head. */
+    static final String HEAD = "HEAD";
+
+    /** Written in place of the ID of a branch that does not exist. */
+    static final String ZERO = "0".repeat(Utils.UID_LENGTH);
+
+    /** Bytes read from the end of a log at a time. */
+    static final int BLOCK_SIZE = 8192;
+
+    /** Format of dates printed by the reflog command. */
+    static final DateTimeFormatter DATE_FORMAT =
+            DateTimeFormatter.ofPattern("EEE LLL dd HH:mm:ss yyyy Z").
+                    withZone(ZoneId.systemDefault());
+
+    /** Sets the message recorded for the movements this command makes.
+     * @param message usually the command line */
+    static void setMessage(String message) {
+        _message = message.replace('\n', ' ');
+    }
+
+    /** Records that REF in the repository of GITLETDIR moved from OLDID to
+     *  NEWID. Either ID may be null. Called with the tree file locked, so
+     *  lines are appended in the order the moves happened.
+     * @param gitletDir gitlet directory
+     * @param ref HEAD or a branch name
+     * @param oldID previous ID, or null
+     * @param newID new ID, or null */
+    static void append(File gitletDir, String ref, String oldID,
+                       String newID) {
+        File log = logFile(gitletDir, ref);
+        log.getParentFile().mkdirs();
+        String line = (oldID == null ? ZERO : oldID) + " "
+                + (newID == null ? ZERO : newID) + " "
+                + System.currentTimeMillis() + " " + _message + "\n";
+        try {
+            Files.write(log.toPath(), line.getBytes(StandardCharsets.UTF_8),
+                    StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+    }
+
+    /** Handles the reflog command. Prints where a branch, or the current
+     *  head, has pointed, newest first, reading the log from its end.
+     * @param args takes reflog, optionally + branch name, optionally
+     *             + -n + number of entries */
+    public static void doReflog(String[] args) {
+        String ref = HEAD;
+        int limit = Integer.MAX_VALUE;
+        for (int i = 1; i < args.length; i++) {
+            if (args[i].equals("-n") && i + 1 < args.length) {
+                try {
+                    limit = Integer.parseInt(args[++i]);
+                } catch (NumberFormatException excp) {
+                    Utils.exit("Incorrect operands.");
+                }
+            } else if (ref.equals(HEAD)) {
+                ref = args[i];
+            } else {
+                Utils.exit("Incorrect operands.");
+            }
+        }
+        File log = logFile(GITLET_DIR, ref);
+        if (!log.exists()) {
+            Utils.exit("No reflog for " + ref + ".");
+        }
+        int index = 0;
+        for (String[] entry : tail(log, limit, 0)) {
+            String newID = entry[1];
+            System.out.println((newID.equals(ZERO) ? "(deleted)"
+                    : newID.substring(0, 7)) + " " + ref + "@{" + index
+                    + "}: " + DATE_FORMAT.format(Instant.ofEpochMilli(
+                    Long.parseLong(entry[2]))) + ": " + entry[3]);
+            index += 1;
+        }
+    }
+
+    /** Returns up to LIMIT entries of LOG, newest first, stopping at the
+     *  first one older than SINCE. Only the blocks at the end of the file
+     *  that hold those entries are read.
+     * @param log log file
+     * @param limit greatest number of entries to return
+     * @param since earliest time, in milliseconds, to return entries for
+     * @return entries, each split into old ID, new ID, time and message */
+    static ArrayList<String[]> tail(File log, int limit, long since) {
+        ArrayList<String[]> result = new ArrayList<>();
+        try (RandomAccessFile file = new RandomAccessFile(log, "r")) {
+            long position = file.length();
+            byte[] pending = new byte[0];
+            while (position > 0 && result.size() < limit) {
+                int size = (int) Math.min(BLOCK_SIZE, position);
+                position -= size;
+                byte[] block = new byte[size + pending.length];
+                file.seek(position);
+                file.readFully(block, 0, size);
+                System.arraycopy(pending, 0, block, size, pending.length);
+                int end = block.length;
+                for (int i = block.length - 1; i >= 0; i--) {
+                    if (block[i] == '\n' || (i == 0 && position == 0)) {
+                        int start = block[i] == '\n' ? i + 1 : i;
+                        if (start < end) {
+                            String[] entry = new String(block, start,
+                                    end - start, StandardCharsets.UTF_8).
+                                    split(" ", 4);
+                            if (Long.parseLong(entry[2]) < since) {
+                                return result;
+                            }
+                            result.add(entry.length == 4 ? entry
+                                    : new String[] {entry[0], entry[1],
+                                        entry[2], ""});
+                            if (result.size() == limit) {
+                                return result;
+                            }
+                        }
+                        end = i;
+                    }
+                }
+                pending = new byte[end];
+                System.arraycopy(block, 0, pending, 0, end);
+            }
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+        return result;
+    }
+
+    /** Returns the log files of the repository in GITLETDIR.
+     * @param gitletDir gitlet directory
+     * @return log of the head followed by those of the branches */
+    static ArrayList<File> logFiles(File gitletDir) {
+        ArrayList<File> result = new ArrayList<>();
+        File head = logFile(gitletDir, HEAD);
+        if (head.exists()) {
+            result.add(head);
+        }
+        File[] branches = Utils.join(gitletDir, LOGS, "refs").listFiles();
+        if (branches != null) {
+            for (File branch : branches) {
+                result.add(branch);
+            }
+        }
+        return result;
+    }
+
+    /** Returns the log file of REF in the repository of GITLETDIR. Branch
+     *  names are encoded, since remote branches contain a slash.
+     * @param gitletDir gitlet directory
+     * @param ref HEAD or a branch name
+     * @return log file */
+    static File logFile(File gitletDir, String ref) {
+        if (ref.equals(HEAD)) {
+            return Utils.join(gitletDir, LOGS, HEAD);
+        }
+        return Utils.join(gitletDir, LOGS, "refs",
+                URLEncoder.encode(ref, StandardCharsets.UTF_8));
+    }
+
+    /** Message recorded for movements made by this command. */
+    private static String _message = "";
+}
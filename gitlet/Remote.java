@@ -0,0 +1,226 @@
+package gitlet;
+
+import java.io.File;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+
+/** Handles remotes: other gitlet repositories reachable on the local
+ *  filesystem or served over the network, and fetching from, pushing to
+ *  and pulling from them.
+ *  @author Chris Seo
+ */
+public class Remote {
+
+    /** Working directory, where user initializes gitlet. */
+    static final File WORKING_DIR = Main.WORKING_DIR;
+
+    /** Gitlet directory, where gitlet is stored. */
+    static final File GITLET_DIR = Main.GITLET_DIR;
+
+    /** Stores commit tree. */
+    static final File TREE_DIR = Tree.TREE_DIR;
+
+    /** Stores remote names and their gitlet directories. */
+    static final File REMOTES_SAVE = Utils.join(Main.GITLET_DIR, "remotes");
+
+    /** Handles the add-remote command.
+     * @param args takes add-remote + remote name + remote directory */
+    public static void doAddRemote(String[] args) {
+        HashMap<String, String> remotes = remotes();
+        if (remotes.containsKey(args[1])) {
+            Utils.exit("A remote with that name already exists.");
+        }
+        String location = args[2];
+        if (!location.startsWith(Transport.URL_PREFIX)) {
+            location = location.replace("/", File.separator);
+        }
+        remotes.put(args[1], location);
+        Utils.replaceObject(REMOTES_SAVE, remotes, true);
+    }
+
+    /** Handles the rm-remote command.
+     * @param args takes rm-remote + remote name */
+    public static void doRemoveRemote(String[] args) {
+        HashMap<String, String> remotes = remotes();
+        if (!remotes.containsKey(args[1])) {
+            Utils.exit("A remote with that name does not exist.");
+        }
+        remotes.remove(args[1]);
+        Utils.replaceObject(REMOTES_SAVE, remotes, true);
+    }
+
+    /** Handles the fetch command.
+     * @param args takes fetch + remote name + remote branch name */
+    public static void doFetch(String[] args) {
+        fetch(args[1], args[2]);
+    }
+
+    /** Handles the pull command.
+     * @param args takes pull + remote name + remote branch name */
+    public static void doPull(String[] args) {
+        String branchName = fetch(args[1], args[2]);
+        Merge.doMerge(new String[] {"merge", branchName});
+    }
+
+    /** Handles the push command. Copies the commits the remote lacks and
+     *  moves the remote branch, as long as that is a fast-forward.
+     * @param args takes push + remote name + remote branch name */
+    public static void doPush(String[] args) {
+        String branchName = args[2];
+        if (location(args[1]).startsWith(Transport.URL_PREFIX)) {
+            Transport.push(location(args[1]), branchName);
+            return;
+        }
+        File remoteDir = remoteDir(args[1]);
+        Lock.share(remoteDir);
+        File remoteTreeFile = Utils.join(remoteDir, TREE_DIR.getName());
+        Tree remoteTree = Utils.readObject(remoteTreeFile, Tree.class);
+        Commit remoteHead = remoteTree.getHead(branchName);
+        Commit localHead = Utils.readMapped(TREE_DIR, Tree.class).
+                getCurrHead();
+        if (remoteHead != null && !isAncestor(GITLET_DIR,
+                remoteHead.getID(), localHead.getID())) {
+            Utils.exit("Please pull down remote changes before pushing.");
+        }
+        ArrayList<String> missing = missing(GITLET_DIR,
+                Pack.objects(remoteDir), localHead.getID());
+        remoteTree.addCommits(Pack.transfer(GITLET_DIR, remoteDir, missing));
+        remoteTree.setBranchHead(branchName, localHead);
+        remoteTree.saveTo(remoteTreeFile);
+    }
+
+    /** Copies the commits of a remote branch that this repository lacks
+     *  and points the branch REMOTENAME/BRANCHNAME at its head.
+     * @param remoteName name of the remote
+     * @param branchName name of the branch in the remote
+     * @return name of the local branch */
+    static String fetch(String remoteName, String branchName) {
+        if (location(remoteName).startsWith(Transport.URL_PREFIX)) {
+            return Transport.fetch(location(remoteName), remoteName,
+                    branchName);
+        }
+        File remoteDir = remoteDir(remoteName);
+        Lock.share(remoteDir);
+        Tree remoteTree = Utils.readObject(Utils.join(remoteDir,
+                TREE_DIR.getName()), Tree.class);
+        Commit remoteHead = remoteTree.getHead(branchName);
+        if (remoteHead == null) {
+            Utils.exit("That remote does not have that branch.");
+        }
+        ArrayList<String> missing = missing(remoteDir,
+                Pack.objects(GITLET_DIR), remoteHead.getID());
+        Tree workingTree = Utils.readMapped(TREE_DIR, Tree.class);
+        workingTree.addCommits(Pack.transfer(remoteDir, GITLET_DIR,
+                missing));
+        String localName = remoteName + "/" + branchName;
+        workingTree.setBranchHead(localName, remoteHead);
+        workingTree.saveTo(TREE_DIR);
+        return localName;
+    }
+
+    /** Returns the commits reachable from HEADID in FROMDIR that are not in
+     *  HAVES, parents before children. The walk stops at every commit the
+     *  other side already has, since it must have that commit's history.
+     * @param fromDir gitlet directory that has the commits
+     * @param haves IDs of the objects the other side has
+     * @param headID commit to start from
+     * @return IDs of the missing commits */
+    static ArrayList<String> missing(File fromDir, HashSet<String> haves,
+                                     String headID) {
+        ArrayList<String> result = new ArrayList<>();
+        HashSet<String> visited = new HashSet<>();
+        HashSet<String> done = new HashSet<>();
+        ArrayDeque<String> stack = new ArrayDeque<>();
+        stack.push(headID);
+        while (!stack.isEmpty()) {
+            String commitID = stack.peek();
+            if (visited.add(commitID)) {
+                if (haves.contains(commitID)) {
+                    stack.pop();
+                    continue;
+                }
+                Commit commit = Utils.readObject(Utils.join(fromDir,
+                        commitID), Commit.class);
+                for (String parentID : new String[] {commit.getParentID(),
+                    commit.getParent2ID()}) {
+                    if (parentID != null && !visited.contains(parentID)) {
+                        stack.push(parentID);
+                    }
+                }
+            } else {
+                stack.pop();
+                if (!haves.contains(commitID) && done.add(commitID)) {
+                    result.add(commitID);
+                }
+            }
+        }
+        return result;
+    }
+
+    /** Returns true if ANCESTORID is HEADID or one of its ancestors in DIR.
+     * @param dir gitlet directory holding the commits
+     * @param ancestorID possible ancestor
+     * @param headID commit to start from
+     * @return true if an ancestor */
+    static boolean isAncestor(File dir, String ancestorID, String headID) {
+        HashSet<String> visited = new HashSet<>();
+        ArrayDeque<String> stack = new ArrayDeque<>();
+        stack.push(headID);
+        while (!stack.isEmpty()) {
+            String commitID = stack.pop();
+            if (commitID.equals(ancestorID)) {
+                return true;
+            }
+            if (visited.add(commitID)) {
+                Commit commit = Utils.readObject(Utils.join(dir, commitID),
+                        Commit.class);
+                if (commit.getParentID() != null) {
+                    stack.push(commit.getParentID());
+                }
+                if (commit.getParent2ID() != null) {
+                    stack.push(commit.getParent2ID());
+                }
+            }
+        }
+        return false;
+    }
+
+    /** Returns the gitlet directory of a remote, exiting if the remote or
+     *  its directory does not exist.
+     * @param remoteName name of the remote
+     * @return remote gitlet directory */
+    private static File remoteDir(String remoteName) {
+        String path = location(remoteName);
+        File remoteDir = new File(path);
+        if (!remoteDir.isAbsolute()) {
+            remoteDir = Utils.join(WORKING_DIR, path);
+        }
+        if (!remoteDir.isDirectory()) {
+            Utils.exit("Remote directory not found.");
+        }
+        return remoteDir;
+    }
+
+    /** Returns where a remote is, exiting if there is no such remote.
+     * @param remoteName name of the remote
+     * @return gitlet directory or URL of the remote */
+    private static String location(String remoteName) {
+        String location = remotes().get(remoteName);
+        if (location == null) {
+            Utils.exit("A remote with that name does not exist.");
+        }
+        return location;
+    }
+
+    /** Returns the saved remotes.
+     * @return HashMap of remote name, remote gitlet directory */
+    @SuppressWarnings("unchecked")
+    private static HashMap<String, String> remotes() {
+        if (!REMOTES_SAVE.exists()) {
+            return new HashMap<>();
+        }
+        return Utils.readMapped(REMOTES_SAVE, HashMap.class);
+    }
+}
@@ -27,10 +27,10 @@ public class Remove {
     /** Handles the remove command.
      * @param fileName takes a file to be removed */
     public static void doRemove(String fileName) {
-        Stage fromSave = Utils.readObject(STAGED_FILES,
+        Stage fromSave = Utils.readMapped(STAGED_FILES,
                 Stage.class);
         HashSet<String> stagedFiles = fromSave.getStagedFiles();
-        Commit currHead = Utils.readObject(TREE_DIR, Tree.class).
+        Commit currHead = Utils.readMapped(TREE_DIR, Tree.class).
                 getCurrHead();
         if (stagedFiles.contains(fileName) && currHead.getBlobs().
                 containsKey(fileName)) {
@@ -57,9 +57,7 @@ public class Remove {
                 } catch (IOException ignored) {
                     return;
                 }
-                String contents = currHead.getBlobs().get(fileName).
-                        getContents();
-                Utils.writeContents(removedFile, contents);
+                currHead.getBlobs().get(fileName).writeTo(removedFile);
             } else {
                 addToStageRemoval(fileName);
                 removeFromWorking(fileName);
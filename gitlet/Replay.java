@@ -0,0 +1,153 @@
+package gitlet;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+
+/** Handles the cherry-pick and rebase commands, which replay commits on
+ *  another head. Each replayed commit is a three-way merge, done in
+ *  memory by Merge.merge, of the changes from its parent to it into the
+ *  head it goes on, and is stored as soon as it is made. The working
+ *  directory is brought from the old head to the last new one once, at
+ *  the end, writing only the files that differ. A cherry-pick that
+ *  conflicts is committed with the conflict written into the file, as a
+ *  merge is; a rebase stops at its first conflicting replay instead.
+ *  @author Chris Seo
+ */
+public class Replay {
+
+    /** Working directory, where user initializes gitlet. */
+    static final File WORKING_DIR = Main.WORKING_DIR;
+
+    /** Gitlet directory, where gitlet is stored. */
+    static final File GITLET_DIR = Main.GITLET_DIR;
+
+    /** Stores commit tree. */
+    static final File TREE_DIR = Tree.TREE_DIR;
+
+    /** Handles the cherry-pick command. Makes a commit on the current head
+     *  with the changes the given commit made to its parent, and its
+     *  message.
+     * @param args takes cherry-pick + commit ID */
+    public static void doCherryPick(String[] args) {
+        Tree workingTree = Utils.readMapped(TREE_DIR, Tree.class);
+        String id = Utils.checkAbbreviated(args[1]);
+        File commitFile = Utils.join(GITLET_DIR, id);
+        if (id.length() != Utils.UID_LENGTH || !commitFile.isFile()) {
+            Utils.exit("No commit with that id exists.");
+        }
+        Commit picked = Utils.readObject(commitFile, Commit.class);
+        Commit currHead = workingTree.getCurrHead();
+        if (picked.getParentID() == null) {
+            Utils.exit("Cannot cherry-pick the initial commit.");
+        }
+        Merge.uncommittedError(currHead);
+        Merge.Result result = Merge.merge(picked.getParent(), currHead,
+                picked);
+        if (result.isEmpty()) {
+            Utils.exit("No changes added to the commit.");
+        }
+        result.apply();
+        if (result.hasConflicts()) {
+            System.out.println("Encountered a merge conflict.");
+        }
+        workingTree.commitFiles(picked.getMessage(), result.getFiles(),
+                false, null);
+    }
+
+    /** Handles the rebase command. Replays the commits of the current
+     *  branch since it split from the given branch on the given branch's
+     *  head, with their messages, and moves the current branch to the
+     *  last of them. Commits whose changes the given branch already has
+     *  are dropped. Only first parents are followed, so a range holding a
+     *  merge commit is refused. At the first replay that conflicts, the
+     *  current branch is left at the last clean replay, or at the given
+     *  branch's head if there is none, with the conflicting merge written
+     *  into the working directory, and the commits not yet replayed are
+     *  listed, to be committed and cherry-picked by hand.
+     * @param args takes rebase + branch name */
+    public static void doRebase(String[] args) {
+        Tree workingTree = Utils.readMapped(TREE_DIR, Tree.class);
+        String inputBranch = args[1];
+        if (!workingTree.getBranches().containsKey(inputBranch)) {
+            Utils.exit("A branch with that name does not exist.");
+        }
+        if (workingTree.currentBranch().equals(inputBranch)) {
+            Utils.exit("Cannot rebase a branch onto itself.");
+        }
+        Commit currHead = workingTree.getCurrHead();
+        Commit inputHead = workingTree.getBranches().get(inputBranch);
+        Merge.uncommittedError(currHead);
+        Commit splitPoint = Merge.findSplitPoint(workingTree, inputBranch);
+        if (splitPoint.getID().equals(inputHead.getID())) {
+            Utils.exit("Already up-to-date.");
+        }
+        HashSet<String> inputAncestors = Merge.findAllAncestors(inputHead);
+        if (inputAncestors.contains(currHead.getID())) {
+            update(currHead, inputHead);
+            workingTree.setHead(inputHead);
+            Utils.exit("Current branch fast-forwarded.");
+        }
+        ArrayList<Commit> replayed = new ArrayList<>();
+        for (Commit commit = currHead;
+             !inputAncestors.contains(commit.getID());
+             commit = commit.getParent()) {
+            replayed.add(commit);
+        }
+        for (Commit commit : replayed) {
+            if (commit.getParent2ID() != null) {
+                Utils.exit("Cannot rebase a merge commit.");
+            }
+        }
+        Collections.reverse(replayed);
+        Commit tip = inputHead;
+        Commit parent = replayed.get(0).getParent();
+        for (int i = 0; i < replayed.size(); i++) {
+            Commit commit = replayed.get(i);
+            Merge.Result result = Merge.merge(parent, tip, commit);
+            parent = commit;
+            if (result.isEmpty()) {
+                continue;
+            }
+            if (result.hasConflicts()) {
+                update(currHead, tip);
+                workingTree.setHead(tip);
+                result.apply();
+                System.out.println("Encountered a merge conflict.");
+                System.out.println("Stopped replaying " + commit.getID()
+                        + "; commit the resolved files, then cherry-pick:");
+                for (Commit rest : replayed.subList(i + 1,
+                        replayed.size())) {
+                    System.out.println(rest.getID());
+                }
+                return;
+            }
+            tip = workingTree.addCommit(commit.getMessage(), tip.getID(),
+                    result.getFiles(), false, null);
+        }
+        update(currHead, tip);
+        workingTree.setHead(tip);
+    }
+
+    /** Changes the working directory from the files of FROM to those of
+     *  TO, writing or deleting only the files whose blobs differ. Files
+     *  sparse checkout leaves out are not written.
+     * @param from commit the working directory matches
+     * @param to commit to match */
+    static void update(Commit from, Commit to) {
+        long start = Trace.start();
+        FileMap fromFiles = FileMap.of(GITLET_DIR, from.getBlobs());
+        FileMap toFiles = FileMap.of(GITLET_DIR, to.getBlobs());
+        for (String name : fromFiles.diff(toFiles)) {
+            Blob blob = toFiles.get(name);
+            File file = Utils.join(WORKING_DIR, name);
+            if (blob == null) {
+                file.delete();
+            } else if (Sparse.includes(name)) {
+                blob.writeTo(file);
+            }
+        }
+        Trace.end("materialize", start);
+    }
+}
@@ -0,0 +1,144 @@
+package gitlet;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+/** Sparse checkout. Patterns in .gitlet/sparse, written as in
+ *  .gitletignore, choose which files of a commit are kept in the working
+ *  directory. Checkout, reset, merge, rebase and stash only write the
+ *  files chosen, and status only looks for those, while commits still
+ *  carry every file, unchosen ones unchanged from their parent. When all
+ *  patterns are plain names they are looked up, so the work follows the
+ *  number of files chosen rather than the size of the commit.
+ *  @author Chris Seo
+ */
+public class Sparse {
+
+    /** Working directory, where user initializes gitlet. */
+    static final File WORKING_DIR = Main.WORKING_DIR;
+
+    /** Stores commit tree. */
+    static final File TREE_DIR = Tree.TREE_DIR;
+
+    /** Stores the sparse checkout patterns. */
+    static final File SPARSE_FILE = Utils.join(Main.WORKTREE_DIR,
+            "sparse");
+
+    /** Option that turns sparse checkout off. */
+    static final String DISABLE = "--disable";
+
+    /** Handles the sparse command. With patterns, chooses the files
+     *  matching them and updates the working directory to hold just
+     *  those; with --disable, brings back every file; with nothing,
+     *  prints the patterns.
+     * @param args takes sparse, optionally + patterns or --disable */
+    public static void doSparse(String[] args) {
+        if (args.length == 1) {
+            if (SPARSE_FILE.exists()) {
+                System.out.print(Utils.readContentsAsString(SPARSE_FILE));
+            }
+            return;
+        }
+        String[] lines = Arrays.copyOfRange(args, 1, args.length);
+        Ignore patterns = null;
+        if (!(lines.length == 1 && lines[0].equals(DISABLE))) {
+            patterns = new Ignore(lines);
+        }
+        Commit head = Utils.readMapped(TREE_DIR, Tree.class).getCurrHead();
+        Map<String, Blob> files = head.getBlobs();
+        HashSet<String> before = new HashSet<>(select(files));
+        HashSet<String> after = new HashSet<>(select(files, patterns));
+        HashSet<String> dropped = new HashSet<>(before);
+        dropped.removeAll(after);
+        for (String name : dropped) {
+            if (WorkingDir.exists(name) && !WorkingDir.blobID(name).
+                    equals(files.get(name).getID())) {
+                Utils.exit("You have uncommitted changes.");
+            }
+        }
+        if (patterns == null) {
+            SPARSE_FILE.delete();
+        } else {
+            Utils.writeContents(SPARSE_FILE, String.join("\n", lines)
+                    + "\n");
+        }
+        _current = patterns;
+        _loaded = true;
+        for (String name : dropped) {
+            Utils.join(WORKING_DIR, name).delete();
+        }
+        after.removeAll(before);
+        for (String name : after) {
+            File file = Utils.join(WORKING_DIR, name);
+            if (!file.exists()) {
+                files.get(name).writeTo(file);
+            }
+        }
+    }
+
+    /** Returns true if the file NAME is kept in the working directory.
+     * @param name file name
+     * @return true if no patterns are set or NAME matches them */
+    static boolean includes(String name) {
+        Ignore patterns = current();
+        return patterns == null || patterns.matches(name, false);
+    }
+
+    /** Returns the names of FILES kept in the working directory.
+     * @param files names mapped to blobs
+     * @return names chosen */
+    static Collection<String> select(Map<String, Blob> files) {
+        return select(files, current());
+    }
+
+    /** Returns the names of FILES that PATTERNS choose.
+     * @param files names mapped to blobs
+     * @param patterns compiled patterns, or null for every file
+     * @return names chosen */
+    private static Collection<String> select(Map<String, Blob> files,
+                                             Ignore patterns) {
+        if (patterns == null) {
+            return files.keySet();
+        }
+        ArrayList<String> result = new ArrayList<>();
+        Set<String> names = patterns.names();
+        if (names != null) {
+            for (String name : names) {
+                if (files.containsKey(name)) {
+                    result.add(name);
+                }
+            }
+        } else {
+            for (String name : files.keySet()) {
+                if (patterns.matches(name, false)) {
+                    result.add(name);
+                }
+            }
+        }
+        return result;
+    }
+
+    /** Returns the patterns set, compiling them on first use.
+     * @return compiled patterns, or null if sparse checkout is off */
+    private static Ignore current() {
+        if (!_loaded) {
+            _loaded = true;
+            if (SPARSE_FILE.isFile()) {
+                _current = new Ignore(Utils.readContentsAsString(
+                        SPARSE_FILE).split("\n"));
+            }
+        }
+        return _current;
+    }
+
+    /** Whether the patterns have been read by this command. */
+    private static boolean _loaded;
+
+    /** Compiled patterns for this command, or null. */
+    private static Ignore _current;
+}
@@ -1,25 +1,31 @@
 package gitlet;
 
 import java.io.File;
-import java.io.IOException;
 import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.HashSet;
+import java.util.Map;
 
 /** Stage class containing methods for staging files.
  *  @author Chris Seo
  */
 public class Stage implements Serializable {
 
+    /** Keeps stages saved before this class changed readable. */
+    private static final long serialVersionUID = -8577239278997157632L;
+
     /** Staged for addition directory. */
-    static final File STAGE_DIR = Utils.join(Main.GITLET_DIR,
+    static final File STAGE_DIR = Utils.join(Main.WORKTREE_DIR,
             "stage");
 
     /** Staged for removal directory. */
-    static final File STAGE_RM_DIR = Utils.join(Main.GITLET_DIR,
+    static final File STAGE_RM_DIR = Utils.join(Main.WORKTREE_DIR,
             "stage_rm");
 
     /** Stores staged additions files. */
-    static final File STAGED_SAVE = Utils.join(Main.GITLET_DIR,
+    static final File STAGED_SAVE = Utils.join(Main.WORKTREE_DIR,
             "staged_save");
 
     /** Stores commit tree. */
@@ -30,56 +36,100 @@ public class Stage implements Serializable {
 
     /** Constructor for the stage. Initializes stage directories. */
     public Stage() {
-        STAGE_DIR.mkdir();
-        STAGE_RM_DIR.mkdir();
+        this(Main.WORKTREE_DIR);
+    }
 
-        try {
-            STAGED_SAVE.createNewFile();
-        } catch (IOException ignored) {
-            return;
-        }
+    /** Constructor for an empty stage in WORKTREEDIR, the gitlet
+     *  directory of this or a new worktree. Initializes stage
+     *  directories.
+     * @param worktreeDir gitlet directory of the worktree */
+    Stage(File worktreeDir) {
+        Utils.join(worktreeDir, STAGE_DIR.getName()).mkdir();
+        Utils.join(worktreeDir, STAGE_RM_DIR.getName()).mkdir();
 
         _stagedFiles = new HashSet<>();
 
-        save(this);
+        Utils.replaceObject(Utils.join(worktreeDir, STAGED_SAVE.getName()),
+                this, true);
     }
 
     /** Adds a file to stage for addition.
      * @param sourceName name of file to be staged */
     public static void add(String sourceName) {
-        File source = Utils.join(WORKING_DIR, sourceName);
-        Commit currentCommit = Utils.readObject(TREE_DIR, Tree.class).
+        Commit currentCommit = Utils.readMapped(TREE_DIR, Tree.class).
                 getCurrHead();
-        if (source.exists()) {
-            File dest = Utils.join(STAGE_DIR, sourceName);
-
-            if (currentCommit.getBlobs().containsKey(sourceName)
-                && Utils.filesSet(STAGE_RM_DIR).contains(sourceName)) {
-                String fileAddedContents = Utils.readContentsAsString(Utils.
-                        join(WORKING_DIR, sourceName));
-                String fileRemovedContents = Utils.readContentsAsString(Utils.
-                        join(STAGE_RM_DIR, sourceName));
-                if (fileAddedContents.equals(fileRemovedContents)) {
-                    clearRemoved();
-                }
-            } else if (currentCommit.getBlobs().containsKey(sourceName)) {
-                String sourceContents = Utils.readContentsAsString(source);
-                String commitContents = currentCommit.getBlobs().
-                        get(sourceName).getContents();
-                if (sourceContents.equals(commitContents)) {
-                    addOrRemoveFromStagedHash(false, sourceName);
-                    dest.delete();
-                } else {
-                    addOrRemoveFromStagedHash(true, sourceName);
-                    Utils.copy(source, dest);
-                }
+        Stage saved = Utils.readMapped(STAGED_SAVE, Stage.class);
+        if (!Utils.join(WORKING_DIR, sourceName).exists()) {
+            System.out.println("File does not exist.");
+            System.exit(0);
+        }
+        add(sourceName, currentCommit, saved);
+        save(saved);
+    }
+
+    /** Stages every file in the working directory that is untracked or
+     *  differs from the current commit, saving the stage once at the
+     *  end. Ignore patterns only apply to untracked files, so tracked
+     *  files they match are staged when changed. Only files a running
+     *  monitor saw change have to be read. */
+    public static void addAll() {
+        Commit currentCommit = Utils.readMapped(TREE_DIR, Tree.class).
+                getCurrHead();
+        Map<String, Blob> blobs = currentCommit.getBlobs();
+        Stage saved = Utils.readMapped(STAGED_SAVE, Stage.class);
+        HashSet<String> staged = saved.getStagedFiles();
+        ArrayList<String> fileNames = new ArrayList<>(WorkingDir.files());
+        for (String fileName : blobs.keySet()) {
+            if (Ignore.isIgnored(fileName) && WorkingDir.exists(fileName)) {
+                fileNames.add(fileName);
+            }
+        }
+        Collections.sort(fileNames);
+        for (String fileName : fileNames) {
+            Blob blob = blobs.get(fileName);
+            if (blob == null || staged.contains(fileName)
+                    || !blob.getID().equals(WorkingDir.blobID(fileName))) {
+                add(fileName, currentCommit, saved);
+            }
+        }
+        save(saved);
+        WorkingDir.save();
+    }
+
+    /** Stages an existing working file in SAVED, without saving SAVED.
+     *  The copy in the stage directory is forced to disk along with the
+     *  next save of the stage.
+     * @param sourceName name of file to be staged
+     * @param currentCommit head commit
+     * @param saved the stage */
+    private static void add(String sourceName, Commit currentCommit,
+                            Stage saved) {
+        File source = Utils.join(WORKING_DIR, sourceName);
+        File dest = Utils.join(STAGE_DIR, sourceName);
+        HashSet<String> items = saved.getStagedFiles();
+        if (currentCommit.getBlobs().containsKey(sourceName)
+            && Utils.filesSet(STAGE_RM_DIR).contains(sourceName)) {
+            String fileAddedContents = Utils.readContentsAsString(source);
+            String fileRemovedContents = Utils.readContentsAsString(Utils.
+                    join(STAGE_RM_DIR, sourceName));
+            if (fileAddedContents.equals(fileRemovedContents)) {
+                clearRemoved();
+            }
+        } else if (currentCommit.getBlobs().containsKey(sourceName)) {
+            String commitID = currentCommit.getBlobs().get(sourceName).
+                    getID();
+            if (Blob.idOf(source).equals(commitID)) {
+                items.remove(sourceName);
+                dest.delete();
             } else {
-                addOrRemoveFromStagedHash(true, sourceName);
                 Utils.copy(source, dest);
+                Utils.syncLater(dest);
+                items.add(sourceName);
             }
         } else {
-            System.out.println("File does not exist.");
-            System.exit(0);
+            Utils.copy(source, dest);
+            Utils.syncLater(dest);
+            items.add(sourceName);
         }
     }
 
@@ -92,7 +142,7 @@ public class Stage implements Serializable {
                 }
             }
         }
-        Stage saved = Utils.readObject(STAGED_SAVE,
+        Stage saved = Utils.readMapped(STAGED_SAVE,
                 Stage.class);
         HashSet<String> items = saved.getStagedFiles();
         items.clear();
@@ -122,13 +172,13 @@ public class Stage implements Serializable {
      * @param thing thing to add/remove */
     public static void addOrRemoveFromStagedHash(Boolean add, String thing) {
         if (add) {
-            Stage saved = Utils.readObject(STAGED_SAVE,
+            Stage saved = Utils.readMapped(STAGED_SAVE,
                     Stage.class);
             HashSet<String> items = saved.getStagedFiles();
             items.add(thing);
             save(saved);
         } else {
-            Stage saved = Utils.readObject(STAGED_SAVE,
+            Stage saved = Utils.readMapped(STAGED_SAVE,
                     Stage.class);
             HashSet<String> items = saved.getStagedFiles();
             items.remove(thing);
@@ -136,10 +186,11 @@ public class Stage implements Serializable {
         }
     }
 
-    /** Saves thing to stage_saved for persistence.
+    /** Saves thing to stage_saved for persistence, atomically and
+     *  durably.
      * @param thing to be saved */
     public static void save(Stage thing) {
-        Utils.writeObject(STAGED_SAVE, thing);
+        Utils.replaceObject(STAGED_SAVE, thing, true);
     }
 
     /** Stores the name of the files in the staging area. */
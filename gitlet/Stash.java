@@ -0,0 +1,191 @@
+package gitlet;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Set;
+
+/** Handles the stash command. A stash is two ordinary commits on the
+ *  current head that no branch points to: one of the staged files, and
+ *  one of the working files, whose second parent is the first. Both are
+ *  FileMaps made from the head's, so only the nodes on the paths to
+ *  changed files are new, and only changed files are read. Saving a
+ *  stash and popping it write just the files that differ. Stashes are
+ *  listed, newest first, in .gitlet/stash, and gc keeps their commits.
+ *  @author Chris Seo
+ */
+public class Stash {
+
+    /** Working directory, where user initializes gitlet. */
+    static final File WORKING_DIR = Main.WORKING_DIR;
+
+    /** Gitlet directory, where gitlet is stored. */
+    static final File GITLET_DIR = Main.GITLET_DIR;
+
+    /** Stores commit tree. */
+    static final File TREE_DIR = Tree.TREE_DIR;
+
+    /** Staged for addition directory. */
+    static final File STAGE_DIR = Stage.STAGE_DIR;
+
+    /** Staged for removal directory. */
+    static final File STAGE_RM_DIR = Stage.STAGE_RM_DIR;
+
+    /** Stores staged additions files. */
+    static final File STAGED_SAVE = Stage.STAGED_SAVE;
+
+    /** Name of the stash list in a gitlet directory. */
+    static final String STASH_NAME = "stash";
+
+    /** Characters of a commit ID used in stash messages. */
+    static final int SHORT_ID = 8;
+
+    /** Handles the stash command. Stashes changes, or with pop restores
+     *  the newest stash, or with list prints the stashes.
+     * @param args takes stash, optionally + pop or list */
+    public static void doStash(String[] args) {
+        if (args.length == 1) {
+            save();
+        } else if (args[1].equals("pop")) {
+            pop();
+        } else {
+            ArrayList<String> entries = entries(GITLET_DIR);
+            for (int i = 0; i < entries.size(); i++) {
+                Commit stash = Utils.readObject(Utils.join(GITLET_DIR,
+                        entries.get(i)), Commit.class);
+                System.out.println("stash@{" + i + "}: "
+                        + stash.getMessage());
+            }
+        }
+    }
+
+    /** Returns the IDs of the stash commits in GITLETDIR, newest first.
+     * @param gitletDir gitlet directory
+     * @return stash commit IDs */
+    @SuppressWarnings("unchecked")
+    static ArrayList<String> entries(File gitletDir) {
+        File list = Utils.join(gitletDir, STASH_NAME);
+        return list.exists() ? Utils.readObject(list, ArrayList.class)
+                : new ArrayList<>();
+    }
+
+    /** Stashes the staged and working changes to tracked files, and
+     *  brings the working directory and stage back to the current head.
+     *  Untracked files are left alone. */
+    private static void save() {
+        Tree workingTree = Utils.readMapped(TREE_DIR, Tree.class);
+        Commit head = workingTree.getCurrHead();
+        FileMap headFiles = FileMap.of(GITLET_DIR, head.getBlobs());
+        FileMap index = headFiles;
+        for (String name : Utils.readMapped(STAGED_SAVE, Stage.class).
+                getStagedFiles()) {
+            index = index.with(name, new Blob(Utils.join(STAGE_DIR, name)));
+        }
+        for (String name : Utils.filesSet(STAGE_RM_DIR)) {
+            index = index.without(name);
+        }
+        FileMap work = index;
+        for (String name : Sparse.select(index)) {
+            if (!WorkingDir.exists(name)) {
+                work = work.without(name);
+            } else if (!WorkingDir.blobID(name).equals(index.get(name).
+                    getID())) {
+                work = work.with(name, new Blob(Utils.join(WORKING_DIR,
+                        name)));
+            }
+        }
+        if (headFiles.diff(index).isEmpty() && index.diff(work).isEmpty()) {
+            Utils.exit("No local changes to save.");
+        }
+        String message = "WIP on " + workingTree.currentBranch() + ": "
+                + head.getID().substring(0, SHORT_ID) + " "
+                + head.getMessage();
+        Commit indexCommit = new Commit("index on " + workingTree.
+                currentBranch(), head.getID(), index, false, false);
+        Tree.createCommitFile(indexCommit);
+        Commit stash = new Commit(message, head.getID(), work, true, false);
+        stash.setParent2ID(indexCommit.getID());
+        Tree.createCommitFile(stash);
+        ArrayList<String> entries = entries(GITLET_DIR);
+        entries.add(0, stash.getID());
+        Utils.replaceObject(Utils.join(GITLET_DIR, STASH_NAME), entries,
+                true);
+        Replay.update(stash, head);
+        Stage.clear();
+        Stage.clearRemoved();
+        WorkingDir.save();
+        System.out.println("Saved " + message);
+    }
+
+    /** Restores the newest stash and drops it. Its changes are merged
+     *  into the current head in memory, so it can be popped on another
+     *  commit, and files it staged are staged again. A stash that
+     *  conflicts is restored with the conflicts written into the files
+     *  but kept, as git does, so it is not lost. */
+    private static void pop() {
+        ArrayList<String> entries = entries(GITLET_DIR);
+        if (entries.isEmpty()) {
+            Utils.exit("No stash entries found.");
+        }
+        Tree workingTree = Utils.readMapped(TREE_DIR, Tree.class);
+        Commit head = workingTree.getCurrHead();
+        Stage saved = Utils.readMapped(STAGED_SAVE, Stage.class);
+        if (!saved.getStagedFiles().isEmpty()
+                || !Utils.filesSet(STAGE_RM_DIR).isEmpty()) {
+            Utils.exit("You have uncommitted changes.");
+        }
+        Commit stash = Utils.readObject(Utils.join(GITLET_DIR,
+                entries.get(0)), Commit.class);
+        Commit base = stash.getParent();
+        Merge.Result result = Merge.merge(base, head, stash);
+        checkOverwrites(head, result.getChanged());
+        result.apply();
+        FileMap headMap = FileMap.of(GITLET_DIR, head.getBlobs());
+        FileMap baseMap = FileMap.of(GITLET_DIR, base.getBlobs());
+        FileMap indexMap = FileMap.of(GITLET_DIR, stash.getParent2().
+                getBlobs());
+        boolean moved = !base.getID().equals(head.getID());
+        for (String name : baseMap.diff(indexMap)) {
+            Blob staged = moved ? result.getFiles().get(name)
+                    : indexMap.get(name);
+            Blob current = headMap.get(name);
+            if (staged != null) {
+                if (current == null
+                        || !current.getID().equals(staged.getID())) {
+                    staged.writeTo(Utils.join(STAGE_DIR, name));
+                    saved.getStagedFiles().add(name);
+                }
+            } else if (current != null) {
+                current.writeTo(Utils.join(STAGE_RM_DIR, name));
+            }
+        }
+        Stage.save(saved);
+        if (result.hasConflicts()) {
+            System.out.println("Encountered a merge conflict. The stash "
+                    + "entry is kept.");
+            return;
+        }
+        entries.remove(0);
+        Utils.replaceObject(Utils.join(GITLET_DIR, STASH_NAME), entries,
+                true);
+    }
+
+    /** Exits with a message if popping would overwrite a file among NAMES
+     *  that is untracked or changed from HEAD in the working directory.
+     * @param head current head
+     * @param names files the pop writes or deletes */
+    private static void checkOverwrites(Commit head, Set<String> names) {
+        for (String name : names) {
+            Blob tracked = head.getBlobs().get(name);
+            boolean exists = WorkingDir.exists(name);
+            if (!exists && !Sparse.includes(name)) {
+                continue;
+            } else if (tracked == null && exists) {
+                Utils.exit("There is an untracked file in the way; delete "
+                        + "it, or add and commit it first.");
+            } else if (tracked != null && (!exists || !WorkingDir.
+                    blobID(name).equals(tracked.getID()))) {
+                Utils.exit("You have uncommitted changes.");
+            }
+        }
+    }
+}
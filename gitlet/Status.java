@@ -6,6 +6,7 @@ import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.Map;
 
 /** Class that holds methods for displaying status of working dir
  *  when called.
@@ -38,11 +39,12 @@ public class Status {
         printRemoved();
         printModifications();
         printUntracked();
+        WorkingDir.save();
     }
 
     /** Prints branches of the current tree. */
     static void printBranches() {
-        Tree workingTree = Utils.readObject(TREE_DIR, Tree.class);
+        Tree workingTree = Utils.readMapped(TREE_DIR, Tree.class);
         System.out.println(LINES + " Branches " + LINES);
 
         HashMap<String, Commit> branches = workingTree.getBranches();
@@ -61,7 +63,7 @@ public class Status {
 
     /** Prints the files staged for addition. */
     static void printStaged() {
-        HashSet<String> stagedFiles = Utils.readObject(STAGED_FILES,
+        HashSet<String> stagedFiles = Utils.readMapped(STAGED_FILES,
                 Stage.class).getStagedFiles();
         System.out.println(LINES + " Staged Files " + LINES);
         ArrayList<String> toPrint = new ArrayList<>(stagedFiles);
@@ -88,33 +90,32 @@ public class Status {
         System.out.print("\n");
     }
 
-    /** Prints the files that are modified or deleted. */
+    /** Prints the files that are modified or deleted, among those sparse
+     *  checkout keeps. */
     static void printModifications() {
-        Tree workingTree = Utils.readObject(TREE_DIR, Tree.class);
+        Tree workingTree = Utils.readMapped(TREE_DIR, Tree.class);
 
         HashSet<String> stagedRemove = Utils.filesSet(STAGE_RM_DIR);
-        HashSet<String> staged = Utils.readObject(STAGED_FILES,
+        HashSet<String> staged = Utils.readMapped(STAGED_FILES,
                 Stage.class).getStagedFiles();
 
         System.out.println(LINES + " Modifications Not "
                 + "Staged For Commit " + LINES);
 
-        HashMap<String, Blob> currBlobs = workingTree.
+        Map<String, Blob> currBlobs = workingTree.
                 getCurrHead().getBlobs();
 
-        ArrayList<String> blobs = new ArrayList<>(currBlobs.keySet());
+        ArrayList<String> blobs = new ArrayList<>(Sparse.select(currBlobs));
         Collections.sort(blobs);
 
-        HashSet<String> workingFiles = Utils.filesSet(WORKING_DIR);
         for (String fileName : blobs) {
-            File workingFile = Utils.join(WORKING_DIR, fileName);
-            if (!workingFiles.contains(fileName)
-                    && !stagedRemove.contains(fileName)) {
+            boolean exists = WorkingDir.exists(fileName);
+            if (!exists && !stagedRemove.contains(fileName)) {
                 System.out.println(fileName + " (deleted)");
-            } else if (workingFile.exists()) {
-                if (!Utils.readContentsAsString(workingFile).
-                        equals(currBlobs.get(fileName).getContents())
-                        && !staged.contains(fileName)) {
+            } else if (exists) {
+                if (!staged.contains(fileName)
+                        && !WorkingDir.blobID(fileName).
+                        equals(currBlobs.get(fileName).getID())) {
                     System.out.println(fileName + " (modified)");
                 }
             }
@@ -124,14 +125,14 @@ public class Status {
 
     /** Prints the files that are untracked. */
     static void printUntracked() {
-        Tree workingTree = Utils.readObject(TREE_DIR, Tree.class);
+        Tree workingTree = Utils.readMapped(TREE_DIR, Tree.class);
         System.out.println(LINES + " Untracked Files " + LINES);
 
         HashSet<String> untracked = Checkout.
                 everythingTracked(workingTree.getCurrHead());
         ArrayList<String> almostUntracked = new ArrayList<>(untracked);
         Collections.sort(almostUntracked);
-        HashSet<String> staged = Utils.readObject(STAGED_FILES,
+        HashSet<String> staged = Utils.readMapped(STAGED_FILES,
                 Stage.class).getStagedFiles();
         for (String file : almostUntracked) {
             if (!staged.contains(file)) {
@@ -0,0 +1,193 @@
+package gitlet;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HexFormat;
+import java.util.function.Predicate;
+
+/** Index of commits by the time they were made, kept in .gitlet/time_index
+ *  as fixed-size records, each a time in milliseconds followed by the 20
+ *  bytes of a commit ID, sorted by time. New commits are almost always the
+ *  newest, so adding them is an append; commits fetched from elsewhere
+ *  are merged in. Readers find a time by binary search and walk from
+ *  there, newest first, without reading any commit they do not print.
+ *  The index is changed only with the tree file locked.
+ *  @author Chris Seo
+ */
+public class TimeIndex {
+
+    /** Name of the index file in a gitlet directory. */
+    static final String INDEX_NAME = "time_index";
+
+    /** Bytes in a record. */
+    static final int RECORD_SIZE = 8 + Utils.UID_LENGTH / 2;
+
+    /** Records read at a time when walking the index. */
+    static final int BLOCK_RECORDS = 512;
+
+    /** Adds COMMITS to the index of the repository in GITLETDIR.
+     * @param gitletDir gitlet directory
+     * @param commits commits to add */
+    static void add(File gitletDir, Collection<Commit> commits) {
+        File index = Utils.join(gitletDir, INDEX_NAME);
+        ArrayList<Commit> sorted = new ArrayList<>(commits);
+        sorted.sort(Comparator.comparingLong(Commit::getTime));
+        try (RandomAccessFile file = new RandomAccessFile(index, "rw")) {
+            long records = file.length() / RECORD_SIZE;
+            long last = Long.MIN_VALUE;
+            if (records > 0) {
+                file.seek((records - 1) * RECORD_SIZE);
+                last = file.readLong();
+            }
+            if (sorted.isEmpty() || sorted.get(0).getTime() >= last) {
+                file.setLength(records * RECORD_SIZE);
+                file.seek(records * RECORD_SIZE);
+                ByteBuffer buffer = ByteBuffer.allocate(sorted.size()
+                        * RECORD_SIZE);
+                for (Commit commit : sorted) {
+                    put(buffer, commit.getTime(), commit.getID());
+                }
+                file.write(buffer.array());
+                return;
+            }
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+        merge(index, sorted);
+    }
+
+    /** Rebuilds the index of the repository in GITLETDIR from the commits
+     *  named COMMITIDS, for repositories made before it existed.
+     * @param gitletDir gitlet directory
+     * @param commitIDs IDs of every logged commit */
+    static void rebuild(File gitletDir, Collection<String> commitIDs) {
+        ArrayList<Commit> commits = new ArrayList<>();
+        for (String id : commitIDs) {
+            File file = Utils.join(gitletDir, id);
+            if (file.exists()) {
+                commits.add(Utils.readObject(file, Commit.class));
+            }
+        }
+        Utils.join(gitletDir, INDEX_NAME).delete();
+        add(gitletDir, commits);
+    }
+
+    /** Returns true if the repository in GITLETDIR has an index.
+     * @param gitletDir gitlet directory */
+    static boolean exists(File gitletDir) {
+        return Utils.join(gitletDir, INDEX_NAME).exists();
+    }
+
+    /** Passes the ID of each indexed commit made from SINCE to UNTIL,
+     *  inclusive, to VISIT, newest first, until VISIT returns false.
+     * @param gitletDir gitlet directory
+     * @param since earliest time in milliseconds
+     * @param until latest time in milliseconds
+     * @param visit called with each commit ID */
+    static void newestFirst(File gitletDir, long since, long until,
+                            Predicate<String> visit) {
+        File index = Utils.join(gitletDir, INDEX_NAME);
+        HexFormat hex = HexFormat.of();
+        try (RandomAccessFile file = new RandomAccessFile(index, "r")) {
+            long low = 0;
+            long high = file.length() / RECORD_SIZE;
+            while (low < high) {
+                long middle = (low + high) >>> 1;
+                file.seek(middle * RECORD_SIZE);
+                if (file.readLong() <= until) {
+                    low = middle + 1;
+                } else {
+                    high = middle;
+                }
+            }
+            byte[] block = new byte[BLOCK_RECORDS * RECORD_SIZE];
+            byte[] id = new byte[RECORD_SIZE - 8];
+            for (long end = low; end > 0; end -= BLOCK_RECORDS) {
+                long start = Math.max(0, end - BLOCK_RECORDS);
+                int count = (int) (end - start);
+                file.seek(start * RECORD_SIZE);
+                file.readFully(block, 0, count * RECORD_SIZE);
+                ByteBuffer buffer = ByteBuffer.wrap(block);
+                for (int i = count - 1; i >= 0; i--) {
+                    buffer.position(i * RECORD_SIZE);
+                    if (buffer.getLong() < since) {
+                        return;
+                    }
+                    buffer.get(id);
+                    if (!visit.test(hex.formatHex(id))) {
+                        return;
+                    }
+                }
+            }
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+    }
+
+    /** Rewrites INDEX with SORTED, which is sorted by time, merged in.
+     * @param index index file
+     * @param sorted commits to add */
+    private static void merge(File index, ArrayList<Commit> sorted) {
+        File temp = new File(index.getPath() + ".tmp");
+        try (RandomAccessFile file = new RandomAccessFile(index, "r");
+             DataOutputStream out = new DataOutputStream(
+                     new BufferedOutputStream(new FileOutputStream(temp)))) {
+            long records = file.length() / RECORD_SIZE;
+            byte[] id = new byte[RECORD_SIZE - 8];
+            int next = 0;
+            for (long i = 0; i < records; i++) {
+                long time = file.readLong();
+                file.readFully(id);
+                while (next < sorted.size()
+                        && sorted.get(next).getTime() < time) {
+                    write(out, sorted.get(next));
+                    next += 1;
+                }
+                out.writeLong(time);
+                out.write(id);
+            }
+            while (next < sorted.size()) {
+                write(out, sorted.get(next));
+                next += 1;
+            }
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+        try {
+            Files.move(temp.toPath(), index.toPath(),
+                    StandardCopyOption.REPLACE_EXISTING,
+                    StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+    }
+
+    /** Writes the record of COMMIT to OUT.
+     * @param out stream to write to
+     * @param commit commit to write
+     * @throws IOException if the record cannot be written */
+    private static void write(DataOutputStream out, Commit commit)
+        throws IOException {
+        out.writeLong(commit.getTime());
+        out.write(HexFormat.of().parseHex(commit.getID()));
+    }
+
+    /** Puts a record into BUFFER.
+     * @param buffer buffer to fill
+     * @param time time in milliseconds
+     * @param id commit ID */
+    private static void put(ByteBuffer buffer, long time, String id) {
+        buffer.putLong(time);
+        buffer.put(HexFormat.of().parseHex(id));
+    }
+}
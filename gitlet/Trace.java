@@ -0,0 +1,171 @@
+package gitlet;
+
+import java.util.Map;
+import java.util.TreeMap;
+
+/** Per-command tracing. Turned on with the --trace or --trace=json flag,
+ *  or the GITLET_TRACE environment variable set to text or json. Counts
+ *  the time spent in and the calls to reading objects, writing files,
+ *  hashing and scanning directories, along with bytes read, written and
+ *  hashed, files stat'ed and objects deserialized by type, and prints
+ *  them to standard error when the command exits. The same hooks feed
+ *  Metrics once it is registered. When neither is on every hook is a
+ *  test of a constant and of a flag.
+ *  @author Chris Seo
+ */
+public class Trace {
+
+    /** System property Main sets from the --trace flag before this class
+     *  is loaded. */
+    static final String TRACE_PROPERTY = "gitlet.trace";
+
+    /** Output format, or null if tracing is off. */
+    static final String FORMAT = format();
+
+    /** True if tracing is on. */
+    static final boolean ENABLED = FORMAT != null;
+
+    /** Starts tracing a command and, if a flight recording wants it,
+     *  records it as a JFR event when the command exits.
+     * @param command name of the command */
+    static void begin(String command) {
+        if (Events.recording()) {
+            Events.CommandEvent event = new Events.CommandEvent();
+            if (event.isEnabled()) {
+                event.command = command;
+                event.begin();
+                Runtime.getRuntime().addShutdownHook(
+                        new Thread(event::commit));
+            }
+        }
+        if (!ENABLED) {
+            return;
+        }
+        _command = command;
+        _start = System.nanoTime();
+        Runtime.getRuntime().addShutdownHook(new Thread(Trace::report));
+    }
+
+    /** Returns a start time for a traced phase, or 0 if neither tracing
+     *  nor Metrics is on. */
+    static long start() {
+        return ENABLED || Metrics.isRegistered() ? System.nanoTime() : 0;
+    }
+
+    /** Ends a traced phase begun at START.
+     * @param phase name of the phase
+     * @param start value returned by start() */
+    static void end(String phase, long start) {
+        if (ENABLED) {
+            add(PHASE_CALLS, phase, 1);
+            add(PHASE_NANOS, phase, System.nanoTime() - start);
+        }
+        Metrics.latency(phase, System.nanoTime() - start);
+    }
+
+    /** Adds to a counter.
+     * @param counter name of the counter
+     * @param amount amount to add */
+    static void count(String counter, long amount) {
+        if (ENABLED) {
+            add(COUNTERS, counter, amount);
+        }
+        Metrics.count(counter, amount);
+    }
+
+    /** Counts an object of type TYPE being deserialized.
+     * @param type class of the object */
+    static void deserialized(Class<?> type) {
+        if (ENABLED) {
+            add(OBJECTS, type.getSimpleName(), 1);
+        }
+        Metrics.count("objects_" + type.getSimpleName(), 1);
+    }
+
+    /** Prints everything counted for this command. */
+    private static void report() {
+        long wall = System.nanoTime() - _start;
+        if (FORMAT.equals("json")) {
+            StringBuilder line = new StringBuilder();
+            line.append("{\"command\":\"").append(_command).
+                    append("\",\"wall_ns\":").append(wall).
+                    append(",\"phases\":{");
+            String separator = "";
+            for (String phase : PHASE_CALLS.keySet()) {
+                line.append(separator).append('"').append(phase).
+                        append("\":{\"calls\":").append(PHASE_CALLS.get(phase)).
+                        append(",\"ns\":").append(PHASE_NANOS.get(phase)).
+                        append('}');
+                separator = ",";
+            }
+            line.append("},\"counters\":").append(json(COUNTERS)).
+                    append(",\"objects\":").append(json(OBJECTS)).append('}');
+            System.err.println(line);
+        } else {
+            System.err.printf("trace: %s %.3f ms%n", _command, wall / 1e6);
+            for (String phase : PHASE_CALLS.keySet()) {
+                System.err.printf("  %-16s %8d calls %12.3f ms%n", phase,
+                        PHASE_CALLS.get(phase), PHASE_NANOS.get(phase) / 1e6);
+            }
+            for (Map.Entry<String, Long> counter : COUNTERS.entrySet()) {
+                System.err.printf("  %-16s %8d%n", counter.getKey(),
+                        counter.getValue());
+            }
+            for (Map.Entry<String, Long> object : OBJECTS.entrySet()) {
+                System.err.printf("  %-16s %8d deserialized%n",
+                        object.getKey(), object.getValue());
+            }
+        }
+    }
+
+    /** Returns COUNTS as a JSON object.
+     * @param counts name mapped to count
+     * @return JSON text */
+    private static String json(TreeMap<String, Long> counts) {
+        StringBuilder result = new StringBuilder("{");
+        String separator = "";
+        for (Map.Entry<String, Long> count : counts.entrySet()) {
+            result.append(separator).append('"').append(count.getKey()).
+                    append("\":").append(count.getValue());
+            separator = ",";
+        }
+        return result.append('}').toString();
+    }
+
+    /** Adds AMOUNT to KEY in COUNTS.
+     * @param counts counts to update
+     * @param key name of the count
+     * @param amount amount to add */
+    private static synchronized void add(TreeMap<String, Long> counts,
+                                         String key, long amount) {
+        counts.merge(key, amount, Long::sum);
+    }
+
+    /** Returns the output format asked for, or null if tracing is off. */
+    private static String format() {
+        String format = System.getProperty(TRACE_PROPERTY,
+                System.getenv("GITLET_TRACE"));
+        if (format == null || format.isEmpty() || format.equals("0")) {
+            return null;
+        }
+        return format.equals("json") ? "json" : "text";
+    }
+
+    /** Calls made to each phase. */
+    private static final TreeMap<String, Long> PHASE_CALLS = new TreeMap<>();
+
+    /** Nanoseconds spent in each phase. */
+    private static final TreeMap<String, Long> PHASE_NANOS = new TreeMap<>();
+
+    /** Byte and file counters. */
+    private static final TreeMap<String, Long> COUNTERS = new TreeMap<>();
+
+    /** Objects deserialized, by type. */
+    private static final TreeMap<String, Long> OBJECTS = new TreeMap<>();
+
+    /** Name of the traced command. */
+    private static String _command;
+
+    /** When the traced command started. */
+    private static long _start;
+}
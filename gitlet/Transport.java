@@ -0,0 +1,473 @@
+package gitlet;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.URI;
+import java.net.UnknownHostException;
+import java.nio.channels.FileChannel;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+
+/** Fetch and push over TCP, for remotes given as gitlet://host:port.
+ *  The server advertises its branch heads, the two sides find the commits
+ *  they share by walking back from their heads, the receiver names the
+ *  objects of those commits it already holds, and the rest follow as one
+ *  pack with no round trips between objects. Objects are
+ *  stored as soon as they are verified, so retrying an interrupted
+ *  transfer only sends what did not make it. The server listens only on
+ *  the loopback interface unless told otherwise, and moves a branch only
+ *  forward.
+ *  @author Chris Seo
+ */
+public class Transport {
+
+    /** Gitlet directory, where gitlet is stored. */
+    static final File GITLET_DIR = Main.GITLET_DIR;
+
+    /** Stores commit tree. */
+    static final File TREE_DIR = Tree.TREE_DIR;
+
+    /** Prefix of remotes reached over the network. */
+    static final String URL_PREFIX = "gitlet://";
+
+    /** Sent by the server when a session starts. */
+    static final String PROTOCOL = "gitlet-transport-1";
+
+    /** Sent in place of an error message when a request succeeds. */
+    static final String OK = "ok";
+
+    /** Port served on and connected to when none is given. */
+    static final int DEFAULT_PORT = 7878;
+
+    /** Milliseconds either side waits on a silent connection. */
+    static final int TIMEOUT = 60000;
+
+    /** Option of serve naming the address to listen on. */
+    static final String BIND = "--bind";
+
+    /** Most commit IDs sent in one message while negotiating. */
+    static final int BATCH = 64;
+
+    /** Handles the serve command. Serves this repository until killed,
+     *  one session at a time, on the loopback interface unless another
+     *  address is given. Each session waits for a running gc to finish.
+     * @param args takes serve, then optionally a port and --bind and an
+     *             address */
+    @SuppressWarnings("try")
+    public static void doServe(String[] args) {
+        int port = DEFAULT_PORT;
+        InetAddress address = InetAddress.getLoopbackAddress();
+        try {
+            for (int i = 1; i < args.length; i++) {
+                if (args[i].equals(BIND) && i + 1 < args.length) {
+                    i += 1;
+                    address = InetAddress.getByName(args[i]);
+                } else {
+                    port = Integer.parseInt(args[i]);
+                }
+            }
+        } catch (NumberFormatException | UnknownHostException excp) {
+            Utils.exit("Incorrect operands.");
+        }
+        try (ServerSocket server = new ServerSocket(port, 0, address)) {
+            System.out.println("Serving on " + address.getHostAddress()
+                    + " port " + server.getLocalPort() + ".");
+            Metrics.register();
+            while (true) {
+                try (Socket socket = server.accept()) {
+                    socket.setSoTimeout(TIMEOUT);
+                    Events.CommandEvent event = null;
+                    if (Events.recording()) {
+                        event = new Events.CommandEvent();
+                        event.command = "serve";
+                        event.begin();
+                    }
+                    long start = System.nanoTime();
+                    try (FileChannel lock = Lock.waitToShare(GITLET_DIR)) {
+                        serve(socket);
+                    }
+                    if (event != null) {
+                        event.commit();
+                    }
+                    Metrics.count("sessions", 1);
+                    Metrics.latency("session", System.nanoTime() - start);
+                } catch (IOException | RuntimeException excp) {
+                    Metrics.count("sessions_failed", 1);
+                    System.out.println("Session ended: " + excp.getMessage());
+                }
+            }
+        } catch (IOException excp) {
+            Utils.exit("Cannot serve on port " + port + ".");
+        }
+    }
+
+    /** Serves one fetch or push session.
+     * @param socket connection to the client
+     * @throws IOException if the client goes away */
+    private static void serve(Socket socket) throws IOException {
+        DataInputStream in = new DataInputStream(
+                new BufferedInputStream(socket.getInputStream()));
+        DataOutputStream out = new DataOutputStream(
+                new BufferedOutputStream(socket.getOutputStream()));
+        Tree workingTree = Utils.readMapped(TREE_DIR, Tree.class);
+        out.writeUTF(PROTOCOL);
+        out.writeInt(workingTree.getBranches().size());
+        for (Map.Entry<String, Commit> branch
+                : workingTree.getBranches().entrySet()) {
+            out.writeUTF(branch.getKey());
+            out.writeUTF(branch.getValue().getID());
+        }
+        out.flush();
+        String command = in.readUTF();
+        String branchName = in.readUTF();
+        Commit head = workingTree.getHead(branchName);
+        if (command.equals("fetch")) {
+            if (head == null) {
+                reply(out, "That remote does not have that branch.");
+                return;
+            }
+            reply(out, OK);
+            HashSet<String> haves = answer(in, out);
+            ArrayList<String> objects = Pack.plan(GITLET_DIR,
+                    Remote.missing(GITLET_DIR, haves, head.getID()));
+            objects.removeAll(offer(in, out, objects));
+            Pack.send(GITLET_DIR, objects, out);
+        } else if (command.equals("push")) {
+            answer(in, out);
+            holds(in, out);
+            ArrayList<String> received = Pack.receive(GITLET_DIR, in,
+                    false);
+            String newHeadID = in.readUTF();
+            if (!Utils.isID(newHeadID)
+                    || !Utils.join(GITLET_DIR, newHeadID).isFile()) {
+                reply(out, "No commit with that id exists.");
+                return;
+            }
+            if (head != null && !Remote.isAncestor(GITLET_DIR, head.getID(),
+                    newHeadID)) {
+                reply(out, "Please pull down remote changes before pushing.");
+                return;
+            }
+            workingTree.addCommits(received);
+            workingTree.setBranchHead(branchName, Utils.readObject(
+                    Utils.join(GITLET_DIR, newHeadID), Commit.class));
+            if (workingTree.compareAndSave(TREE_DIR) != null) {
+                reply(out, "Please pull down remote changes before pushing.");
+                return;
+            }
+            reply(out, OK);
+        } else {
+            reply(out, "Unknown request " + command + ".");
+        }
+    }
+
+    /** Fetches a branch from a served repository into the branch
+     *  REMOTENAME/BRANCHNAME.
+     * @param url gitlet://host:port of the server
+     * @param remoteName name of the remote
+     * @param branchName name of the branch on the server
+     * @return name of the local branch */
+    static String fetch(String url, String remoteName, String branchName) {
+        try (Socket socket = connect(url)) {
+            DataInputStream in = new DataInputStream(
+                    new BufferedInputStream(socket.getInputStream()));
+            DataOutputStream out = new DataOutputStream(
+                    new BufferedOutputStream(socket.getOutputStream()));
+            HashMap<String, String> refs = readRefs(in);
+            out.writeUTF("fetch");
+            out.writeUTF(branchName);
+            out.flush();
+            String status = in.readUTF();
+            if (!status.equals(OK)) {
+                Utils.exit(status);
+            }
+            Tree workingTree = Utils.readMapped(TREE_DIR, Tree.class);
+            LinkedHashSet<String> heads = known(refs);
+            for (Commit head : workingTree.getBranches().values()) {
+                heads.add(head.getID());
+            }
+            negotiate(in, out, heads);
+            holds(in, out);
+            ArrayList<String> received = Pack.receive(GITLET_DIR, in,
+                    false);
+            workingTree.addCommits(received);
+            String localName = remoteName + "/" + branchName;
+            workingTree.setBranchHead(localName, Utils.readObject(
+                    Utils.join(GITLET_DIR, refs.get(branchName)),
+                    Commit.class));
+            workingTree.saveTo(TREE_DIR);
+            return localName;
+        } catch (IOException excp) {
+            Utils.exit("Remote connection failed: " + excp.getMessage());
+            return null;
+        }
+    }
+
+    /** Pushes the current head to a branch of a served repository, as
+     *  long as that is a fast-forward.
+     * @param url gitlet://host:port of the server
+     * @param branchName name of the branch on the server */
+    static void push(String url, String branchName) {
+        Commit localHead = Utils.readMapped(TREE_DIR, Tree.class).
+                getCurrHead();
+        try (Socket socket = connect(url)) {
+            DataInputStream in = new DataInputStream(
+                    new BufferedInputStream(socket.getInputStream()));
+            DataOutputStream out = new DataOutputStream(
+                    new BufferedOutputStream(socket.getOutputStream()));
+            HashMap<String, String> refs = readRefs(in);
+            String remoteHeadID = refs.get(branchName);
+            if (remoteHeadID != null
+                    && (!Utils.join(GITLET_DIR, remoteHeadID).exists()
+                    || !Remote.isAncestor(GITLET_DIR, remoteHeadID,
+                            localHead.getID()))) {
+                Utils.exit("Please pull down remote changes before pushing.");
+            }
+            out.writeUTF("push");
+            out.writeUTF(branchName);
+            LinkedHashSet<String> heads = known(refs);
+            heads.add(localHead.getID());
+            HashSet<String> haves = negotiate(in, out, heads);
+            ArrayList<String> objects = Pack.plan(GITLET_DIR,
+                    Remote.missing(GITLET_DIR, haves, localHead.getID()));
+            objects.removeAll(offer(in, out, objects));
+            Pack.send(GITLET_DIR, objects, out);
+            out.writeUTF(localHead.getID());
+            out.flush();
+            String status = in.readUTF();
+            if (!status.equals(OK)) {
+                Utils.exit(status);
+            }
+        } catch (IOException excp) {
+            Utils.exit("Remote connection failed: " + excp.getMessage());
+        }
+    }
+
+    /** Opens a connection to the server at URL.
+     * @param url gitlet://host:port of the server
+     * @return connected socket
+     * @throws IOException if the server cannot be reached */
+    private static Socket connect(String url) throws IOException {
+        URI uri = URI.create(url);
+        int port = uri.getPort() == -1 ? DEFAULT_PORT : uri.getPort();
+        Socket socket = new Socket();
+        socket.connect(new InetSocketAddress(uri.getHost(), port), TIMEOUT);
+        socket.setSoTimeout(TIMEOUT);
+        return socket;
+    }
+
+    /** Reads the server's branch advertisement.
+     * @param in stream from the server
+     * @return HashMap of branch name, head ID
+     * @throws IOException if the advertisement is malformed */
+    private static HashMap<String, String> readRefs(DataInputStream in)
+        throws IOException {
+        if (!in.readUTF().equals(PROTOCOL)) {
+            throw new IOException("not a gitlet server");
+        }
+        HashMap<String, String> result = new HashMap<>();
+        int count = in.readInt();
+        for (int i = 0; i < count; i++) {
+            String branchName = in.readUTF();
+            String id = in.readUTF();
+            if (!Utils.isID(id)) {
+                throw new IOException("bad commit ID from server");
+            }
+            result.put(branchName, id);
+        }
+        return result;
+    }
+
+    /** Returns the heads advertised in REFS that this repository has.
+     * @param refs branch names mapped to head IDs, from the server
+     * @return IDs of the heads both sides have */
+    private static LinkedHashSet<String> known(Map<String, String> refs) {
+        LinkedHashSet<String> result = new LinkedHashSet<>();
+        for (String id : refs.values()) {
+            if (Utils.join(GITLET_DIR, id).isFile()) {
+                result.add(id);
+            }
+        }
+        return result;
+    }
+
+    /** Finds out which commits this repository shares with the other
+     *  side, which answers with answer. Commits are offered in batches,
+     *  walking back from HEADS, and the walk stops at each one the other
+     *  side has, since it has that commit's history as well. So only the
+     *  commits one side lacks and the shared ones just past them are
+     *  named, however long the shared history.
+     * @param in stream from the other side
+     * @param out stream to the other side
+     * @param heads commits of this repository to walk back from
+     * @return IDs of the commits offered that the other side has
+     * @throws IOException if the other side goes away */
+    private static HashSet<String> negotiate(DataInputStream in,
+            DataOutputStream out, LinkedHashSet<String> heads)
+        throws IOException {
+        HashSet<String> result = new HashSet<>();
+        HashSet<String> seen = new HashSet<>(heads);
+        ArrayDeque<String> queue = new ArrayDeque<>(heads);
+        while (!queue.isEmpty()) {
+            ArrayList<String> batch = new ArrayList<>();
+            while (!queue.isEmpty() && batch.size() < BATCH) {
+                batch.add(queue.poll());
+            }
+            writeIDs(out, batch);
+            out.flush();
+            HashSet<String> has = new HashSet<>(readIDs(in, false));
+            for (String id : batch) {
+                if (has.contains(id)) {
+                    result.add(id);
+                    continue;
+                }
+                Commit commit = Utils.readObject(Utils.join(GITLET_DIR, id),
+                        Commit.class);
+                for (String parentID : new String[] {commit.getParentID(),
+                    commit.getParent2ID()}) {
+                    if (parentID != null && seen.add(parentID)) {
+                        queue.add(parentID);
+                    }
+                }
+            }
+        }
+        writeIDs(out, List.of());
+        out.flush();
+        return result;
+    }
+
+    /** Answers the other side's negotiate with the commits it offers
+     *  that this repository has, until it offers none.
+     * @param in stream from the other side
+     * @param out stream to the other side
+     * @return IDs of the commits offered that this repository has
+     * @throws IOException if the other side goes away or sends a bad ID */
+    private static HashSet<String> answer(DataInputStream in,
+                                          DataOutputStream out)
+        throws IOException {
+        HashSet<String> result = new HashSet<>();
+        for (List<String> batch = readIDs(in, false); !batch.isEmpty();
+             batch = readIDs(in, false)) {
+            ArrayList<String> has = new ArrayList<>();
+            for (String id : batch) {
+                if (Utils.join(GITLET_DIR, id).isFile()) {
+                    has.add(id);
+                }
+            }
+            result.addAll(has);
+            writeIDs(out, has);
+            out.flush();
+        }
+        return result;
+    }
+
+    /** Asks the other side, which answers with holds, which of the
+     *  nodes, blobs and chunks in OBJECTS, a plan for a pack, it holds
+     *  already, as it does after an interrupted transfer. Commits are
+     *  always sent, for the other side to record.
+     * @param in stream from the other side
+     * @param out stream to the other side
+     * @param objects objects about to be sent, as named in the plan
+     * @return those the other side holds
+     * @throws IOException if the other side goes away */
+    private static HashSet<String> offer(DataInputStream in,
+            DataOutputStream out, List<String> objects) throws IOException {
+        HashSet<String> result = new HashSet<>();
+        ArrayList<String> batch = new ArrayList<>();
+        for (int i = 0; i <= objects.size(); i++) {
+            if (i < objects.size()
+                    && objects.get(i).charAt(0) != Pack.COMMIT) {
+                batch.add(objects.get(i));
+            }
+            if (batch.size() == BATCH
+                    || (i == objects.size() && !batch.isEmpty())) {
+                writeIDs(out, batch);
+                out.flush();
+                result.addAll(readIDs(in, true));
+                batch.clear();
+            }
+        }
+        writeIDs(out, List.of());
+        out.flush();
+        return result;
+    }
+
+    /** Answers the other side's offer with the objects it names that this
+     *  repository holds, until it names none.
+     * @param in stream from the other side
+     * @param out stream to the other side
+     * @throws IOException if the other side goes away or sends a bad
+     *         name */
+    private static void holds(DataInputStream in, DataOutputStream out)
+        throws IOException {
+        for (List<String> batch = readIDs(in, true); !batch.isEmpty();
+             batch = readIDs(in, true)) {
+            ArrayList<String> held = new ArrayList<>();
+            for (String object : batch) {
+                if (Pack.file(GITLET_DIR, object).isFile()) {
+                    held.add(object);
+                }
+            }
+            writeIDs(out, held);
+            out.flush();
+        }
+    }
+
+    /** Writes a list of at most BATCH commit IDs or objects.
+     * @param out stream to write to
+     * @param ids commit IDs, or objects named as in a pack's plan
+     * @throws IOException if the stream fails */
+    private static void writeIDs(DataOutputStream out, List<String> ids)
+        throws IOException {
+        out.writeInt(ids.size());
+        for (String id : ids) {
+            out.writeUTF(id);
+        }
+    }
+
+    /** Reads a list of commit IDs, or of OBJECTS, written by writeIDs.
+     * @param in stream to read from
+     * @param objects true to read objects named as in a pack's plan
+     * @return commit IDs or objects
+     * @throws IOException if the stream fails or holds a bad ID */
+    private static ArrayList<String> readIDs(DataInputStream in,
+                                             boolean objects)
+        throws IOException {
+        int count = in.readInt();
+        if (count < 0 || count > BATCH) {
+            throw new IOException("bad commit ID list");
+        }
+        ArrayList<String> result = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            String id = in.readUTF();
+            if (objects ? !Pack.isObject(id) : !Utils.isID(id)) {
+                throw new IOException("bad commit ID");
+            }
+            result.add(id);
+        }
+        return result;
+    }
+
+    /** Sends a status line and flushes.
+     * @param out stream to the other side
+     * @param status OK or an error message
+     * @throws IOException if the stream fails */
+    private static void reply(DataOutputStream out, String status)
+        throws IOException {
+        out.writeUTF(status);
+        out.flush();
+    }
+}
@@ -2,15 +2,24 @@ package gitlet;
 
 import java.io.File;
 import java.io.IOException;
+import java.io.ObjectInputStream;
 import java.io.Serializable;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.Map;
+import java.util.Objects;
 
 /** Structure of commit history.
  *  @author Chris Seo
  */
 public class Tree implements Serializable {
 
+    /** Keeps trees saved before this class changed readable. */
+    private static final long serialVersionUID = -8860710242847575718L;
+
     /** Stores commit tree. */
     static final File TREE_DIR = Utils.join(Main.GITLET_DIR, "tree");
 
@@ -35,11 +44,6 @@ public class Tree implements Serializable {
     /** Constructor for gitlet commit tree. Makes an initial commit
      * and sets up branches. */
     public Tree() {
-        try {
-            TREE_DIR.createNewFile();
-        } catch (IOException e) {
-            return;
-        }
         HashMap<String, Blob> initBlobs = new HashMap<>();
         for (File file : WORKING_DIR.listFiles()) {
             if (!file.isDirectory()) {
@@ -78,17 +82,13 @@ public class Tree implements Serializable {
      * @param parent2 not null if there is a merged in parent */
     public void commitFromStage(String message, boolean isMerge,
                                 String parent2) {
-        Stage staged = Utils.readObject(STAGED_SAVE, Stage.class);
+        Stage staged = Utils.readMapped(STAGED_SAVE, Stage.class);
         if (STAGE_RM_DIR.listFiles().length == 0 && staged.
                 getStagedFiles().size() == 0) {
             System.out.println("No changes added to the commit.");
             System.exit(0);
         }
-        HashMap<String, Blob> parentBlobs = _currHead.getBlobs();
-        HashMap<String, Blob> blobs = new HashMap<>();
-        if (parentBlobs != null) {
-            blobs.putAll(parentBlobs);
-        }
+        FileMap blobs = FileMap.of(GITLET_DIR, _currHead.getBlobs());
         File[] stagedFiles = STAGE_DIR.listFiles();
         File[] stagedRemovedFiles = STAGE_RM_DIR.listFiles();
         for (File file : stagedFiles) {
@@ -96,28 +96,47 @@ public class Tree implements Serializable {
                 Blob stagedBlob = new Blob(file);
                 String nameInStage = stagedBlob.getName();
 
-                blobs.put(nameInStage, stagedBlob);
+                blobs = blobs.with(nameInStage, stagedBlob);
             }
         }
         for (File file : stagedRemovedFiles) {
             if (!file.isDirectory()) {
-                if (blobs.containsKey(file.getName())) {
-                    blobs.remove(file.getName());
-                }
+                blobs = blobs.without(file.getName());
             }
         }
-        Commit newCommit;
+        commitFiles(message, blobs, isMerge, parent2);
+    }
+
+    /** Creates a new commit of FILES on the current head.
+     * @param message message of the commit
+     * @param files files of the commit
+     * @param isMerge true if commit is merge
+     * @param parent2 not null if there is a merged in parent */
+    public void commitFiles(String message, Map<String, Blob> files,
+                            boolean isMerge, String parent2) {
+        setHead(addCommit(message, _currHead.getID(), files, isMerge,
+                parent2));
+    }
+
+    /** Creates and stores a commit of FILES on the commit PARENT, without
+     *  moving any branch. It is indexed when this tree is next saved.
+     * @param message message of the commit
+     * @param parent ID of its parent
+     * @param files files of the commit
+     * @param isMerge true if commit is merge
+     * @param parent2 not null if there is a merged in parent
+     * @return the commit */
+    public Commit addCommit(String message, String parent,
+                            Map<String, Blob> files, boolean isMerge,
+                            String parent2) {
+        Commit newCommit = new Commit(message, parent, files, isMerge,
+                false);
         if (isMerge) {
-            newCommit = new Commit(message,
-                    _currHead.getID(), blobs, true, false);
             newCommit.setParent2ID(parent2);
-        } else {
-            newCommit = new Commit(message,
-                    _currHead.getID(), blobs, false, false);
         }
         _allCommits.add(newCommit.getID());
         createCommitFile(newCommit);
-        setHead(newCommit);
+        return newCommit;
     }
 
     /** Returns the current branch's head. */
@@ -152,6 +171,23 @@ public class Tree implements Serializable {
         save();
     }
 
+    /** Points a branch at a commit, creating the branch if needed. Used
+     *  when commits arrive from another repository.
+     * @param branchName name of the branch
+     * @param head new head of the branch */
+    public void setBranchHead(String branchName, Commit head) {
+        _branchNames.put(branchName, head);
+        if (branchName.equals(_currentBranch)) {
+            _currHead = head;
+        }
+    }
+
+    /** Records commits copied in from another repository.
+     * @param commitIDs IDs of the commits */
+    public void addCommits(Collection<String> commitIDs) {
+        _allCommits.addAll(commitIDs);
+    }
+
     /** Removes a given branch from the tree.
      * @param branchName name of branch to be removed */
     public void removeBranch(String branchName) {
@@ -161,11 +197,57 @@ public class Tree implements Serializable {
         } else if (_currentBranch.equals(branchName)) {
             System.out.println("Cannot remove the current branch.");
             System.exit(0);
+        } else if (checkedOutElsewhere(branchName)) {
+            Utils.exit("Cannot remove a branch checked out in another "
+                    + "worktree.");
         }
         _branchNames.remove(branchName);
         save();
     }
 
+    /** Returns true if the branch BRANCHNAME is the current branch of a
+     *  worktree other than this one.
+     * @param branchName name of a branch
+     * @return true if checked out elsewhere */
+    public boolean checkedOutElsewhere(String branchName) {
+        if (_worktree != null && branchName.equals(_mainBranch)) {
+            return true;
+        }
+        for (Map.Entry<String, String> worktree : _worktrees.entrySet()) {
+            if (!worktree.getKey().equals(_worktree)
+                    && worktree.getValue().equals(branchName)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /** Returns the linked worktrees, by path, mapped to their current
+     *  branches. */
+    public HashMap<String, String> getWorktrees() {
+        return _worktrees;
+    }
+
+    /** Returns the current branch of the main worktree. */
+    public String mainBranch() {
+        return _mainBranch;
+    }
+
+    /** Records a linked worktree at PATH on the branch BRANCHNAME, or
+     *  forgets it if BRANCHNAME is null, and saves.
+     * @param path path of the worktree
+     * @param branchName its current branch, or null */
+    public void setWorktree(String path, String branchName) {
+        if (branchName == null) {
+            _worktrees.remove(path);
+            _worktreesRemoved.add(path);
+        } else {
+            _worktrees.put(path, branchName);
+            _worktreeChanges.put(path, branchName);
+        }
+        save();
+    }
+
     /** Handles the reset command.
      * @param args takes reset + commit ID */
     public static void doReset(String[] args) {
@@ -176,7 +258,7 @@ public class Tree implements Serializable {
             System.out.println("No commit with that id exists.");
             System.exit(0);
         }
-        Tree workingTree = Utils.readObject(TREE_DIR, Tree.class);
+        Tree workingTree = Utils.readMapped(TREE_DIR, Tree.class);
         Commit currCommit = workingTree.getCurrHead();
         Commit inputtedCommit = commitFromFile(commitFile);
         if (Checkout.trackedTest(currCommit, inputtedCommit)) {
@@ -198,16 +280,14 @@ public class Tree implements Serializable {
         return Utils.readObject(file, Commit.class);
     }
 
-    /** Creates a file for the given commit.
+    /** Creates a file for the given commit. Commits are named by their
+     *  contents, so this needs no lock: a writer racing another for the
+     *  same ID renames the same bytes into place.
      * @param commit commit to be saved as a file */
     public static void createCommitFile(Commit commit) {
         File commitFile = Utils.join(GITLET_DIR, commit.getID());
-        try {
-            commitFile.createNewFile();
-        } catch (IOException ignored) {
-            return;
-        }
-        Utils.writeObject(commitFile, commit);
+        Utils.replaceObject(commitFile, commit, false);
+        Utils.syncLater(commitFile);
     }
 
     /** Returns current branch. */
@@ -235,7 +315,177 @@ public class Tree implements Serializable {
 
     /** Saves to a file in .gitlet for persistence. */
     private void save() {
-        Utils.writeObject(TREE_DIR, this);
+        saveTo(TREE_DIR);
+    }
+
+    /** Saves to the tree file of a possibly different repository. Exits
+     *  with a message if another command moved a branch this tree moved.
+     * @param treeFile tree file to write */
+    public void saveTo(File treeFile) {
+        String conflict = compareAndSave(treeFile);
+        if (conflict != null) {
+            Utils.exit("Branch " + conflict + " was changed by another "
+                    + "command.");
+        }
+    }
+
+    /** Saves to TREEFILE as a compare-and-swap of every branch this tree
+     *  created, moved or removed since it was read: each must still point
+     *  where it did then, or already where this tree points it. Branches
+     *  only others changed, and the commits they logged, are kept. New
+     *  commits are added to the indexes first and each move is added
+     *  to the reflog after. The lock taken is held just for
+     *  the read and write of TREEFILE and the reflog.
+     * @param treeFile tree file to write
+     * @return the name of a branch another command moved, in which case
+     *         nothing is written, or null */
+    @SuppressWarnings("try")
+    String compareAndSave(File treeFile) {
+        File lockFile = new File(treeFile.getPath() + ".lock");
+        try (FileChannel lock = Lock.waitFor(lockFile)) {
+            HashSet<String> changed = new HashSet<>(_base.keySet());
+            changed.addAll(_branchNames.keySet());
+            changed.removeIf(name -> Objects.equals(_base.get(name),
+                    idOf(_branchNames.get(name))));
+            HashMap<String, String> theirs = _base;
+            File gitletDir = treeFile.getAbsoluteFile().getParentFile();
+            HashSet<String> added = new HashSet<>(_allCommits);
+            String mainBranch = _mainBranch;
+            if (treeFile.exists()) {
+                Tree current = Utils.readMapped(treeFile, Tree.class);
+                theirs = current.headIDs();
+                added.removeAll(current._allCommits);
+                for (String name : changed) {
+                    if (!Objects.equals(theirs.get(name), _base.get(name))
+                            && !Objects.equals(theirs.get(name),
+                            idOf(_branchNames.get(name)))) {
+                        return name;
+                    }
+                }
+                for (String name : changed) {
+                    if (_branchNames.containsKey(name)) {
+                        current._branchNames.put(name,
+                                _branchNames.get(name));
+                    } else {
+                        current._branchNames.remove(name);
+                    }
+                }
+                _branchNames = current._branchNames;
+                _worktrees = current._worktrees;
+                mainBranch = current._mainBranch;
+                _allCommits.addAll(current._allCommits);
+                _allCommits.removeAll(_dropped);
+            }
+            String headID = idOf(_currHead);
+            _worktrees.putAll(_worktreeChanges);
+            _worktrees.keySet().removeAll(_worktreesRemoved);
+            String ours = _currentBranch;
+            if (_worktree != null) {
+                _worktrees.put(_worktree, ours);
+                _currentBranch = mainBranch;
+            }
+            if (_branchNames.containsKey(_currentBranch)) {
+                _currHead = _branchNames.get(_currentBranch);
+            }
+            indexCommits(gitletDir, added);
+            Utils.replaceObject(treeFile, this, true);
+            _mainBranch = _currentBranch;
+            if (_worktree != null) {
+                _currentBranch = ours;
+                _currHead = _branchNames.get(ours);
+            }
+            for (String name : changed) {
+                String newID = idOf(_branchNames.get(name));
+                if (!Objects.equals(theirs.get(name), newID)) {
+                    Reflog.append(gitletDir, name, theirs.get(name), newID);
+                }
+            }
+            if (!Objects.equals(_baseHead, headID)
+                    || !Objects.equals(_baseBranch, _currentBranch)) {
+                Reflog.append(gitletDir, Reflog.HEAD, _baseHead, headID);
+            }
+            _base = headIDs();
+            _baseHead = idOf(_currHead);
+            _baseBranch = _currentBranch;
+            return null;
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+    }
+
+    /** Adds the commits named ADDED, which this tree logged since it was
+     *  read, to the time and message indexes of GITLETDIR, or builds an
+     *  index from the whole log if the repository predates it.
+     * @param gitletDir gitlet directory
+     * @param added IDs of newly logged commits */
+    private void indexCommits(File gitletDir, HashSet<String> added) {
+        ArrayList<Commit> commits = new ArrayList<>();
+        for (String id : added) {
+            commits.add(Utils.readObject(Utils.join(gitletDir, id),
+                    Commit.class));
+        }
+        boolean older = added.size() < _allCommits.size();
+        if (older && !TimeIndex.exists(gitletDir)) {
+            TimeIndex.rebuild(gitletDir, _allCommits);
+        } else {
+            TimeIndex.add(gitletDir, commits);
+        }
+        if (older && !MessageIndex.exists(gitletDir)) {
+            MessageIndex.rebuild(gitletDir, _allCommits);
+        } else {
+            MessageIndex.add(gitletDir, commits);
+        }
+    }
+
+    /** Forgets commits that gc deleted, here and, on the next save, in the
+     *  saved tree.
+     * @param commitIDs IDs of the deleted commits */
+    public void dropCommits(Collection<String> commitIDs) {
+        _allCommits.removeAll(commitIDs);
+        _dropped.addAll(commitIDs);
+    }
+
+    /** Returns each branch name mapped to the ID of its head. */
+    private HashMap<String, String> headIDs() {
+        HashMap<String, String> result = new HashMap<>();
+        for (Map.Entry<String, Commit> branch : _branchNames.entrySet()) {
+            result.put(branch.getKey(), idOf(branch.getValue()));
+        }
+        return result;
+    }
+
+    /** Returns the ID of COMMIT, or null if there is none.
+     * @param commit a commit or null
+     * @return ID or null */
+    private static String idOf(Commit commit) {
+        return commit == null ? null : commit.getID();
+    }
+
+    /** Reads a tree and remembers where its branches and head pointed,
+     *  for compareAndSave. In a linked worktree, the current branch is
+     *  that worktree's.
+     * @param in stream to read from
+     * @throws IOException if the stream cannot be read
+     * @throws ClassNotFoundException if a class of the tree is missing */
+    private void readObject(ObjectInputStream in)
+        throws IOException, ClassNotFoundException {
+        in.defaultReadObject();
+        if (_worktrees == null) {
+            _worktrees = new HashMap<>();
+        }
+        _worktreeChanges = new HashMap<>();
+        _worktreesRemoved = new HashSet<>();
+        _mainBranch = _currentBranch;
+        String key = Worktree.key();
+        if (key != null && _worktrees.containsKey(key)) {
+            _worktree = key;
+            _currentBranch = _worktrees.get(key);
+            _currHead = _branchNames.get(_currentBranch);
+        }
+        _base = headIDs();
+        _baseHead = idOf(_currHead);
+        _baseBranch = _currentBranch;
+        _dropped = new HashSet<>();
     }
 
     /** Branch names. */
@@ -249,4 +499,34 @@ public class Tree implements Serializable {
 
     /** Current branch's head. */
     private Commit _currHead;
+
+    /** Branch names mapped to the IDs of their heads when this tree was
+     *  read or last saved. */
+    private transient HashMap<String, String> _base = new HashMap<>();
+
+    /** ID of the current head when this tree was read or last saved. */
+    private transient String _baseHead;
+
+    /** Current branch when this tree was read or last saved. */
+    private transient String _baseBranch;
+
+    /** Linked worktrees, by path, mapped to their current branches. The
+     *  main worktree's is _currentBranch. */
+    private HashMap<String, String> _worktrees = new HashMap<>();
+
+    /** Path of the linked worktree this tree was read in, or null. */
+    private transient String _worktree;
+
+    /** Current branch of the main worktree. */
+    private transient String _mainBranch;
+
+    /** Linked worktrees added by this command, and their branches. */
+    private transient HashMap<String, String> _worktreeChanges =
+            new HashMap<>();
+
+    /** Linked worktrees forgotten by this command. */
+    private transient HashSet<String> _worktreesRemoved = new HashSet<>();
+
+    /** Commits gc deleted, which are left out of the saved log. */
+    private transient HashSet<String> _dropped = new HashSet<>();
 }
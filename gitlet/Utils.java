@@ -1,24 +1,42 @@
 package gitlet;
 
 import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.FileInputStream;
+import java.io.FileOutputStream;
 import java.io.FilenameFilter;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.ObjectInputFilter;
 import java.io.ObjectInputStream;
 import java.io.ObjectOutputStream;
 import java.io.Serializable;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.FileSystems;
 import java.nio.file.Files;
+import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
 import java.nio.charset.StandardCharsets;
 import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Formatter;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
 
+import static java.nio.file.StandardCopyOption.ATOMIC_MOVE;
 import static java.nio.file.StandardCopyOption.REPLACE_EXISTING;
 
 
@@ -42,21 +60,26 @@ class Utils {
      * be any mixture of byte arrays and Strings.
      */
     static String sha1(Object... vals) {
+        long start = Trace.start();
         try {
             MessageDigest md = MessageDigest.getInstance("SHA-1");
             for (Object val : vals) {
+                byte[] bytes;
                 if (val instanceof byte[]) {
-                    md.update((byte[]) val);
+                    bytes = (byte[]) val;
                 } else if (val instanceof String) {
-                    md.update(((String) val).getBytes(StandardCharsets.UTF_8));
+                    bytes = ((String) val).getBytes(StandardCharsets.UTF_8);
                 } else {
                     throw new IllegalArgumentException("improper type to sha1");
                 }
+                md.update(bytes);
+                Trace.count("sha1_bytes", bytes.length);
             }
             Formatter result = new Formatter();
             for (byte b : md.digest()) {
                 result.format("%02x", b);
             }
+            Trace.end("sha1", start);
             return result.toString();
         } catch (NoSuchAlgorithmException excp) {
             throw new IllegalArgumentException("System does not support SHA-1");
@@ -71,6 +94,24 @@ class Utils {
         return sha1(vals.toArray(new Object[vals.size()]));
     }
 
+    /**
+     * Returns true if ID is a complete SHA-1 UID: UID_LENGTH lowercase
+     * hexadecimal digits.  IDs from outside must pass before they name
+     * a file.
+     */
+    static boolean isID(String id) {
+        if (id == null || id.length() != UID_LENGTH) {
+            return false;
+        }
+        for (int i = 0; i < UID_LENGTH; i++) {
+            char c = id.charAt(i);
+            if ((c < '0' || c > '9') && (c < 'a' || c > 'f')) {
+                return false;
+            }
+        }
+        return true;
+    }
+
     /* FILE DELETION */
 
     /**
@@ -112,7 +153,9 @@ class Utils {
             throw new IllegalArgumentException("must be a normal file");
         }
         try {
-            return Files.readAllBytes(file.toPath());
+            byte[] result = Files.readAllBytes(file.toPath());
+            Trace.count("bytes_read", result.length);
+            return result;
         } catch (IOException excp) {
             throw new IllegalArgumentException(excp.getMessage());
         }
@@ -134,6 +177,7 @@ class Utils {
      * in case of problems.
      */
     static void writeContents(File file, Object... contents) {
+        long start = Trace.start();
         try {
             if (file.isDirectory()) {
                 throw
@@ -144,13 +188,17 @@ class Utils {
                     new BufferedOutputStream(Files.
                             newOutputStream(file.toPath()));
             for (Object obj : contents) {
+                byte[] bytes;
                 if (obj instanceof byte[]) {
-                    str.write((byte[]) obj);
+                    bytes = (byte[]) obj;
                 } else {
-                    str.write(((String) obj).getBytes(StandardCharsets.UTF_8));
+                    bytes = ((String) obj).getBytes(StandardCharsets.UTF_8);
                 }
+                str.write(bytes);
+                Trace.count("bytes_written", bytes.length);
             }
             str.close();
+            Trace.end("writeContents", start);
         } catch (IOException | ClassCastException excp) {
             throw new IllegalArgumentException(excp.getMessage());
         }
@@ -162,11 +210,53 @@ class Utils {
      */
     static <T extends Serializable> T readObject(File file,
                                                  Class<T> expectedClass) {
+        return readObject(file, expectedClass, false);
+    }
+
+    /**
+     * Return an object of type T read from FILE, casting it to
+     * EXPECTEDCLASS, decoding it straight from a read-only mapping of
+     * FILE.  Meant for metadata read by most commands, like the tree and
+     * the stage: the mapping is kept and reused for as long as FILE keeps
+     * the same file key, modification time and size, which every
+     * replaceObject changes, so a long-lived process such as serve only
+     * maps each version once.  Files are read normally on systems that do
+     * not let mapped files be replaced.  Throws IllegalArgumentException
+     * in case of problems.
+     */
+    static <T extends Serializable> T readMapped(File file,
+                                                 Class<T> expectedClass) {
+        return readObject(file, expectedClass, File.separatorChar == '/');
+    }
+
+    /**
+     * Return an object of type T read from FILE, casting it to
+     * EXPECTEDCLASS, from a mapping of FILE if MAPPED.
+     */
+    private static <T extends Serializable> T readObject(File file,
+            Class<T> expectedClass, boolean mapped) {
+        long start = Trace.start();
+        Events.ObjectReadEvent event = null;
+        if (Events.recording()) {
+            event = new Events.ObjectReadEvent();
+            event.begin();
+        }
         try {
-            ObjectInputStream in =
-                    new ObjectInputStream(new FileInputStream(file));
+            ObjectInputStream in = new ObjectInputStream(mapped
+                    ? mapping(file) : new FileInputStream(file));
             T result = expectedClass.cast(in.readObject());
             in.close();
+            if (Trace.ENABLED || Metrics.isRegistered()) {
+                Trace.count("bytes_read", file.length());
+                Trace.deserialized(result.getClass());
+                Trace.end("readObject", start);
+            }
+            if (event != null && event.shouldCommit()) {
+                event.path = file.getPath();
+                event.type = result.getClass().getSimpleName();
+                event.bytes = file.length();
+                event.commit();
+            }
             return result;
         } catch (IOException | ClassCastException
                 | ClassNotFoundException excp) {
@@ -174,13 +264,252 @@ class Utils {
         }
     }
 
+    /**
+     * Return a stream over a mapping of FILE, reusing the last mapping of
+     * it if FILE has not been replaced or changed since.
+     */
+    private static InputStream mapping(File file) throws IOException {
+        Path path = file.toPath().toAbsolutePath();
+        BasicFileAttributes attributes = Files.readAttributes(path,
+                BasicFileAttributes.class);
+        Mapping mapping = MAPPINGS.get(path);
+        boolean hit = mapping != null && mapping.matches(attributes);
+        Metrics.cacheLookup("mappings", hit);
+        if (!hit) {
+            try (FileChannel channel = FileChannel.open(path,
+                    StandardOpenOption.READ)) {
+                mapping = new Mapping(attributes, channel.map(
+                        FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+            }
+            MAPPINGS.put(path, mapping);
+        }
+        ByteBuffer buffer = mapping._buffer.duplicate();
+        return new InputStream() {
+            @Override
+            public int read() {
+                return buffer.hasRemaining() ? buffer.get() & 0xff : -1;
+            }
+
+            @Override
+            public int read(byte[] bytes, int offset, int length) {
+                if (length == 0) {
+                    return 0;
+                }
+                if (!buffer.hasRemaining()) {
+                    return -1;
+                }
+                int count = Math.min(length, buffer.remaining());
+                buffer.get(bytes, offset, count);
+                return count;
+            }
+
+            @Override
+            public int available() {
+                return buffer.remaining();
+            }
+        };
+    }
+
+    /** A mapping of a file and what identified the file when mapped. */
+    private static final class Mapping {
+
+        /**
+         * A mapping BUFFER of a file with ATTRIBUTES.
+         */
+        Mapping(BasicFileAttributes attributes, MappedByteBuffer buffer) {
+            _key = attributes.fileKey();
+            _modified = attributes.lastModifiedTime();
+            _size = attributes.size();
+            _buffer = buffer;
+        }
+
+        /**
+         * Return true if a file with ATTRIBUTES is the file mapped.
+         */
+        boolean matches(BasicFileAttributes attributes) {
+            return Objects.equals(_key, attributes.fileKey())
+                    && _modified.equals(attributes.lastModifiedTime())
+                    && _size == attributes.size();
+        }
+
+        /** File key of the file, or null if the system has none. */
+        private final Object _key;
+
+        /** Modification time of the file. */
+        private final FileTime _modified;
+
+        /** Size of the file. */
+        private final long _size;
+
+        /** The mapping. */
+        private final MappedByteBuffer _buffer;
+    }
+
+    /** Latest mapping of each file read with readMapped. */
+    private static final ConcurrentHashMap<Path, Mapping> MAPPINGS =
+            new ConcurrentHashMap<>();
+
     /**
      * Write OBJ to FILE.
      */
     static void writeObject(File file, Serializable obj) {
-        writeContents(file, serialize(obj));
+        Events.ObjectWriteEvent event = null;
+        if (Events.recording()) {
+            event = new Events.ObjectWriteEvent();
+            event.begin();
+        }
+        byte[] bytes = serialize(obj);
+        writeContents(file, bytes);
+        if (event != null && event.shouldCommit()) {
+            event.path = file.getPath();
+            event.type = obj.getClass().getSimpleName();
+            event.bytes = bytes.length;
+            event.commit();
+        }
     }
 
+    /**
+     * Write OBJ to FILE by way of a temporary file in the same directory
+     * that is then renamed over FILE, so that a crash leaves either the
+     * old or the new contents.  If DURABLE, every file passed to
+     * syncLater since the last durable write, then the new contents, then
+     * the rename reach the disk before this returns, so that FILE never
+     * refers to objects that a crash could lose.  Throws
+     * IllegalArgumentException in case of problems.
+     */
+    static void replaceObject(File file, Serializable obj, boolean durable) {
+        File dir = file.getAbsoluteFile().getParentFile();
+        File temp = null;
+        try {
+            temp = tempFor(dir, file);
+            writeObject(temp, obj);
+            if (durable) {
+                syncPending();
+                sync(temp);
+            }
+            Files.move(temp.toPath(), file.toPath(), ATOMIC_MOVE,
+                    REPLACE_EXISTING);
+            if (durable) {
+                sync(dir);
+            }
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        } finally {
+            if (temp != null) {
+                temp.delete();
+            }
+        }
+    }
+
+    /**
+     * Write BYTES[OFFSET..OFFSET+LENGTH) to DEST unless it exists, for
+     * files named by the hash of their contents, which never change once
+     * written.  The bytes go to a temporary file renamed into place, so
+     * DEST is never seen half written, and DEST is forced to disk with the
+     * next durable replaceObject.  Throws IllegalArgumentException in case
+     * of problems.
+     */
+    static void writeNew(File dest, byte[] bytes, int offset, int length) {
+        if (dest.exists()) {
+            return;
+        }
+        File dir = dest.getParentFile();
+        dir.mkdirs();
+        File temp = null;
+        try {
+            temp = tempFor(dir, dest);
+            try (FileOutputStream out = new FileOutputStream(temp)) {
+                out.write(bytes, offset, length);
+            }
+            Files.move(temp.toPath(), dest.toPath(), ATOMIC_MOVE,
+                    REPLACE_EXISTING);
+            syncLater(dest);
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        } finally {
+            if (temp != null) {
+                temp.delete();
+            }
+        }
+    }
+
+    /**
+     * Return a new empty file in DIR to be renamed over FILE.  It has the
+     * permissions FILE has, if FILE exists, and otherwise those the umask
+     * gives any new file, rather than the owner-only permissions of
+     * Files.createTempFile, so that repositories stay readable by whoever
+     * could read them before.
+     */
+    private static File tempFor(File dir, File file) throws IOException {
+        Path temp;
+        while (true) {
+            try {
+                temp = Files.createFile(dir.toPath().resolve("."
+                        + file.getName() + "." + Long.toHexString(
+                        ThreadLocalRandom.current().nextLong()) + ".tmp"));
+                break;
+            } catch (FileAlreadyExistsException excp) {
+                continue;
+            }
+        }
+        if (POSIX && file.exists()) {
+            Files.setPosixFilePermissions(temp,
+                    Files.getPosixFilePermissions(file.toPath()));
+        }
+        return temp.toFile();
+    }
+
+    /** True if the file system has POSIX permissions. */
+    private static final boolean POSIX = FileSystems.getDefault().
+            supportedFileAttributeViews().contains("posix");
+
+    /**
+     * Record that FILE was written without being forced to disk, so that
+     * the next durable replaceObject forces it first.  Objects written
+     * during a command are forced together, once, just before the file
+     * that refers to them.
+     */
+    static synchronized void syncLater(File file) {
+        UNSYNCED.add(file);
+    }
+
+    /**
+     * Force every file passed to syncLater, and the directories holding
+     * them, to disk.
+     */
+    private static synchronized void syncPending() throws IOException {
+        HashSet<File> dirs = new HashSet<>();
+        for (File file : UNSYNCED) {
+            sync(file);
+            dirs.add(file.getAbsoluteFile().getParentFile());
+        }
+        for (File dir : dirs) {
+            sync(dir);
+        }
+        UNSYNCED.clear();
+    }
+
+    /**
+     * Force the contents of FILE, which may be a directory, to disk.  Not
+     * every platform can open a directory, in which case it is skipped.
+     */
+    private static void sync(File file) throws IOException {
+        long start = Trace.start();
+        try (FileChannel channel = FileChannel.open(file.toPath(),
+                StandardOpenOption.READ)) {
+            channel.force(true);
+        } catch (IOException excp) {
+            if (!file.isDirectory()) {
+                throw excp;
+            }
+        }
+        Trace.count("fsyncs", 1);
+        Trace.end("fsync", start);
+    }
+
+    /** Files written since the last durable replaceObject. */
+    private static final ArrayList<File> UNSYNCED = new ArrayList<>();
+
     /* DIRECTORIES */
 
     /**
@@ -256,6 +585,34 @@ class Utils {
         }
     }
 
+    /**
+     * Filter for objects that may come from other repositories: it lets
+     * through gitlet's own classes and the java.lang and java.util ones
+     * they are made of, and rejects everything else before it is
+     * instantiated.
+     */
+    static final ObjectInputFilter GITLET_ONLY =
+            ObjectInputFilter.Config.createFilter(
+                    "maxdepth=64;gitlet.*;java.lang.*;java.util.*;!*");
+
+    /**
+     * Return the object of type T serialized in BYTES, casting it to
+     * EXPECTEDCLASS.  BYTES may come from another repository, so only
+     * classes GITLET_ONLY lets through are read.  Throws
+     * IllegalArgumentException in case of problems.
+     */
+    static <T extends Serializable> T deserialize(byte[] bytes,
+                                                  Class<T> expectedClass) {
+        try (ObjectInputStream in = new ObjectInputStream(
+                new ByteArrayInputStream(bytes))) {
+            in.setObjectInputFilter(GITLET_ONLY);
+            return expectedClass.cast(in.readObject());
+        } catch (IOException | ClassCastException
+                | ClassNotFoundException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+    }
+
 
 
     /* MESSAGES AND ERROR REPORTING */
@@ -309,7 +666,10 @@ class Utils {
      * @param directory file directory
      * @return HashSet*/
     static HashSet<String> filesSet(File directory) {
+        long start = Trace.start();
         File[] files = directory.listFiles();
+        Trace.count("files_stated", files.length);
+        Trace.end("scan", start);
         HashSet<String> result = new HashSet<>();
 
         for (File fileName : files) {
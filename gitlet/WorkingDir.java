@@ -0,0 +1,164 @@
+package gitlet;
+
+import java.io.File;
+import java.io.Serializable;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+
+/** View of the plain, unignored files in the working directory. When a
+ *  monitor is running, the file list comes from its journal and blob IDs
+ *  are cached between commands, only being recomputed for files the
+ *  monitor saw change. Otherwise the working directory is scanned and
+ *  read directly.
+ *  @author Chris Seo
+ */
+public class WorkingDir implements Serializable {
+
+    /** Keeps caches saved by this version readable. */
+    private static final long serialVersionUID = 3584514150721269325L;
+
+    /** Working directory, where user initializes gitlet. */
+    static final File WORKING_DIR = Main.WORKING_DIR;
+
+    /** Stores blob IDs cached from earlier commands. */
+    static final File WORKING_SAVE = Utils.join(Main.WORKTREE_DIR,
+            "working_save");
+
+    /** Returns the names of all plain files in the working directory that
+     *  are not ignored. */
+    static HashSet<String> files() {
+        WorkingDir cache = current();
+        if (cache == null) {
+            return scan();
+        }
+        return cache._files;
+    }
+
+    /** Returns true if a plain file FILENAME is in the working directory,
+     *  whether or not it is ignored.
+     * @param fileName file name
+     * @return true if it exists */
+    static boolean exists(String fileName) {
+        WorkingDir cache = current();
+        if (cache == null || Ignore.isIgnored(fileName)) {
+            Trace.count("files_stated", 1);
+            return Utils.join(WORKING_DIR, fileName).isFile();
+        }
+        return cache._files.contains(fileName);
+    }
+
+    /** Returns the ID the blob for a working file would have.
+     * @param fileName name of a file in the working directory
+     * @return blob ID */
+    static String blobID(String fileName) {
+        WorkingDir cache = current();
+        if (cache == null || Ignore.isIgnored(fileName)) {
+            return Blob.idOf(Utils.join(WORKING_DIR, fileName));
+        }
+        String id = cache._ids.get(fileName);
+        Metrics.cacheLookup("blob_ids", id != null);
+        if (id == null) {
+            id = Blob.idOf(Utils.join(WORKING_DIR, fileName));
+            cache._ids.put(fileName, id);
+            cache._unsaved = true;
+        }
+        return id;
+    }
+
+    /** Saves blob IDs computed during this command for later commands. */
+    static void save() {
+        WorkingDir cache = current();
+        if (cache != null && cache._unsaved) {
+            cache._unsaved = false;
+            Utils.replaceObject(WORKING_SAVE, cache, false);
+        }
+    }
+
+    /** Lists the plain files in the working directory, skipping monitor
+     *  cookies and ignored files. Names are matched before anything else
+     *  is done with them, so ignored files are never stat'ed or read.
+     * @return HashSet of file names */
+    static HashSet<String> scan() {
+        long start = Trace.start();
+        HashSet<String> result = new HashSet<>();
+        for (String fileName : WORKING_DIR.list()) {
+            if (!fileName.startsWith(Monitor.COOKIE_PREFIX)
+                    && !Ignore.isIgnored(fileName)) {
+                Trace.count("files_stated", 1);
+                if (!Utils.join(WORKING_DIR, fileName).isDirectory()) {
+                    result.add(fileName);
+                }
+            }
+        }
+        Trace.end("scan", start);
+        return result;
+    }
+
+    /** Returns the cache for this command, loading it on first use.
+     * @return cache, or null if no monitor is running */
+    private static WorkingDir current() {
+        if (!_loaded) {
+            _loaded = true;
+            Monitor journal = Monitor.sync();
+            if (journal != null) {
+                _current = load(journal);
+            }
+        }
+        return _current;
+    }
+
+    /** Loads the saved cache and drops every blob ID that JOURNAL says may
+     *  be out of date. A cache a crash left unreadable is started over.
+     * @param journal monitor journal
+     * @return cache */
+    private static WorkingDir load(Monitor journal) {
+        WorkingDir cache = new WorkingDir();
+        if (WORKING_SAVE.exists()) {
+            try {
+                cache = Utils.readMapped(WORKING_SAVE, WorkingDir.class);
+            } catch (IllegalArgumentException excp) {
+                cache = new WorkingDir();
+            }
+        }
+        if (cache._session != journal.getSession()
+                || cache._seen < journal.getRescan()) {
+            cache._ids.clear();
+        } else {
+            for (Map.Entry<String, Long> change
+                    : journal.getChanged().entrySet()) {
+                if (change.getValue() > cache._seen) {
+                    cache._ids.remove(change.getKey());
+                }
+            }
+        }
+        cache._files = journal.getFiles();
+        cache._ids.keySet().retainAll(cache._files);
+        cache._unsaved = cache._session != journal.getSession()
+                || cache._seen != journal.getSequence();
+        cache._session = journal.getSession();
+        cache._seen = journal.getSequence();
+        return cache;
+    }
+
+    /** True once this command has looked for a monitor. */
+    private static boolean _loaded;
+
+    /** Cache for this command, or null if no monitor is running. */
+    private static WorkingDir _current;
+
+    /** Monitor run the cached IDs were computed under. */
+    private long _session;
+
+    /** Latest journal sequence number reflected in the cached IDs. */
+    private long _seen;
+
+    /** File names mapped to the blob ID of their contents. */
+    private HashMap<String, String> _ids = new HashMap<>();
+
+    /** Names of the plain files in the working directory. */
+    private transient HashSet<String> _files;
+
+    /** True if the cache changed since it was loaded. */
+    private transient boolean _unsaved;
+}
@@ -0,0 +1,135 @@
+package gitlet;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Map;
+import java.util.TreeMap;
+
+/** Handles the worktree command. A linked worktree is another working
+ *  directory on the same repository, with a branch of its own checked
+ *  out. Its .gitlet holds just its stage, caches and sparse patterns, and
+ *  a file naming the main gitlet directory, which holds the commits,
+ *  branches and everything else, so nothing is copied. The tree records
+ *  each linked worktree's branch by its path, and a branch is checked out
+ *  in one worktree at a time.
+ *  @author Chris Seo
+ */
+public class Worktree {
+
+    /** Working directory, where user initializes gitlet. */
+    static final File WORKING_DIR = Main.WORKING_DIR;
+
+    /** Gitlet directory, where gitlet is stored. */
+    static final File GITLET_DIR = Main.GITLET_DIR;
+
+    /** Gitlet directory of this working directory. */
+    static final File WORKTREE_DIR = Main.WORKTREE_DIR;
+
+    /** Stores commit tree. */
+    static final File TREE_DIR = Tree.TREE_DIR;
+
+    /** Name of the file in a linked worktree's gitlet directory that
+     *  names the main one. */
+    static final String LINK_NAME = "commondir";
+
+    /** Handles the worktree command. With add, checks out the given
+     *  branch in a new worktree at the given path; with list, prints each
+     *  worktree and its branch; with prune, forgets worktrees whose
+     *  directories are gone.
+     * @param args takes worktree + add, path and branch name, list or
+     *             prune */
+    public static void doWorktree(String[] args) {
+        switch (args[1]) {
+        case "add":
+            add(new File(args[2]), args[3]);
+            break;
+        case "list":
+            list();
+            break;
+        case "prune":
+            prune();
+            break;
+        default:
+            Utils.exit("Incorrect operands.");
+        }
+    }
+
+    /** Returns the key the tree records this worktree under, or null if
+     *  it is the main worktree.
+     * @return real path of the working directory, or null */
+    static String key() {
+        if (WORKTREE_DIR.equals(GITLET_DIR)) {
+            return null;
+        }
+        return key(WORKING_DIR);
+    }
+
+    /** Makes a worktree at DIR with BRANCHNAME checked out.
+     * @param dir directory of the worktree, new or empty
+     * @param branchName branch to check out */
+    private static void add(File dir, String branchName) {
+        Tree workingTree = Utils.readMapped(TREE_DIR, Tree.class);
+        Commit head = workingTree.getHead(branchName);
+        if (head == null) {
+            Utils.exit("A branch with that name does not exist.");
+        }
+        if (branchName.equals(workingTree.currentBranch())
+                || workingTree.checkedOutElsewhere(branchName)) {
+            Utils.exit("That branch is already checked out.");
+        }
+        String[] contents = dir.list();
+        if (contents != null && contents.length > 0) {
+            Utils.exit("That directory is not empty.");
+        }
+        File admin = Utils.join(dir, ".gitlet");
+        admin.mkdirs();
+        new Stage(admin);
+        Utils.writeContents(Utils.join(admin, LINK_NAME),
+                GITLET_DIR.getAbsolutePath() + "\n");
+        workingTree.setWorktree(key(dir), branchName);
+        for (Map.Entry<String, Blob> file : head.getBlobs().entrySet()) {
+            file.getValue().writeTo(Utils.join(dir, file.getKey()));
+        }
+    }
+
+    /** Prints the main worktree and then the linked ones, each with the
+     *  branch it has checked out. */
+    private static void list() {
+        Tree workingTree = Utils.readMapped(TREE_DIR, Tree.class);
+        File main = GITLET_DIR.getAbsoluteFile().getParentFile();
+        System.out.println(key(main) + " [" + workingTree.mainBranch()
+                + "]");
+        TreeMap<String, String> linked =
+                new TreeMap<>(workingTree.getWorktrees());
+        for (Map.Entry<String, String> worktree : linked.entrySet()) {
+            System.out.println(worktree.getKey() + " ["
+                    + worktree.getValue() + "]");
+        }
+    }
+
+    /** Forgets the linked worktrees whose directories, or the links in
+     *  them, have been deleted, so their branches can be checked out
+     *  again. */
+    private static void prune() {
+        Tree workingTree = Utils.readMapped(TREE_DIR, Tree.class);
+        ArrayList<String> paths = new ArrayList<>(workingTree.
+                getWorktrees().keySet());
+        for (String path : paths) {
+            if (!Utils.join(new File(path), ".gitlet", LINK_NAME).isFile()) {
+                workingTree.setWorktree(path, null);
+            }
+        }
+    }
+
+    /** Returns the key the tree records the worktree at DIR under.
+     * @param dir an existing directory
+     * @return its real path */
+    private static String key(File dir) {
+        try {
+            return dir.toPath().toRealPath().toString();
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+    }
+}
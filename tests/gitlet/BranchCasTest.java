@@ -0,0 +1,123 @@
+package gitlet;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import static gitlet.TestRepo.check;
+import static gitlet.TestRepo.delete;
+import static gitlet.TestRepo.run;
+import static gitlet.TestRepo.write;
+
+/** Checks that commands run at once against one repository lose no branch
+ *  update: branches are swapped in one by one, not rewritten whole.
+ *
+ *  Usage: java gitlet.BranchCasTest
+ *  @author Chris Seo
+ */
+public class BranchCasTest {
+
+    /** Commands run at once in each check. */
+    static final int PARALLEL = 8;
+
+    /** Commits made on each side of the worktree check. */
+    static final int COMMITS = 5;
+
+    /** Runs the checks.
+     * @param args ignored */
+    public static void main(String[] args) throws Exception {
+        Path repo = Files.createTempDirectory("gitlet-cas-test");
+        try {
+            branchesAtOnce(repo.toFile());
+        } finally {
+            delete(repo.toFile());
+        }
+        System.out.println("ok branchesAtOnce");
+        repo = Files.createTempDirectory("gitlet-cas-test");
+        try {
+            commitsAtOnce(repo.toFile());
+        } finally {
+            delete(repo.toFile());
+        }
+        System.out.println("ok commitsAtOnce");
+    }
+
+    /** Branches made by commands running at once all survive.
+     * @param dir empty directory to make the repository in */
+    static void branchesAtOnce(File dir) throws Exception {
+        run(dir, "init");
+        ArrayList<Thread> threads = new ArrayList<>();
+        for (int i = 0; i < PARALLEL; i++) {
+            String name = "b" + i;
+            threads.add(new Thread(() -> runUnchecked(dir, "branch", name)));
+        }
+        join(threads);
+        String status = run(dir, "status");
+        for (int i = 0; i < PARALLEL; i++) {
+            check(status.contains("\nb" + i + "\n"), status);
+        }
+    }
+
+    /** Commits made at once on two branches, from two worktrees, all end
+     *  up on their branches.
+     * @param dir empty directory to make the repository in */
+    static void commitsAtOnce(File dir) throws Exception {
+        File main = new File(dir, "main");
+        File linked = new File(dir, "linked");
+        main.mkdir();
+        run(main, "init");
+        run(main, "branch", "side");
+        run(main, "worktree", "add", linked.getPath(), "side");
+        ArrayList<Thread> threads = new ArrayList<>();
+        for (File worktree : new File[] {main, linked}) {
+            threads.add(new Thread(() -> {
+                for (int i = 0; i < COMMITS; i++) {
+                    String name = worktree.getName() + i;
+                    try {
+                        write(worktree, name, name + "\n");
+                    } catch (IOException excp) {
+                        throw new IllegalStateException(excp);
+                    }
+                    runUnchecked(worktree, "add", name);
+                    runUnchecked(worktree, "commit", name);
+                }
+            }));
+        }
+        join(threads);
+        for (File worktree : new File[] {main, linked}) {
+            String log = run(worktree, "log");
+            for (int i = 0; i < COMMITS; i++) {
+                check(log.contains("\n" + worktree.getName() + i + "\n"),
+                        log);
+            }
+        }
+        String report = run(main, "fsck");
+        check(report.contains("0 errors"), report);
+    }
+
+    /** Runs gitlet with ARGS in DIR from a thread, failing it on error.
+     * @param dir working directory
+     * @param args command and operands */
+    private static void runUnchecked(File dir, String... args) {
+        try {
+            run(dir, args);
+        } catch (IOException excp) {
+            throw new IllegalStateException(excp);
+        }
+    }
+
+    /** Starts THREADS and waits for all of them.
+     * @param threads threads to run */
+    private static void join(List<Thread> threads)
+        throws InterruptedException {
+        for (Thread thread : threads) {
+            thread.start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+    }
+}
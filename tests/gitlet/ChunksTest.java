@@ -0,0 +1,132 @@
+package gitlet;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.Random;
+
+import static gitlet.TestRepo.check;
+import static gitlet.TestRepo.delete;
+import static gitlet.TestRepo.head;
+import static gitlet.TestRepo.read;
+import static gitlet.TestRepo.run;
+import static gitlet.TestRepo.write;
+
+/** Checks that large files stored in chunks read back as written, that a
+ *  small change stores few new chunks, and that chunk sizes which would
+ *  stop chunking are refused.
+ *
+ *  Usage: java gitlet.ChunksTest
+ *  @author Chris Seo
+ */
+public class ChunksTest {
+
+    /** Characters in the large file. */
+    static final int SIZE = 60000;
+
+    /** Runs the checks.
+     * @param args ignored */
+    public static void main(String[] args) throws IOException {
+        Path repo = Files.createTempDirectory("gitlet-chunks-test");
+        try {
+            roundTrip(repo.toFile());
+        } finally {
+            delete(repo.toFile());
+        }
+        System.out.println("ok roundTrip");
+        repo = Files.createTempDirectory("gitlet-chunks-test");
+        try {
+            refusesBadSizes(repo.toFile());
+        } finally {
+            delete(repo.toFile());
+        }
+        System.out.println("ok refusesBadSizes");
+    }
+
+    /** Two versions of a chunked file are each checked out as they were
+     *  committed, sharing most of their chunks.
+     * @param dir empty directory to make the repository in */
+    static void roundTrip(File dir) throws IOException {
+        run(dir, "init");
+        run(dir, "config", Config.LARGE_FILE_THRESHOLD, "1000");
+        run(dir, "config", Config.CHUNK_MIN, "256");
+        run(dir, "config", Config.CHUNK_AVERAGE, "1024");
+        run(dir, "config", Config.CHUNK_MAX, "4096");
+        String first = text(new Random(61), SIZE);
+        String second = first.substring(0, SIZE / 2) + "changed\n"
+                + first.substring(SIZE / 2);
+        write(dir, "big.txt", first);
+        run(dir, "add", "big.txt");
+        run(dir, "commit", "first");
+        String firstID = head(dir);
+        File chunks = new File(dir, ".gitlet/" + Chunks.CHUNKS_NAME);
+        int stored = count(chunks);
+        check(stored > SIZE / 4096, "only " + stored + " chunks");
+        write(dir, "big.txt", second);
+        run(dir, "add", "big.txt");
+        run(dir, "commit", "second");
+        String secondID = head(dir);
+        int added = count(chunks) - stored;
+        check(added > 0 && added <= 3, added + " new chunks");
+        run(dir, "checkout", firstID, "--", "big.txt");
+        check(read(dir, "big.txt").equals(first), "first version differs");
+        run(dir, "checkout", secondID, "--", "big.txt");
+        check(read(dir, "big.txt").equals(second), "second version differs");
+        String report = run(dir, "fsck");
+        check(report.contains("0 errors"), report);
+    }
+
+    /** Chunk sizes that are zero, out of order or too large for a buffer
+     *  are refused when set, and when found in a saved config.
+     * @param dir empty directory to make the repository in */
+    static void refusesBadSizes(File dir) throws IOException {
+        run(dir, "init");
+        String zero = run(dir, "config", Config.CHUNK_MAX, "0");
+        check(zero.contains("Chunk sizes must satisfy"), zero);
+        String order = run(dir, "config", Config.CHUNK_MIN, "1000000");
+        check(order.contains("Chunk sizes must satisfy"), order);
+        String huge = run(dir, "config", Config.CHUNK_MAX, "99999999999");
+        check(huge.contains("Chunk sizes must satisfy"), huge);
+        String negative = run(dir, "config", Config.CHUNK_AVERAGE, "-1");
+        check(negative.contains("Incorrect value"), negative);
+        check(run(dir, "config").isEmpty(), "a bad size was saved");
+        HashMap<String, String> settings = new HashMap<>();
+        settings.put(Config.LARGE_FILE_THRESHOLD, "1");
+        settings.put(Config.CHUNK_MAX, "0");
+        Utils.replaceObject(new File(dir, ".gitlet/config"), settings,
+                false);
+        write(dir, "f.txt", "contents\n");
+        run(dir, "add", "f.txt");
+        String commit = run(dir, "commit", "chunked");
+        check(commit.contains("Chunk sizes must satisfy"), commit);
+    }
+
+    /** Returns LENGTH lines of random letters drawn from RANDOM.
+     * @param random source of letters
+     * @param length number of characters
+     * @return text */
+    private static String text(Random random, int length) {
+        StringBuilder result = new StringBuilder();
+        while (result.length() < length) {
+            result.append(random.nextInt(10) == 0 ? '\n'
+                    : (char) ('a' + random.nextInt(26)));
+        }
+        return result.toString();
+    }
+
+    /** Returns the number of files in the subdirectories of DIR.
+     * @param dir directory objects are spread over
+     * @return number of objects */
+    private static int count(File dir) {
+        int result = 0;
+        File[] subdirs = dir.listFiles();
+        if (subdirs != null) {
+            for (File subdir : subdirs) {
+                result += subdir.list().length;
+            }
+        }
+        return result;
+    }
+}
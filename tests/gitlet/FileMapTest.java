@@ -0,0 +1,63 @@
+package gitlet;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Map;
+import java.util.TreeMap;
+
+/** Checks that FileMap nodes are stored by what they hold: the same files
+ *  give the same root ID whatever order they were added in, and nodes
+ *  name blobs by ID, with the contents stored once in blob files.
+ *
+ *  Usage: java gitlet.FileMapTest
+ *  @author Chris Seo
+ */
+public class FileMapTest {
+
+    /** Files put in every map. */
+    static final int FILES = 300;
+
+    /** Runs every check in a scratch gitlet directory.
+     * @param args unused */
+    public static void main(String[] args) throws IOException {
+        File dir = Files.createTempDirectory("gitlet-filemap").toFile();
+        TreeMap<String, Blob> files = new TreeMap<>();
+        for (int i = 0; i < FILES; i++) {
+            files.put("f" + i, new Blob("f" + i, "contents " + i + "\n"));
+        }
+        String forward = FileMap.of(dir, files).save();
+        FileMap backward = FileMap.empty(dir);
+        for (Map.Entry<String, Blob> file
+                : files.descendingMap().entrySet()) {
+            backward = backward.with(new String(file.getKey()),
+                    file.getValue());
+        }
+        check(forward.equals(backward.save()), "root IDs differ by order");
+        String large = "x".repeat(100000);
+        FileMap changed = FileMap.open(dir, forward).with("f0",
+                new Blob("f0", large));
+        String root = changed.save();
+        long nodeBytes = 0;
+        for (File node : Utils.join(dir, FileMap.NODES_NAME).listFiles()) {
+            for (File file : node.listFiles()) {
+                nodeBytes += file.length();
+            }
+        }
+        check(nodeBytes < large.length(), "nodes hold file contents");
+        check(FileMap.open(dir, root).get("f0").getContents().equals(large),
+                "stored blob reads back differently");
+        check(FileMap.open(dir, forward).get("f7").getContents().equals(
+                "contents 7\n"), "unchanged blob reads back differently");
+        System.out.println("ok");
+    }
+
+    /** Throws unless CONDITION holds.
+     * @param condition result of a check
+     * @param message what went wrong otherwise */
+    private static void check(boolean condition, String message) {
+        if (!condition) {
+            throw new AssertionError(message);
+        }
+    }
+}
@@ -0,0 +1,55 @@
+package gitlet;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static gitlet.TestRepo.check;
+import static gitlet.TestRepo.delete;
+import static gitlet.TestRepo.head;
+import static gitlet.TestRepo.run;
+import static gitlet.TestRepo.write;
+
+/** Checks that fsck finds a commit whose contents were changed in place.
+ *
+ *  Usage: java gitlet.FsckTest
+ *  @author Chris Seo
+ */
+public class FsckTest {
+
+    /** Runs the checks.
+     * @param args ignored */
+    public static void main(String[] args) throws IOException {
+        Path repo = Files.createTempDirectory("gitlet-fsck-test");
+        try {
+            corruptCommit(repo.toFile());
+        } finally {
+            delete(repo.toFile());
+        }
+        System.out.println("ok corruptCommit");
+    }
+
+    /** Changing a commit's message in its file, without changing the ID
+     *  it holds, is reported.
+     * @param dir empty directory to make the repository in */
+    static void corruptCommit(File dir) throws IOException {
+        run(dir, "init");
+        write(dir, "f.txt", "contents\n");
+        run(dir, "add", "f.txt");
+        run(dir, "commit", "hello world");
+        String id = head(dir);
+        String clean = run(dir, "fsck");
+        check(clean.contains("0 errors"), clean);
+        Path file = new File(dir, ".gitlet/" + id).toPath();
+        byte[] bytes = Files.readAllBytes(file);
+        String text = new String(bytes, StandardCharsets.ISO_8859_1);
+        check(text.contains("hello world"), text);
+        Files.write(file, text.replace("hello world", "HELLO WORLD").
+                getBytes(StandardCharsets.ISO_8859_1));
+        String report = run(dir, "fsck");
+        check(report.contains("error: commit " + id + " hashes to "),
+                report);
+    }
+}
@@ -0,0 +1,103 @@
+package gitlet;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static gitlet.TestRepo.check;
+import static gitlet.TestRepo.delete;
+import static gitlet.TestRepo.head;
+import static gitlet.TestRepo.run;
+import static gitlet.TestRepo.write;
+
+/** Checks that gc keeps what the reflog leads to, deletes unreachable
+ *  commits along with the nodes and blobs only they refer to, and does
+ *  not run while another command may be writing objects.
+ *
+ *  Usage: java gitlet.GcTest
+ *  @author Chris Seo
+ */
+public class GcTest {
+
+    /** Runs the checks.
+     * @param args ignored */
+    public static void main(String[] args) throws IOException {
+        Path repo = Files.createTempDirectory("gitlet-gc-test");
+        try {
+            sweepsObjects(repo.toFile());
+        } finally {
+            delete(repo.toFile());
+        }
+        System.out.println("ok sweepsObjects");
+        repo = Files.createTempDirectory("gitlet-gc-test");
+        try {
+            refusesWhileShared(repo.toFile());
+        } finally {
+            delete(repo.toFile());
+        }
+        System.out.println("ok refusesWhileShared");
+    }
+
+    /** A commit left behind by a deleted branch is kept while its reflog
+     *  entries are, then deleted with its own blob, leaving the rest of
+     *  the repository whole.
+     * @param dir empty directory to make the repository in */
+    static void sweepsObjects(File dir) throws IOException {
+        run(dir, "init");
+        write(dir, "a.txt", "kept\n");
+        run(dir, "add", "a.txt");
+        run(dir, "commit", "kept");
+        run(dir, "branch", "side");
+        run(dir, "checkout", "side");
+        write(dir, "b.txt", "dropped\n");
+        run(dir, "add", "b.txt");
+        run(dir, "commit", "dropped");
+        String dropped = head(dir);
+        run(dir, "checkout", "master");
+        run(dir, "rm-branch", "side");
+        File blobs = new File(dir, ".gitlet/" + Blob.BLOBS_NAME);
+        int before = count(blobs);
+        String kept = run(dir, "gc");
+        check(kept.contains("Removed 0 unreachable commits"), kept);
+        check(new File(dir, ".gitlet/" + dropped).isFile(), kept);
+        String negative = run(dir, "gc", "--expire", "-1");
+        check(negative.contains("Incorrect operands."), negative);
+        String removed = run(dir, "gc", "--expire", "0");
+        check(removed.contains("Removed 1 unreachable commits"), removed);
+        check(!new File(dir, ".gitlet/" + dropped).exists(), removed);
+        check(count(blobs) == before - 1, removed);
+        String report = run(dir, "fsck");
+        check(report.contains("0 errors"), report);
+        String checkout = run(dir, "checkout", "--", "a.txt");
+        check(checkout.isEmpty(), checkout);
+    }
+
+    /** Gc refuses to run while another command shares the objects lock.
+     * @param dir empty directory to make the repository in */
+    @SuppressWarnings("try")
+    static void refusesWhileShared(File dir) throws IOException {
+        run(dir, "init");
+        try (FileChannel lock = Lock.waitToShare(new File(dir, ".gitlet"))) {
+            String busy = run(dir, "gc");
+            check(busy.contains("Another gitlet command is running"), busy);
+        }
+        String done = run(dir, "gc");
+        check(done.contains("Removed 0 unreachable commits"), done);
+    }
+
+    /** Returns the number of files in the subdirectories of DIR.
+     * @param dir directory objects are spread over
+     * @return number of objects */
+    private static int count(File dir) {
+        int result = 0;
+        File[] subdirs = dir.listFiles();
+        if (subdirs != null) {
+            for (File subdir : subdirs) {
+                result += subdir.list().length;
+            }
+        }
+        return result;
+    }
+}
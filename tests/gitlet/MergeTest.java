@@ -0,0 +1,83 @@
+package gitlet;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static gitlet.TestRepo.check;
+import static gitlet.TestRepo.delete;
+import static gitlet.TestRepo.head;
+import static gitlet.TestRepo.read;
+import static gitlet.TestRepo.run;
+import static gitlet.TestRepo.write;
+
+/** Checks that merge --dry-run predicts a merge's updates, removals and
+ *  conflicts without touching the repository, and that the merge then
+ *  writes exactly those.
+ *
+ *  Usage: java gitlet.MergeTest
+ *  @author Chris Seo
+ */
+public class MergeTest {
+
+    /** Runs the checks.
+     * @param args ignored */
+    public static void main(String[] args) throws IOException {
+        Path repo = Files.createTempDirectory("gitlet-merge-test");
+        try {
+            predictsConflicts(repo.toFile());
+        } finally {
+            delete(repo.toFile());
+        }
+        System.out.println("ok predictsConflicts");
+    }
+
+    /** Both branches change a.txt; the other changes c.txt, adds d.txt
+     *  and removes e.txt.
+     * @param dir empty directory to make the repository in */
+    static void predictsConflicts(File dir) throws IOException {
+        run(dir, "init");
+        for (String name : new String[] {"a.txt", "c.txt", "e.txt"}) {
+            write(dir, name, name + "\n");
+            run(dir, "add", name);
+        }
+        run(dir, "commit", "base");
+        run(dir, "branch", "other");
+        write(dir, "a.txt", "master\n");
+        run(dir, "add", "a.txt");
+        run(dir, "commit", "master");
+        run(dir, "checkout", "other");
+        write(dir, "a.txt", "other\n");
+        write(dir, "c.txt", "changed\n");
+        write(dir, "d.txt", "added\n");
+        run(dir, "add", "a.txt");
+        run(dir, "add", "c.txt");
+        run(dir, "add", "d.txt");
+        run(dir, "rm", "e.txt");
+        run(dir, "commit", "other");
+        run(dir, "checkout", "master");
+        String before = head(dir);
+        String predicted = run(dir, "merge", "--dry-run", "other");
+        check(predicted.equals("=== Updated Files ===\nc.txt\nd.txt\n\n"
+                + "=== Removed Files ===\ne.txt\n\n"
+                + "=== Conflicted Files ===\na.txt\n"), predicted);
+        check(head(dir).equals(before), predicted);
+        check(read(dir, "a.txt").equals("master\n")
+                && read(dir, "c.txt").equals("c.txt\n")
+                && !new File(dir, "d.txt").exists()
+                && new File(dir, "e.txt").exists(), predicted);
+        String merged = run(dir, "merge", "other");
+        check(merged.contains("Encountered a merge conflict."), merged);
+        check(read(dir, "a.txt").equals("<<<<<<< HEAD\nmaster\n=======\n"
+                + "other\n>>>>>>>\n"), merged);
+        check(read(dir, "c.txt").equals("changed\n")
+                && read(dir, "d.txt").equals("added\n")
+                && !new File(dir, "e.txt").exists(), merged);
+        String log = run(dir, "log");
+        check(log.contains("Merged other into master."), log);
+        String status = run(dir, "status");
+        check(status.contains("=== Modifications Not Staged For Commit ===\n"
+                + "\n=== Untracked Files ===\n"), status);
+    }
+}
@@ -0,0 +1,170 @@
+package gitlet;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+
+import static gitlet.TestRepo.check;
+import static gitlet.TestRepo.delete;
+import static gitlet.TestRepo.head;
+import static gitlet.TestRepo.run;
+import static gitlet.TestRepo.write;
+
+/** Checks that packs are verified as they are received: a good pack is
+ *  stored whole, and a commit that does not hash to its ID, a bad object
+ *  ID or a bad length is refused before anything is stored under it.
+ *
+ *  Usage: java gitlet.PackTest
+ *  @author Chris Seo
+ */
+public class PackTest {
+
+    /** Runs the checks.
+     * @param args ignored */
+    public static void main(String[] args) throws IOException {
+        Path scratch = Files.createTempDirectory("gitlet-pack-test");
+        try {
+            File repo = new File(scratch.toFile(), "repo");
+            repo.mkdir();
+            String id = makeRepo(repo);
+            File gitletDir = new File(repo, ".gitlet");
+            receivesGoodPack(gitletDir, id, scratch.toFile());
+            refusesChangedCommit(gitletDir, id, scratch.toFile());
+            refusesBadHeader(scratch.toFile());
+        } finally {
+            delete(scratch.toFile());
+        }
+    }
+
+    /** Makes a repository in DIR with two commits and a chunked file.
+     * @param dir empty directory
+     * @return ID of the head commit */
+    static String makeRepo(File dir) throws IOException {
+        run(dir, "init");
+        run(dir, "config", "largefile.threshold", "4096");
+        write(dir, "small.txt", "small\n");
+        StringBuilder large = new StringBuilder();
+        for (int i = 0; i < 20000; i++) {
+            large.append("line ").append(i).append('\n');
+        }
+        write(dir, "large.txt", large.toString());
+        run(dir, "add", "small.txt");
+        run(dir, "add", "large.txt");
+        run(dir, "commit", "first");
+        write(dir, "small.txt", "changed\n");
+        run(dir, "add", "small.txt");
+        run(dir, "commit", "second");
+        return head(dir);
+    }
+
+    /** A pack of every commit, received over the network, stores every
+     *  object, and the received large file hashes to its ID.
+     * @param gitletDir repository sending
+     * @param id its head
+     * @param scratch directory for the receiving side */
+    static void receivesGoodPack(File gitletDir, String id, File scratch)
+        throws IOException {
+        File dest = new File(scratch, "good");
+        List<String> commits = Remote.missing(gitletDir,
+                new HashSet<>(), id);
+        ArrayList<String> objects = Pack.plan(gitletDir, commits);
+        check(objects.stream().anyMatch(o -> o.charAt(0) == Pack.CHUNK),
+                objects.toString());
+        ArrayList<String> received = Pack.receive(dest,
+                pack(gitletDir, objects), false);
+        check(received.equals(commits), received.toString());
+        for (String object : objects) {
+            check(Pack.file(dest, object).isFile(), object);
+        }
+        Commit head = Utils.readObject(new File(dest, id), Commit.class);
+        Blob large = head.getBlobs(dest).get("large.txt");
+        check(large.isChunked() && large.rehash(dest).equals(large.getID()),
+                "large.txt");
+        System.out.println("ok receivesGoodPack");
+    }
+
+    /** A commit whose message was changed, with a checksum to match, is
+     *  refused and not stored.
+     * @param gitletDir repository sending
+     * @param id its head
+     * @param scratch directory for the receiving side */
+    static void refusesChangedCommit(File gitletDir, String id, File scratch)
+        throws IOException {
+        File dest = new File(scratch, "changed");
+        String text = new String(Utils.readContents(new File(gitletDir, id)),
+                StandardCharsets.ISO_8859_1);
+        byte[] changed = text.replace("second", "SECOND").
+                getBytes(StandardCharsets.ISO_8859_1);
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream data = new DataOutputStream(bytes);
+        data.writeUTF(Pack.MAGIC);
+        data.writeByte(Pack.COMMIT);
+        data.writeUTF(id);
+        data.writeInt(changed.length);
+        data.write(changed);
+        data.writeUTF(Utils.sha1(changed));
+        data.writeByte(Pack.END);
+        String error = refused(dest, bytes.toByteArray());
+        check(error.contains("has ID"), error);
+        check(!new File(dest, id).exists(), "changed commit stored");
+        System.out.println("ok refusesChangedCommit");
+    }
+
+    /** An object ID that is not an ID, or a negative or huge length, is
+     *  refused before anything is allocated or written.
+     * @param scratch directory for the receiving side */
+    static void refusesBadHeader(File scratch) throws IOException {
+        File dest = new File(scratch, "bad");
+        for (Object[] header : new Object[][] {
+            {"../../escape", 1}, {"0".repeat(Utils.UID_LENGTH), -1},
+            {"0".repeat(Utils.UID_LENGTH), Integer.MAX_VALUE}}) {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            DataOutputStream data = new DataOutputStream(bytes);
+            data.writeUTF(Pack.MAGIC);
+            data.writeByte(Pack.CHUNK);
+            data.writeUTF((String) header[0]);
+            data.writeInt((Integer) header[1]);
+            data.writeByte(0);
+            String error = refused(dest, bytes.toByteArray());
+            check(!error.isEmpty(), (String) header[0]);
+        }
+        check(!new File(scratch, "escape").exists(), "escaped");
+        System.out.println("ok refusesBadHeader");
+    }
+
+    /** Returns a stream over a pack of OBJECTS in GITLETDIR.
+     * @param gitletDir repository sending
+     * @param objects plan to send
+     * @return pack */
+    static DataInputStream pack(File gitletDir, List<String> objects)
+        throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        Pack.send(gitletDir, objects, new DataOutputStream(bytes));
+        return new DataInputStream(new ByteArrayInputStream(
+                bytes.toByteArray()));
+    }
+
+    /** Returns the message of the IOException receiving PACK into DEST
+     *  throws, failing if it throws none.
+     * @param dest directory receiving
+     * @param pack pack bytes
+     * @return message */
+    static String refused(File dest, byte[] pack) {
+        try {
+            Pack.receive(dest, new DataInputStream(
+                    new ByteArrayInputStream(pack)), false);
+        } catch (IOException excp) {
+            return excp.getMessage();
+        }
+        throw new AssertionError("pack accepted");
+    }
+}
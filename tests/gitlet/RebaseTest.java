@@ -0,0 +1,105 @@
+package gitlet;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static gitlet.TestRepo.check;
+import static gitlet.TestRepo.delete;
+import static gitlet.TestRepo.head;
+import static gitlet.TestRepo.read;
+import static gitlet.TestRepo.run;
+import static gitlet.TestRepo.write;
+
+/** Checks that rebase stops at the first replay that conflicts, leaving
+ *  the branch at the last clean one, and refuses to flatten merges.
+ *
+ *  Usage: java gitlet.RebaseTest
+ *  @author Chris Seo
+ */
+public class RebaseTest {
+
+    /** Runs the checks.
+     * @param args ignored */
+    public static void main(String[] args) throws IOException {
+        Path repo = Files.createTempDirectory("gitlet-rebase-test");
+        try {
+            stopsAtConflict(repo.toFile());
+        } finally {
+            delete(repo.toFile());
+        }
+        System.out.println("ok stopsAtConflict");
+        repo = Files.createTempDirectory("gitlet-rebase-test");
+        try {
+            refusesMerges(repo.toFile());
+        } finally {
+            delete(repo.toFile());
+        }
+        System.out.println("ok refusesMerges");
+    }
+
+    /** Of three commits, the first replays cleanly, the second conflicts
+     *  and the third is left for the user, listed by ID.
+     * @param dir empty directory to make the repository in */
+    static void stopsAtConflict(File dir) throws IOException {
+        run(dir, "init");
+        write(dir, "f.txt", "base\n");
+        run(dir, "add", "f.txt");
+        run(dir, "commit", "base");
+        run(dir, "branch", "other");
+        write(dir, "f.txt", "master\n");
+        run(dir, "add", "f.txt");
+        run(dir, "commit", "master");
+        String master = head(dir);
+        run(dir, "checkout", "other");
+        write(dir, "g.txt", "clean\n");
+        run(dir, "add", "g.txt");
+        run(dir, "commit", "clean");
+        write(dir, "f.txt", "other\n");
+        run(dir, "add", "f.txt");
+        run(dir, "commit", "conflicting");
+        write(dir, "h.txt", "later\n");
+        run(dir, "add", "h.txt");
+        run(dir, "commit", "later");
+        String later = head(dir);
+        String rebased = run(dir, "rebase", "master");
+        check(rebased.contains("Encountered a merge conflict."), rebased);
+        check(rebased.contains(later), rebased);
+        String contents = read(dir, "f.txt");
+        check(contents.equals("<<<<<<< HEAD\nmaster\n=======\nother\n"
+                + ">>>>>>>\n"), contents);
+        check(read(dir, "g.txt").equals("clean\n"), rebased);
+        check(!new File(dir, "h.txt").exists(), rebased);
+        String log = run(dir, "log");
+        check(log.indexOf("clean") < log.indexOf(master)
+                && !log.contains("conflicting"), log);
+    }
+
+    /** A branch holding a merge commit since it split is not rebased.
+     * @param dir empty directory to make the repository in */
+    static void refusesMerges(File dir) throws IOException {
+        run(dir, "init");
+        write(dir, "f.txt", "base\n");
+        run(dir, "add", "f.txt");
+        run(dir, "commit", "base");
+        run(dir, "branch", "other");
+        write(dir, "m.txt", "master\n");
+        run(dir, "add", "m.txt");
+        run(dir, "commit", "master");
+        run(dir, "checkout", "other");
+        write(dir, "o.txt", "other\n");
+        run(dir, "add", "o.txt");
+        run(dir, "commit", "other");
+        run(dir, "merge", "master");
+        String merged = head(dir);
+        run(dir, "checkout", "master");
+        write(dir, "n.txt", "newer\n");
+        run(dir, "add", "n.txt");
+        run(dir, "commit", "newer");
+        run(dir, "checkout", "other");
+        String rebased = run(dir, "rebase", "master");
+        check(rebased.contains("Cannot rebase a merge commit."), rebased);
+        check(head(dir).equals(merged), rebased);
+    }
+}
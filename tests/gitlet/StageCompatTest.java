@@ -0,0 +1,33 @@
+package gitlet;
+
+import java.io.File;
+import java.util.Set;
+
+/** Checks that stages saved by the released build of gitlet still read.
+ *  Each fixture is the staged_save of a repository in which one file,
+ *  staged.txt, was added by that build.
+ *
+ *  Usage: java gitlet.StageCompatTest [fixtures directory]
+ *  @author Chris Seo
+ */
+public class StageCompatTest {
+
+    /** Fixtures, named after the build that wrote them. */
+    static final String[] FIXTURES = {"baseline.staged_save"};
+
+    /** Reads every fixture and checks its staged files.
+     * @param args optionally the fixtures directory */
+    public static void main(String[] args) {
+        File dir = new File(args.length > 0 ? args[0]
+                : "tests/gitlet/fixtures");
+        for (String name : FIXTURES) {
+            Stage stage = Utils.readObject(new File(dir, name),
+                    Stage.class);
+            Set<String> staged = stage.getStagedFiles();
+            if (!staged.equals(Set.of("staged.txt"))) {
+                throw new AssertionError(name + ": staged " + staged);
+            }
+            System.out.println("ok " + name);
+        }
+    }
+}
@@ -0,0 +1,54 @@
+package gitlet;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static gitlet.TestRepo.check;
+import static gitlet.TestRepo.delete;
+import static gitlet.TestRepo.read;
+import static gitlet.TestRepo.run;
+import static gitlet.TestRepo.write;
+
+/** Checks stash pop on a scratch repository.
+ *
+ *  Usage: java gitlet.StashTest
+ *  @author Chris Seo
+ */
+public class StashTest {
+
+    /** Runs the checks.
+     * @param args ignored */
+    public static void main(String[] args) throws IOException {
+        Path repo = Files.createTempDirectory("gitlet-stash-test");
+        try {
+            conflictKeepsEntry(repo.toFile());
+        } finally {
+            delete(repo.toFile());
+        }
+        System.out.println("ok conflictKeepsEntry");
+    }
+
+    /** A pop that conflicts with the head writes the conflict and keeps
+     *  the stash entry.
+     * @param dir empty directory to make the repository in */
+    static void conflictKeepsEntry(File dir) throws IOException {
+        run(dir, "init");
+        write(dir, "f.txt", "base\n");
+        run(dir, "add", "f.txt");
+        run(dir, "commit", "base");
+        write(dir, "f.txt", "stashed\n");
+        run(dir, "stash");
+        write(dir, "f.txt", "committed\n");
+        run(dir, "add", "f.txt");
+        run(dir, "commit", "committed");
+        String popped = run(dir, "stash", "pop");
+        check(popped.contains("Encountered a merge conflict."), popped);
+        String contents = read(dir, "f.txt");
+        check(contents.startsWith("<<<<<<< HEAD\ncommitted\n=======\n"
+                + "stashed\n>>>>>>>"), contents);
+        String list = run(dir, "stash", "list");
+        check(list.startsWith("stash@{0}: WIP on master:"), list);
+    }
+}
@@ -0,0 +1,88 @@
+package gitlet;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/** Helpers for tests that run gitlet on scratch repositories. Gitlet
+ *  decides its repository from user.dir and ends with System.exit, so
+ *  each command runs in its own JVM, on the class path of this one.
+ *  @author Chris Seo
+ */
+class TestRepo {
+
+    /** Runs gitlet with ARGS in DIR.
+     * @param dir working directory
+     * @param args command and operands
+     * @return what it printed */
+    static String run(File dir, String... args) throws IOException {
+        List<String> command = new ArrayList<>(List.of(
+                Path.of(System.getProperty("java.home"), "bin", "java").
+                        toString(),
+                "-cp", System.getProperty("java.class.path"),
+                "gitlet.Main"));
+        command.addAll(Arrays.asList(args));
+        Process process = new ProcessBuilder(command).directory(dir).
+                redirectErrorStream(true).start();
+        String output = new String(process.getInputStream().readAllBytes(),
+                StandardCharsets.UTF_8);
+        try {
+            process.waitFor();
+        } catch (InterruptedException excp) {
+            throw new IOException(excp);
+        }
+        return output;
+    }
+
+    /** Returns the ID of the head commit of the repository in DIR.
+     * @param dir working directory
+     * @return commit ID */
+    static String head(File dir) throws IOException {
+        String log = run(dir, "log");
+        int start = log.indexOf("commit ") + "commit ".length();
+        return log.substring(start, start + Utils.UID_LENGTH);
+    }
+
+    /** Writes CONTENTS to the file NAME in DIR.
+     * @param dir directory
+     * @param name file name
+     * @param contents contents */
+    static void write(File dir, String name, String contents)
+        throws IOException {
+        Files.writeString(new File(dir, name).toPath(), contents);
+    }
+
+    /** Returns the contents of the file NAME in DIR.
+     * @param dir directory
+     * @param name file name
+     * @return contents */
+    static String read(File dir, String name) throws IOException {
+        return Files.readString(new File(dir, name).toPath());
+    }
+
+    /** Throws if CONDITION is false, showing what was seen.
+     * @param condition what should hold
+     * @param seen output or contents checked */
+    static void check(boolean condition, String seen) {
+        if (!condition) {
+            throw new AssertionError("unexpected:\n" + seen);
+        }
+    }
+
+    /** Deletes FILE and, if it is a directory, everything in it.
+     * @param file file or directory */
+    static void delete(File file) {
+        File[] children = file.listFiles();
+        if (children != null) {
+            for (File child : children) {
+                delete(child);
+            }
+        }
+        file.delete();
+    }
+}